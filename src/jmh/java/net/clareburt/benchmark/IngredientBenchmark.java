@@ -0,0 +1,44 @@
+package net.clareburt.benchmark;
+
+import net.clareburt.model.Ingredient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.ParseException;
+
+/**
+ * Measures parsing a single useBy date, cycling through a pool of dates so the branch predictor cannot learn one.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class IngredientBenchmark {
+
+	private static final int DATE_COUNT = 1024;
+
+	private String[] dates;
+	private Ingredient ingredient;
+	private int next;
+
+	@Setup
+	public void setup() {
+		dates = new SyntheticData(42, 1000, 1, 365).createUseByDates(DATE_COUNT);
+		ingredient = new Ingredient();
+	}
+
+	@Benchmark
+	public int setUseBy() throws ParseException {
+		ingredient.setUseBy(dates[next++ & (DATE_COUNT - 1)]);
+		return ingredient.getUseByEpochDay();
+	}
+
+}
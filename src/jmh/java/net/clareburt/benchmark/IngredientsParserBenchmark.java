@@ -0,0 +1,47 @@
+package net.clareburt.benchmark;
+
+import net.clareburt.IngredientsParser;
+import net.clareburt.model.Ingredient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.ParseException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Measures parsing fridge CSV rows into Ingredients.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class IngredientsParserBenchmark {
+
+	@Param({"10", "1000", "100000", "1000000"})
+	public int lotCount;
+
+	private IngredientsParser ingredientsParser;
+	private List<String[]> rows;
+
+	@Setup
+	public void setup() {
+		ingredientsParser = new IngredientsParser();
+		rows = new SyntheticData(42, 1000, 4, 30).createFridgeRows(lotCount);
+	}
+
+	@Benchmark
+	public Collection<Ingredient> getIngredients() throws ParseException {
+		return ingredientsParser.getIngredients(rows);
+	}
+
+}
@@ -0,0 +1,96 @@
+package net.clareburt.benchmark;
+
+import au.com.bytecode.opencsv.CSVReader;
+import au.com.bytecode.opencsv.CSVWriter;
+import net.clareburt.IngredientsParser;
+import net.clareburt.MappedIngredientsLoader;
+import net.clareburt.model.Ingredient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Measures loading a fridge CSV file with quoted fields, parsing chunks of it in parallel, against reading it with
+ * CSVReader on one thread.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MappedIngredientsLoaderBenchmark {
+
+	@Param({"100000", "1000000"})
+	public int lotCount;
+
+	@Param({"1", "2", "4", "8"})
+	public int parallelism;
+
+	private IngredientsParser ingredientsParser;
+	private MappedIngredientsLoader ingredientsLoader;
+	private File file;
+
+	@Setup
+	public void setup() throws IOException {
+		ingredientsParser = new IngredientsParser();
+		ingredientsLoader = new MappedIngredientsLoader(ingredientsParser, parallelism);
+		file = File.createTempFile("fridge", ".csv");
+		final CSVWriter csvWriter = new CSVWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+		try {
+			csvWriter.writeAll(new SyntheticData(42, 1000, 4, 30).createFridgeRows(lotCount));
+		} finally {
+			csvWriter.close();
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		ingredientsLoader.close();
+		if (!file.delete()) {
+			file.deleteOnExit();
+		}
+	}
+
+	@Benchmark
+	public List<Ingredient> load() throws IOException, ParseException {
+		return ingredientsLoader.load(file, StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public List<Ingredient> readWithCsvReader() throws IOException, ParseException {
+		final List<Ingredient> ingredients = new ArrayList<Ingredient>();
+		final CSVReader csvReader = new CSVReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+		try {
+			ingredientsParser.readIngredients(csvReader, new Consumer<Ingredient>() {
+				@Override
+				public void accept(Ingredient ingredient) {
+					ingredients.add(ingredient);
+				}
+			});
+		} finally {
+			csvReader.close();
+		}
+		return ingredients;
+	}
+
+}
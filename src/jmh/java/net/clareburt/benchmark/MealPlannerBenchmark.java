@@ -0,0 +1,57 @@
+package net.clareburt.benchmark;
+
+import net.clareburt.MealPlanner;
+import net.clareburt.RecipeCatalog;
+import net.clareburt.model.Ingredient;
+import net.clareburt.model.MealPlan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+
+/**
+ * Measures planning a week of meals for one fridge, within the planner's default search budget.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MealPlannerBenchmark {
+
+	@Param({"1000", "100000"})
+	public int recipeCount;
+
+	@Param({"100"})
+	public int lotCount;
+
+	@Param({"200"})
+	public int itemCount;
+
+	@Param({"7"})
+	public int mealCount;
+
+	private MealPlanner mealPlanner;
+	private List<Ingredient> fridgeItems;
+
+	@Setup
+	public void setup() {
+		final SyntheticData syntheticData = new SyntheticData(42, itemCount, 2, 30);
+		fridgeItems = syntheticData.createFridge(lotCount);
+		mealPlanner = new MealPlanner(new RecipeCatalog(syntheticData.createRecipes(recipeCount, 3)));
+	}
+
+	@Benchmark
+	public MealPlan plan() {
+		return mealPlanner.plan(fridgeItems, mealCount);
+	}
+
+}
@@ -0,0 +1,58 @@
+package net.clareburt.benchmark;
+
+import net.clareburt.RecipeGenerator;
+import net.clareburt.model.Ingredient;
+import net.clareburt.model.Recipe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+
+/**
+ * Measures suggesting a recipe for one fridge from a list of recipes.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class RecipeGeneratorBenchmark {
+
+	@Param({"10", "1000", "100000", "1000000"})
+	public int recipeCount;
+
+	@Param({"10", "1000"})
+	public int lotCount;
+
+	@Param({"2000"})
+	public int itemCount;
+
+	@Param({"4"})
+	public int maxIngredients;
+
+	private RecipeGenerator recipeGenerator;
+	private List<Ingredient> fridgeItems;
+	private List<Recipe> recipes;
+
+	@Setup
+	public void setup() {
+		recipeGenerator = new RecipeGenerator();
+		final SyntheticData syntheticData = new SyntheticData(42, itemCount, 2, 30);
+		fridgeItems = syntheticData.createFridge(lotCount);
+		recipes = syntheticData.createRecipes(recipeCount, maxIngredients);
+	}
+
+	@Benchmark
+	public String generateRecipe() {
+		return recipeGenerator.generateRecipe(fridgeItems, recipes);
+	}
+
+}
@@ -0,0 +1,62 @@
+package net.clareburt.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import net.clareburt.RecipeParser;
+import net.clareburt.model.Recipe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+/**
+ * Measures parsing the recipes Json into Recipes with RecipeParser's type adapters, against Gson's reflective
+ * adapters.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class RecipeParserBenchmark {
+
+	private static final Type RECIPES_TYPE = new TypeToken<Collection<Recipe>>() {}.getType();
+
+	@Param({"10", "1000", "100000", "1000000"})
+	public int recipeCount;
+
+	@Param({"4"})
+	public int maxIngredients;
+
+	private RecipeParser recipeParser;
+	private Gson reflectiveGson;
+	private String recipeJson;
+
+	@Setup
+	public void setup() {
+		recipeParser = new RecipeParser();
+		reflectiveGson = new Gson();
+		final SyntheticData syntheticData = new SyntheticData(42, 1000, 1, 30);
+		recipeJson = SyntheticData.toJson(syntheticData.createRecipes(recipeCount, maxIngredients));
+	}
+
+	@Benchmark
+	public Collection<Recipe> getRecipesFromJson() {
+		return recipeParser.getRecipesFromJson(recipeJson);
+	}
+
+	@Benchmark
+	public Collection<Recipe> getRecipesFromJsonReflectively() {
+		return reflectiveGson.fromJson(recipeJson, RECIPES_TYPE);
+	}
+
+}
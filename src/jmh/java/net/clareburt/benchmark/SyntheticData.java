@@ -0,0 +1,150 @@
+package net.clareburt.benchmark;
+
+import net.clareburt.model.Ingredient;
+import net.clareburt.model.Recipe;
+import net.clareburt.model.Unit;
+import net.clareburt.util.DateCodec;
+import net.clareburt.util.DateUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates fridges and recipe catalogs of any size for the benchmarks. The same seed always gives the same data, so
+ * results from different releases are measured against the same input.
+ * <p>
+ * Items are named item0 to item(itemCount - 1). Each fridge item is stocked as lotsPerItem lots whose useBy dates are
+ * spread over expirySpreadDays days from two days ago, so a few lots have already expired.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class SyntheticData {
+
+	private static final Unit[] UNITS = Unit.values();
+	private static final int EXPIRED_DAYS = 2;
+
+	private final Random random;
+	private final int itemCount;
+	private final int lotsPerItem;
+	private final int expirySpreadDays;
+	private final int today;
+
+	/**
+	 * @param seed seed of the random data
+	 * @param itemCount number of distinct item names used by fridges and recipes
+	 * @param lotsPerItem number of lots of each item in a fridge
+	 * @param expirySpreadDays number of days over which the useBy dates are spread
+	 */
+	public SyntheticData(long seed, int itemCount, int lotsPerItem, int expirySpreadDays) {
+		this.random = new Random(seed);
+		this.itemCount = itemCount;
+		this.lotsPerItem = lotsPerItem;
+		this.expirySpreadDays = expirySpreadDays;
+		this.today = DateUtil.getCurrentEpochDay();
+	}
+
+	/**
+	 * @return fridge lots, lotsPerItem at a time for randomly chosen items
+	 */
+	public List<Ingredient> createFridge(int lotCount) {
+		final List<Ingredient> fridgeItems = new ArrayList<Ingredient>(lotCount);
+		String item = null;
+		for (int i = 0; i < lotCount; i++) {
+			if (i % lotsPerItem == 0) {
+				item = createItem();
+			}
+			final Ingredient ingredient = new Ingredient();
+			ingredient.setItem(item);
+			ingredient.setAmount(1 + random.nextInt(500));
+			ingredient.setUnit(getUnit(item));
+			ingredient.setUseByEpochDay(createUseByEpochDay());
+			fridgeItems.add(ingredient);
+		}
+		return fridgeItems;
+	}
+
+	/**
+	 * @return fridge lots as the rows of a fridge CSV file
+	 */
+	public List<String[]> createFridgeRows(int lotCount) {
+		final List<String[]> rows = new ArrayList<String[]>(lotCount);
+		for (Ingredient lot : createFridge(lotCount)) {
+			rows.add(new String[]{lot.getItem(), Integer.toString(lot.getAmount()), lot.getUnit().name(), DateCodec.format(lot.getUseByEpochDay())});
+		}
+		return rows;
+	}
+
+	/**
+	 * @return useBy dates in the dd/MM/yyyy form of the fridge CSV file
+	 */
+	public String[] createUseByDates(int count) {
+		final String[] dates = new String[count];
+		for (int i = 0; i < count; i++) {
+			dates[i] = DateCodec.format(createUseByEpochDay());
+		}
+		return dates;
+	}
+
+	/**
+	 * @return recipes with between 1 and maxIngredients ingredients each
+	 */
+	public List<Recipe> createRecipes(int recipeCount, int maxIngredients) {
+		final List<Recipe> recipes = new ArrayList<Recipe>(recipeCount);
+		for (int r = 0; r < recipeCount; r++) {
+			final int ingredientCount = 1 + random.nextInt(maxIngredients);
+			final List<Ingredient> ingredients = new ArrayList<Ingredient>(ingredientCount);
+			for (int i = 0; i < ingredientCount; i++) {
+				final Ingredient ingredient = new Ingredient();
+				ingredient.setItem(createItem());
+				ingredient.setAmount(1 + random.nextInt(200));
+				ingredient.setUnit(getUnit(ingredient.getItem()));
+				ingredients.add(ingredient);
+			}
+			final Recipe recipe = new Recipe();
+			recipe.setName("recipe" + r);
+			recipe.setIngredients(ingredients);
+			recipes.add(recipe);
+		}
+		return recipes;
+	}
+
+	/**
+	 * @return the recipes as Json in the form of the recipes file
+	 */
+	public static String toJson(List<Recipe> recipes) {
+		final StringBuilder json = new StringBuilder("[");
+		for (int r = 0; r < recipes.size(); r++) {
+			if (r > 0) json.append(',');
+			json.append("{\"name\":\"").append(recipes.get(r).getName()).append("\",\"ingredients\":[");
+			boolean first = true;
+			for (Ingredient ingredient : recipes.get(r).getIngredients()) {
+				if (!first) json.append(',');
+				first = false;
+				json.append("{\"item\":\"").append(ingredient.getItem())
+						.append("\",\"amount\":\"").append(ingredient.getAmount())
+						.append("\",\"unit\":\"").append(ingredient.getUnit())
+						.append("\"}");
+			}
+			json.append("]}");
+		}
+		return json.append(']').toString();
+	}
+
+	private String createItem() {
+		return "item" + random.nextInt(itemCount);
+	}
+
+	/**
+	 * Each item is measured in one unit, as a recipe can only use fridge lots in a unit it can be converted from.
+	 */
+	private static Unit getUnit(String item) {
+		return UNITS[(item.hashCode() & Integer.MAX_VALUE) % UNITS.length];
+	}
+
+	private int createUseByEpochDay() {
+		return today - EXPIRED_DAYS + random.nextInt(expirySpreadDays);
+	}
+
+}
@@ -0,0 +1,165 @@
+package net.clareburt;
+
+import net.clareburt.exception.ParsingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a recipe catalog up to date with its recipes Json file. The file's directory is watched on a background
+ * thread, and when the file changes the new recipes are read and prepared on that thread and then swapped in with a
+ * single atomic write. Readers get the current catalog with one volatile read and never wait for a reload: a request
+ * that already has the old catalog finishes with it, and requests after the swap get the new one.
+ * <p>
+ * A file that cannot be parsed, eg. because it is still being written, or that holds no recipes, eg. because it has
+ * just been truncated, leaves the current catalog in place.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class CatalogWatcher implements Supplier<RecipeCatalog>, Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(CatalogWatcher.class);
+
+	/** How long the file must go without changing before it is reloaded, so that a burst of writes loads once. */
+	private static final long QUIET_MILLIS = 200;
+
+	private final RecipeFinder recipeFinder;
+	private final Path recipesPath;
+	private final AtomicReference<RecipeCatalog> catalog;
+	private final AtomicLong reloadCount = new AtomicLong();
+	private final WatchService watchService;
+	private final Thread watchThread;
+
+	/**
+	 * Loads the catalog and prepares to watch its file. Call start to begin watching.
+	 * @throws ParsingException if the recipes cannot be read
+	 * @throws IOException if the file's directory cannot be watched
+	 */
+	public CatalogWatcher(RecipeFinder recipeFinder, String recipesJsonFilename) throws ParsingException, IOException {
+		this.recipeFinder = recipeFinder;
+		this.recipesPath = Paths.get(recipesJsonFilename).toAbsolutePath();
+		this.catalog = new AtomicReference<RecipeCatalog>(recipeFinder.loadCatalog(recipesJsonFilename));
+		this.watchService = recipesPath.getFileSystem().newWatchService();
+		recipesPath.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		this.watchThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				watch();
+			}
+		}, "recipe-catalog-watcher");
+		watchThread.setDaemon(true);
+	}
+
+	public void start() {
+		watchThread.start();
+	}
+
+	/**
+	 * @return the current catalog
+	 */
+	@Override
+	public RecipeCatalog get() {
+		return catalog.get();
+	}
+
+	/**
+	 * @return the number of times a new catalog has been swapped in
+	 */
+	public long getReloadCount() {
+		return reloadCount.get();
+	}
+
+	/**
+	 * Reads and prepares the recipes file, then swaps the new catalog in. Suggestions cached for the old catalog are
+	 * dropped. The current catalog is kept if the file cannot be read or holds no recipes.
+	 * @return whether the new catalog was swapped in
+	 */
+	public boolean reload() {
+		final RecipeCatalog newCatalog;
+		try {
+			newCatalog = recipeFinder.loadCatalog(recipesPath.toString());
+		} catch (ParsingException e) {
+			logger.warn("Keeping the current recipe catalog: {}", e.getMessage());
+			return false;
+		} catch (RuntimeException e) {
+			// eg. a recipe with a null ingredient, which the parser lets through
+			logger.warn("Keeping the current recipe catalog, the recipes could not be prepared", e);
+			return false;
+		}
+		if (newCatalog.size() == 0) {
+			logger.warn("Keeping the current recipe catalog: {} holds no recipes", recipesPath);
+			return false;
+		}
+		final RecipeCatalog oldCatalog = catalog.getAndSet(newCatalog);
+		reloadCount.incrementAndGet();
+		recipeFinder.getRecipeCache().invalidateCatalog(oldCatalog);
+		logger.info("Reloaded {} recipes from {}", newCatalog.size(), recipesPath);
+		return true;
+	}
+
+	/**
+	 * Stops watching the file. The current catalog can still be used.
+	 */
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+	}
+
+	private void watch() {
+		try {
+			while (true) {
+				boolean changed = isRecipesFileChanged(watchService.take());
+				// Wait for the writes to settle before reading the file
+				WatchKey watchKey;
+				while ((watchKey = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+					changed |= isRecipesFileChanged(watchKey);
+				}
+				if (changed) {
+					reloadQuietly();
+				}
+			}
+		} catch (ClosedWatchServiceException e) {
+			logger.debug("Stopped watching {}", recipesPath);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Reloads the catalog, logging anything that goes wrong rather than letting it stop the watch thread.
+	 */
+	private void reloadQuietly() {
+		try {
+			reload();
+		} catch (RuntimeException e) {
+			logger.error("Failed to reload the recipe catalog from {}", recipesPath, e);
+		}
+	}
+
+	private boolean isRecipesFileChanged(WatchKey watchKey) {
+		boolean changed = false;
+		for (WatchEvent<?> event : watchKey.pollEvents()) {
+			// Events may have been lost on overflow, so the file may have changed
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW || recipesPath.getFileName().equals(event.context())) {
+				changed = true;
+			}
+		}
+		watchKey.reset();
+		return changed;
+	}
+
+}
@@ -0,0 +1,152 @@
+package net.clareburt;
+
+import net.clareburt.model.Ingredient;
+import net.clareburt.util.DateUtil;
+
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * Tells listeners when fridge lots pass their useBy date. Lots are held in a min-heap keyed by the epoch day on which
+ * they expire, so advancing the clock only touches the lots that have expired since the last advance. One scheduler
+ * can serve many fridges, each registering its own listener. A lot that leaves its fridge before it expires should be
+ * cancelled, as the scheduler holds on to the lot and its listener until then.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class ExpiryScheduler {
+
+	/**
+	 * Told when a scheduled lot has passed its useBy date.
+	 */
+	public interface ExpiryListener {
+
+		/**
+		 * @param lot Ingredient that has expired
+		 * @param currentDay epoch day that the scheduler has advanced to
+		 */
+		void expired(Ingredient lot, int currentDay);
+	}
+
+	private final Clock clock;
+	private final PriorityQueue<ScheduledLot> lots = new PriorityQueue<ScheduledLot>();
+	private int currentDay;
+	private long sequence;
+
+	/**
+	 * Creates a scheduler driven by the clock in DateUtil.
+	 */
+	public ExpiryScheduler() {
+		this(DateUtil.getClock());
+	}
+
+	public ExpiryScheduler(Clock clock) {
+		this.clock = clock;
+		this.currentDay = DateUtil.toEpochDay(clock);
+	}
+
+	/**
+	 * @return the epoch day as of the last time the scheduler was created or advanced
+	 */
+	public synchronized int getCurrentDay() {
+		return currentDay;
+	}
+
+	/**
+	 * Schedules the listener to be told when the lot passes its useBy date. A lot that has already expired is told on
+	 * the next advance.
+	 */
+	public synchronized void schedule(Ingredient lot, ExpiryListener listener) {
+		lots.add(new ScheduledLot(lot, listener, sequence++));
+	}
+
+	/**
+	 * Stops the listener being told about the lot, eg. because the lot has been used up. The lot is matched by
+	 * identity.
+	 * @return whether the lot was scheduled for the listener
+	 */
+	public synchronized boolean cancel(Ingredient lot, ExpiryListener listener) {
+		final Iterator<ScheduledLot> scheduledLots = lots.iterator();
+		while (scheduledLots.hasNext()) {
+			final ScheduledLot scheduledLot = scheduledLots.next();
+			if (scheduledLot.lot == lot && scheduledLot.listener == listener) {
+				scheduledLots.remove();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Stops the listener being told about any of its lots, eg. because the fridge it watches has been discarded.
+	 * @return the number of lots that were scheduled for the listener
+	 */
+	public synchronized int cancelAll(ExpiryListener listener) {
+		int cancelledCount = 0;
+		final Iterator<ScheduledLot> scheduledLots = lots.iterator();
+		while (scheduledLots.hasNext()) {
+			if (scheduledLots.next().listener == listener) {
+				scheduledLots.remove();
+				cancelledCount++;
+			}
+		}
+		return cancelledCount;
+	}
+
+	/**
+	 * Reads the clock and tells the listeners of every lot that has passed its useBy date, earliest first. The
+	 * listeners are called on the calling thread.
+	 * @return the number of lots that expired
+	 */
+	public int advance() {
+		int expiredCount = 0;
+		while (true) {
+			final ScheduledLot expired;
+			final int day;
+			synchronized (this) {
+				currentDay = Math.max(currentDay, DateUtil.toEpochDay(clock));
+				day = currentDay;
+				if (lots.isEmpty() || lots.peek().lot.getUseByEpochDay() >= day) {
+					return expiredCount;
+				}
+				expired = lots.poll();
+			}
+			expired.listener.expired(expired.lot, day);
+			expiredCount++;
+		}
+	}
+
+	/**
+	 * @return the number of lots waiting to expire
+	 */
+	public synchronized int size() {
+		return lots.size();
+	}
+
+	/**
+	 * A lot in the heap, ordered by useBy date and then by the order it was scheduled in.
+	 */
+	private static class ScheduledLot implements Comparable<ScheduledLot> {
+
+		private final Ingredient lot;
+		private final ExpiryListener listener;
+		private final long sequence;
+
+		ScheduledLot(Ingredient lot, ExpiryListener listener, long sequence) {
+			this.lot = lot;
+			this.listener = listener;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(ScheduledLot other) {
+			if (lot.getUseByEpochDay() != other.lot.getUseByEpochDay()) {
+				return lot.getUseByEpochDay() < other.lot.getUseByEpochDay() ? -1 : 1;
+			}
+			return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+		}
+	}
+
+}
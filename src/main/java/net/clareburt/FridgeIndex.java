@@ -0,0 +1,376 @@
+package net.clareburt;
+
+import net.clareburt.model.Ingredient;
+import net.clareburt.model.Unit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the items in the fridge keyed by item name. Each item maps to its lots ordered by useBy date, with the
+ * lots that have already expired left out, so that finding the best lot for a recipe ingredient is a hash lookup
+ * followed by a short ordered scan rather than a scan of the whole fridge.
+ * <p>
+ * The lots of an item are kept apart by base unit, as only amounts in units with the same base unit can be added up,
+ * and each group keeps a running total of its amounts in the base unit. A recipe ingredient can then be met from
+ * several lots, using up the ones that expire first, by a binary search of the running totals.
+ * <p>
+ * The running totals are brought up to date whenever the index changes, so looking lots up never writes to the index
+ * and can be done from several threads at once, eg. by a parallel search of the catalog. Changing the index is not
+ * thread safe.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class FridgeIndex {
+
+	private final Map<String, List<Lots>> lotsByItem = new HashMap<String, List<Lots>>();
+	private int currentDay;
+	private int lotCount;
+
+	/**
+	 * Creates an empty index to which fridge items can be added as they are read.
+	 * @param currentDay epoch day against which the useBy dates are checked
+	 */
+	public FridgeIndex(int currentDay) {
+		this.currentDay = currentDay;
+	}
+
+	/**
+	 * Builds the index of the fridge items that have not passed their useBy date.
+	 * @param fridgeItems Collection of Ingredients in the fridge
+	 * @param currentDay epoch day against which the useBy dates are checked
+	 */
+	public FridgeIndex(Collection<Ingredient> fridgeItems, int currentDay) {
+		this(currentDay);
+		// Append the lots in fridge order and sort each item's lots once, rather than inserting each lot in place
+		for (Ingredient fridgeItem : fridgeItems) {
+			if (fridgeItem.getUseByEpochDay() >= currentDay) {
+				getOrCreateLots(fridgeItem).append(fridgeItem);
+				lotCount++;
+			}
+		}
+		for (List<Lots> itemLots : lotsByItem.values()) {
+			for (int i = 0; i < itemLots.size(); i++) {
+				itemLots.get(i).sort();
+			}
+		}
+	}
+
+	/**
+	 * Adds a fridge item to the index, ignoring it if it has passed its useBy date. The item is placed after any lots
+	 * with the same useBy date so the index matches one built from the whole fridge at once.
+	 * @param fridgeItem Ingredient in the fridge
+	 */
+	public void add(Ingredient fridgeItem) {
+		if (fridgeItem.getUseByEpochDay() < currentDay) {
+			return;
+		}
+		getOrCreateLots(fridgeItem).add(fridgeItem);
+		lotCount++;
+	}
+
+	private Lots getOrCreateLots(Ingredient fridgeItem) {
+		List<Lots> itemLots = lotsByItem.get(fridgeItem.getItem());
+		if (itemLots == null) {
+			itemLots = new ArrayList<Lots>(1);
+			lotsByItem.put(fridgeItem.getItem(), itemLots);
+		}
+		final Unit baseUnit = getBaseUnit(fridgeItem.getUnit());
+		Lots lots = findLots(itemLots, baseUnit);
+		if (lots == null) {
+			lots = new Lots(baseUnit);
+			itemLots.add(lots);
+		}
+		return lots;
+	}
+
+	/**
+	 * Removes a fridge lot from the index. The lot is matched by identity so that equal lots are not confused.
+	 * @param fridgeItem Ingredient that was added to the index
+	 * @return whether the lot was in the index
+	 */
+	public boolean remove(Ingredient fridgeItem) {
+		final List<Lots> itemLots = lotsByItem.get(fridgeItem.getItem());
+		if (itemLots == null) {
+			return false;
+		}
+		for (int i = 0; i < itemLots.size(); i++) {
+			final Lots lots = itemLots.get(i);
+			if (lots.remove(fridgeItem)) {
+				lotCount--;
+				if (lots.isEmpty()) {
+					itemLots.remove(i);
+					if (itemLots.isEmpty()) {
+						lotsByItem.remove(fridgeItem.getItem());
+					}
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Changes the amount held by a fridge lot in the index, eg. when part of it has been used, keeping the running
+	 * totals in step. A lot that is not in the index just has its amount set.
+	 * @param fridgeItem Ingredient that was added to the index
+	 * @param amount the amount now left in the lot
+	 */
+	public void setAmount(Ingredient fridgeItem, int amount) {
+		fridgeItem.setAmount(amount);
+		final List<Lots> itemLots = lotsByItem.get(fridgeItem.getItem());
+		if (itemLots != null) {
+			final Lots lots = findLots(itemLots, getBaseUnit(fridgeItem.getUnit()));
+			if (lots != null) {
+				lots.updateTotals();
+			}
+		}
+	}
+
+	public int getCurrentDay() {
+		return currentDay;
+	}
+
+	/**
+	 * Moves the index on to a later day so that lots added from then on are checked against it. Lots already in the
+	 * index are kept; removing them as they expire is left to the caller, eg. through an ExpiryScheduler.
+	 * @param currentDay epoch day against which the useBy dates are checked
+	 */
+	public void setCurrentDay(int currentDay) {
+		this.currentDay = currentDay;
+	}
+
+	/**
+	 * @return the number of lots in date in the index
+	 */
+	public int getLotCount() {
+		return lotCount;
+	}
+
+	public boolean isEmpty() {
+		return lotsByItem.isEmpty();
+	}
+
+	/**
+	 * @return the names of the items that have at least one lot in date
+	 */
+	public Set<String> getItems() {
+		return lotsByItem.keySet();
+	}
+
+	/**
+	 * @return the earliest useBy epoch day of the item's lots in date, in any unit, or Integer.MAX_VALUE if the item
+	 * has none
+	 */
+	public int getEarliestUseByEpochDay(String item) {
+		final List<Lots> itemLots = lotsByItem.get(item);
+		int earliest = Integer.MAX_VALUE;
+		if (itemLots != null) {
+			for (int i = 0; i < itemLots.size(); i++) {
+				earliest = Math.min(earliest, itemLots.get(i).lots.get(0).getUseByEpochDay());
+			}
+		}
+		return earliest;
+	}
+
+	/**
+	 * Finds the single fridge lot with the closest useBy date that holds enough of the recipe ingredient, in a unit
+	 * with the same base unit.
+	 * @param recipeIngredient Ingredient required by a recipe
+	 * @return the matching fridge lot, or null if no lot in date can cover the amount on its own
+	 */
+	public Ingredient findItemWithClosestUseByDate(Ingredient recipeIngredient) {
+		final Lots lots = getLots(recipeIngredient.getItem(), recipeIngredient.getUnit());
+		if (lots == null) {
+			return null;
+		}
+		final long required = toBaseAmount(recipeIngredient.getAmount(), recipeIngredient.getUnit());
+		for (Ingredient lot : lots.lots) {
+			if (toBaseAmount(lot.getAmount(), lot.getUnit()) >= required) {
+				return lot;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Works out which lots of the item meet the amount when the lots that expire first are used up first. Amounts are
+	 * compared in their base unit, so eg. a lot of 1 kilograms can meet 500 grams, but lots in units that cannot be
+	 * converted to the required unit are not used.
+	 * @param item name of the item required
+	 * @param amount amount of the item required
+	 * @param unit Unit of the amount, or null if it has none
+	 * @return the lots to use, ordered by useBy date, or null if the lots in date do not hold enough. The list is a
+	 * view of the index and must not be kept once the index has changed.
+	 */
+	public List<Ingredient> allocate(String item, int amount, Unit unit) {
+		return allocate(item, amount, unit, 0);
+	}
+
+	/**
+	 * Works out which lots of the item meet the amount once an amount already taken from the item, eg. by an earlier
+	 * ingredient of the same recipe, has been used up from the lots that expire first.
+	 * @param item name of the item required
+	 * @param amount amount of the item required
+	 * @param unit Unit of the amount, or null if it has none
+	 * @param taken amount already taken from the lots in units with the same base unit, in the base unit
+	 * @return the lots to use, ordered by useBy date and starting with the first lot that has some of the item left, or
+	 * null if the lots in date do not hold enough. The list is a view of the index and must not be kept once the index
+	 * has changed.
+	 */
+	public List<Ingredient> allocate(String item, int amount, Unit unit, long taken) {
+		final Lots lots = getLots(item, unit);
+		if (lots == null) {
+			return null;
+		}
+		final int lotsUsed = lots.countLotsToCover(taken + toBaseAmount(amount, unit));
+		if (lotsUsed < 0) {
+			return null;
+		}
+		if (taken == 0) {
+			return lots.lots.subList(0, lotsUsed);
+		}
+		// The first lot with some of the item left is the first whose running total goes past the amount taken
+		final int firstLot = lots.countLotsToCover(taken + 1) - 1;
+		return firstLot < 0 ? null : lots.lots.subList(firstLot, Math.max(lotsUsed, firstLot + 1));
+	}
+
+	private Lots getLots(String item, Unit unit) {
+		final List<Lots> itemLots = lotsByItem.get(item);
+		return itemLots == null ? null : findLots(itemLots, getBaseUnit(unit));
+	}
+
+	private static Lots findLots(List<Lots> itemLots, Unit baseUnit) {
+		for (int i = 0; i < itemLots.size(); i++) {
+			final Lots lots = itemLots.get(i);
+			if (lots.baseUnit == baseUnit) {
+				return lots;
+			}
+		}
+		return null;
+	}
+
+	static Unit getBaseUnit(Unit unit) {
+		return unit == null ? null : unit.getBaseUnit();
+	}
+
+	static long toBaseAmount(int amount, Unit unit) {
+		return unit == null ? amount : unit.toBaseAmount(amount);
+	}
+
+	/**
+	 * The lots of one item in units with the same base unit, ordered by useBy date, with the running total of their
+	 * amounts in the base unit. The totals are worked out again each time the lots change.
+	 */
+	private static class Lots {
+
+		private static final Comparator<Ingredient> USE_BY_ORDER = new Comparator<Ingredient>() {
+			@Override
+			public int compare(Ingredient lot, Ingredient otherLot) {
+				return Integer.compare(lot.getUseByEpochDay(), otherLot.getUseByEpochDay());
+			}
+		};
+
+		private final Unit baseUnit;
+		private final List<Ingredient> lots = new ArrayList<Ingredient>(2);
+		private long[] totals = new long[2];
+
+		Lots(Unit baseUnit) {
+			this.baseUnit = baseUnit;
+		}
+
+		/**
+		 * Inserts the lot after the lots with the same or an earlier useBy date.
+		 */
+		void add(Ingredient lot) {
+			// Binary search for the first lot with a later useBy date
+			int low = 0;
+			int high = lots.size();
+			while (low < high) {
+				final int middle = (low + high) >>> 1;
+				if (lots.get(middle).getUseByEpochDay() <= lot.getUseByEpochDay()) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			lots.add(low, lot);
+			updateTotals();
+		}
+
+		/**
+		 * Adds the lot at the end, leaving the lots to be put in order, and the totals worked out, by sort.
+		 */
+		void append(Ingredient lot) {
+			lots.add(lot);
+		}
+
+		/**
+		 * Orders the lots by useBy date and works out their running totals. The sort is stable, so lots with the same
+		 * date keep the order they were added in.
+		 */
+		void sort() {
+			Collections.sort(lots, USE_BY_ORDER);
+			updateTotals();
+		}
+
+		boolean remove(Ingredient lot) {
+			for (int i = 0; i < lots.size(); i++) {
+				if (lots.get(i) == lot) {
+					lots.remove(i);
+					updateTotals();
+					return true;
+				}
+			}
+			return false;
+		}
+
+		boolean isEmpty() {
+			return lots.isEmpty();
+		}
+
+		/**
+		 * @return the number of lots, taken in useBy order, whose amounts add up to at least the required amount, or
+		 * -1 if all of them together do not. At least one lot is used even when nothing is required.
+		 */
+		int countLotsToCover(long required) {
+			final int size = lots.size();
+			if (totals[size - 1] < required) {
+				return -1;
+			}
+			// Binary search for the first running total that reaches the amount
+			int low = 0;
+			int high = size - 1;
+			while (low < high) {
+				final int middle = (low + high) >>> 1;
+				if (totals[middle] < required) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low + 1;
+		}
+
+		void updateTotals() {
+			final int size = lots.size();
+			if (totals.length < size) {
+				totals = new long[Math.max(size, totals.length * 2)];
+			}
+			long total = 0;
+			for (int i = 0; i < size; i++) {
+				final Ingredient lot = lots.get(i);
+				total += toBaseAmount(Math.max(lot.getAmount(), 0), lot.getUnit());
+				totals[i] = total;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,402 @@
+package net.clareburt;
+
+import net.clareburt.model.Ingredient;
+import net.clareburt.model.Unit;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Fridge lots of many households held outside the Java heap, in a direct buffer or a memory mapped file, so that every
+ * household's fridge can be kept resident without filling the heap or lengthening garbage collection. Each lot is a
+ * fixed width record of item ID, amount, unit, useBy epoch day and household ID, stored as a column per field. The
+ * lots of a household are kept together in one extent, ordered by item and then by useBy date, so the lots of an item
+ * are a short run that recipes can be matched against without creating Ingredient objects.
+ * <p>
+ * Households are added whole, in increasing household ID order, so that a household's extent can be found by binary
+ * search. The capacities are fixed when the store is created. The buffer is big endian and laid out as:
+ * <pre>
+ * header        int magic, int format version, int lot capacity, int household capacity, int item capacity,
+ *               int string capacity, int lot count, int household count, int item count, int string data length
+ * items         int end offset of each item name in the string data, which starts where the previous name ends
+ * lot columns   int item ID, int amount, int unit ordinal or -1, int useBy epoch day and int household ID, each a
+ *               column of lot capacity ints
+ * extents       per household: int household ID, int first lot, int lot count
+ * string data   UTF-8 bytes of the item names
+ * </pre>
+ * The counts in the header are updated after each household is written, so a mapped file always holds the households
+ * added before it was last written to. Households must be added from one thread; households already added can be
+ * read from any thread. Writes to a buffer are not ordered between threads, so the lot and household counts are also
+ * published through volatile fields, written after the household's lots and read before them.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class FridgeStore {
+
+	/** Extension of fridge store files. */
+	public static final String FILE_EXTENSION = ".fstore";
+
+	/** Returned by findHousehold for a household that is not in the store. */
+	public static final int NOT_FOUND = -1;
+
+	private static final int MAGIC = 0x46535452;
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 10 * 4;
+	private static final int EXTENT_SIZE = 3 * 4;
+	private static final int COLUMN_COUNT = 5;
+	private static final int LOT_COUNT = 24;
+	private static final int HOUSEHOLD_COUNT = 28;
+	private static final int ITEM_COUNT = 32;
+	private static final int STRING_DATA_LENGTH = 36;
+	private static final Unit[] UNITS = Unit.values();
+
+	private final ByteBuffer buffer;
+	private final int lotCapacity;
+	private final int householdCapacity;
+	private final int itemCapacity;
+	private final int stringCapacity;
+	private final int itemEnds;
+	private final int itemIds;
+	private final int amounts;
+	private final int units;
+	private final int useBys;
+	private final int householdIds;
+	private final int extents;
+	private final int stringData;
+	// Written after the lots and extent they count, so a thread that reads them sees those too
+	private volatile int lotCount;
+	private volatile int householdCount;
+
+	// Item names are few, so they are also kept on the heap for lookup by name
+	private final List<String> itemNames = new CopyOnWriteArrayList<String>();
+	private final Map<String, Integer> itemIdsByName = new ConcurrentHashMap<String, Integer>();
+
+	private FridgeStore(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not a fridge store file");
+		}
+		if (buffer.getInt(4) != FORMAT_VERSION) {
+			throw new IOException("Unsupported fridge store version: " + buffer.getInt(4));
+		}
+		lotCapacity = buffer.getInt(8);
+		householdCapacity = buffer.getInt(12);
+		itemCapacity = buffer.getInt(16);
+		stringCapacity = buffer.getInt(20);
+		itemEnds = HEADER_SIZE;
+		itemIds = itemEnds + itemCapacity * 4;
+		amounts = itemIds + lotCapacity * 4;
+		units = amounts + lotCapacity * 4;
+		useBys = units + lotCapacity * 4;
+		householdIds = useBys + lotCapacity * 4;
+		extents = householdIds + lotCapacity * 4;
+		stringData = extents + householdCapacity * EXTENT_SIZE;
+		if (stringData + stringCapacity != buffer.limit()) {
+			throw new IOException("Fridge store file is truncated");
+		}
+		lotCount = buffer.getInt(LOT_COUNT);
+		householdCount = buffer.getInt(HOUSEHOLD_COUNT);
+		final int itemCount = buffer.getInt(ITEM_COUNT);
+		for (int itemId = 0; itemId < itemCount; itemId++) {
+			final String item = readItemName(itemId);
+			itemNames.add(item);
+			itemIdsByName.put(item, itemId);
+		}
+	}
+
+	/**
+	 * Creates an empty store in a direct buffer.
+	 * @param lotCapacity the most lots the store can hold
+	 * @param householdCapacity the most households the store can hold
+	 * @param itemCapacity the most distinct item names the store can hold
+	 * @param stringCapacity the most bytes the item names can take, encoded as UTF-8
+	 */
+	public static FridgeStore allocate(int lotCapacity, int householdCapacity, int itemCapacity, int stringCapacity) {
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(getSize(lotCapacity, householdCapacity, itemCapacity, stringCapacity));
+		return initialise(buffer, lotCapacity, householdCapacity, itemCapacity, stringCapacity);
+	}
+
+	/**
+	 * Creates an empty store in a memory mapped file, replacing the file if it exists.
+	 * @throws IOException if the file cannot be created
+	 */
+	public static FridgeStore create(File file, int lotCapacity, int householdCapacity, int itemCapacity, int stringCapacity) throws IOException {
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			final long size = getSize(lotCapacity, householdCapacity, itemCapacity, stringCapacity);
+			randomAccessFile.setLength(0);
+			randomAccessFile.setLength(size);
+			// The mapping stays valid once the channel is closed
+			final ByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+			return initialise(buffer, lotCapacity, householdCapacity, itemCapacity, stringCapacity);
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Maps a store file written by a store from create, so that its households can be read and more can be added.
+	 * @throws IOException if the file cannot be read or is not a fridge store file
+	 */
+	public static FridgeStore open(File file) throws IOException {
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			final FileChannel channel = randomAccessFile.getChannel();
+			return new FridgeStore(channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	private static int getSize(int lotCapacity, int householdCapacity, int itemCapacity, int stringCapacity) {
+		if (lotCapacity < 0 || householdCapacity < 0 || itemCapacity < 0 || stringCapacity < 0) {
+			throw new IllegalArgumentException("Capacities must not be negative");
+		}
+		final long size = HEADER_SIZE + itemCapacity * 4L + lotCapacity * 4L * COLUMN_COUNT
+				+ householdCapacity * (long) EXTENT_SIZE + stringCapacity;
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Fridge store would be larger than 2GB: " + size + " bytes");
+		}
+		return (int) size;
+	}
+
+	private static FridgeStore initialise(ByteBuffer buffer, int lotCapacity, int householdCapacity, int itemCapacity, int stringCapacity) {
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, FORMAT_VERSION);
+		buffer.putInt(8, lotCapacity);
+		buffer.putInt(12, householdCapacity);
+		buffer.putInt(16, itemCapacity);
+		buffer.putInt(20, stringCapacity);
+		try {
+			return new FridgeStore(buffer);
+		} catch (IOException e) {
+			throw new IllegalStateException("Fridge store header is invalid", e);
+		}
+	}
+
+	/**
+	 * Adds the lots of a household. The household ID must be greater than that of every household already added. Lots
+	 * without an item name are left out.
+	 * @throws IllegalArgumentException if the household ID is not greater than the last one added
+	 * @throws IllegalStateException if the store does not have room for the household
+	 */
+	public void addHousehold(int householdId, Collection<Ingredient> fridgeItems) {
+		final int householdCount = getHouseholdCount();
+		if (householdCount > 0 && householdId <= getHouseholdId(householdCount - 1)) {
+			throw new IllegalArgumentException("Households must be added in increasing ID order: " + householdId);
+		}
+		if (householdCount == householdCapacity) {
+			throw new IllegalStateException("Fridge store is full: " + householdCapacity + " households");
+		}
+		final List<Ingredient> lots = new ArrayList<Ingredient>(fridgeItems.size());
+		for (Ingredient fridgeItem : fridgeItems) {
+			if (fridgeItem.getItem() != null) {
+				lots.add(fridgeItem);
+			}
+		}
+		final int start = getLotCount();
+		if (lots.size() > lotCapacity - start) {
+			throw new IllegalStateException("Fridge store is full: " + lotCapacity + " lots");
+		}
+		final int[] lotItemIds = new int[lots.size()];
+		final Integer[] order = new Integer[lots.size()];
+		for (int i = 0; i < lots.size(); i++) {
+			lotItemIds[i] = internItem(lots.get(i).getItem());
+			order[i] = i;
+		}
+		// A stable sort, so lots of an item with the same useBy date keep their fridge order
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				if (lotItemIds[a] != lotItemIds[b]) {
+					return lotItemIds[a] < lotItemIds[b] ? -1 : 1;
+				}
+				return Integer.compare(lots.get(a).getUseByEpochDay(), lots.get(b).getUseByEpochDay());
+			}
+		});
+		for (int i = 0; i < order.length; i++) {
+			final Ingredient lot = lots.get(order[i]);
+			final int offset = (start + i) * 4;
+			buffer.putInt(itemIds + offset, lotItemIds[order[i]]);
+			buffer.putInt(amounts + offset, lot.getAmount());
+			buffer.putInt(units + offset, lot.getUnit() == null ? NOT_FOUND : lot.getUnit().ordinal());
+			buffer.putInt(useBys + offset, lot.getUseByEpochDay());
+			buffer.putInt(householdIds + offset, householdId);
+		}
+		final int extent = extents + householdCount * EXTENT_SIZE;
+		buffer.putInt(extent, householdId);
+		buffer.putInt(extent + 4, start);
+		buffer.putInt(extent + 8, lots.size());
+		// Publish the household only once its lots are written
+		buffer.putInt(LOT_COUNT, start + lots.size());
+		buffer.putInt(HOUSEHOLD_COUNT, householdCount + 1);
+		lotCount = start + lots.size();
+		this.householdCount = householdCount + 1;
+	}
+
+	/**
+	 * @return the position of the household's extent, or NOT_FOUND if the household is not in the store
+	 */
+	public int findHousehold(int householdId) {
+		int low = 0;
+		int high = getHouseholdCount() - 1;
+		while (low <= high) {
+			final int middle = (low + high) >>> 1;
+			final int middleId = getHouseholdId(middle);
+			if (middleId < householdId) {
+				low = middle + 1;
+			} else if (middleId > householdId) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return NOT_FOUND;
+	}
+
+	public int getHouseholdCount() {
+		return householdCount;
+	}
+
+	public int getLotCount() {
+		return lotCount;
+	}
+
+	public int getItemCount() {
+		// The heap copy of the names, which is safe to read from any thread
+		return itemNames.size();
+	}
+
+	/**
+	 * @param household position of the household's extent, from findHousehold
+	 */
+	public int getHouseholdId(int household) {
+		return buffer.getInt(extents + household * EXTENT_SIZE);
+	}
+
+	/**
+	 * @param household position of the household's extent, from findHousehold
+	 * @return the position of the household's first lot
+	 */
+	public int getLotStart(int household) {
+		return buffer.getInt(extents + household * EXTENT_SIZE + 4);
+	}
+
+	/**
+	 * @param household position of the household's extent, from findHousehold
+	 * @return the position after the household's last lot
+	 */
+	public int getLotEnd(int household) {
+		return getLotStart(household) + buffer.getInt(extents + household * EXTENT_SIZE + 8);
+	}
+
+	public int getItemId(int lot) {
+		return buffer.getInt(itemIds + lot * 4);
+	}
+
+	public int getAmount(int lot) {
+		return buffer.getInt(amounts + lot * 4);
+	}
+
+	/**
+	 * @return the unit of the lot, or null if it has none
+	 */
+	public Unit getUnit(int lot) {
+		final int unit = buffer.getInt(units + lot * 4);
+		return unit == NOT_FOUND ? null : UNITS[unit];
+	}
+
+	public int getUseByEpochDay(int lot) {
+		return buffer.getInt(useBys + lot * 4);
+	}
+
+	public int getLotHouseholdId(int lot) {
+		return buffer.getInt(householdIds + lot * 4);
+	}
+
+	public String getItemName(int itemId) {
+		return itemNames.get(itemId);
+	}
+
+	/**
+	 * @return the ID of the item, or NOT_FOUND if no lot in the store has ever held it
+	 */
+	public int getItemId(String item) {
+		final Integer itemId = itemIdsByName.get(item);
+		return itemId == null ? NOT_FOUND : itemId;
+	}
+
+	/**
+	 * Creates Ingredients for the household's lots, eg. to show them. Matching recipes does not need them.
+	 */
+	public List<Ingredient> getIngredients(int household) {
+		final int end = getLotEnd(household);
+		if (end == getLotStart(household)) {
+			return Collections.emptyList();
+		}
+		final List<Ingredient> ingredients = new ArrayList<Ingredient>(end - getLotStart(household));
+		for (int lot = getLotStart(household); lot < end; lot++) {
+			final Ingredient ingredient = new Ingredient();
+			ingredient.setItem(getItemName(getItemId(lot)));
+			ingredient.setAmount(getAmount(lot));
+			ingredient.setUnit(getUnit(lot));
+			ingredient.setUseByEpochDay(getUseByEpochDay(lot));
+			ingredients.add(ingredient);
+		}
+		return ingredients;
+	}
+
+	private int internItem(String item) {
+		final Integer itemId = itemIdsByName.get(item);
+		if (itemId != null) {
+			return itemId;
+		}
+		final int itemCount = getItemCount();
+		final byte[] bytes = item.getBytes(StandardCharsets.UTF_8);
+		final int stringDataLength = buffer.getInt(STRING_DATA_LENGTH);
+		if (itemCount == itemCapacity || bytes.length > stringCapacity - stringDataLength) {
+			throw new IllegalStateException("Fridge store has no room for another item: " + item);
+		}
+		for (int i = 0; i < bytes.length; i++) {
+			buffer.put(stringData + stringDataLength + i, bytes[i]);
+		}
+		buffer.putInt(itemEnds + itemCount * 4, stringDataLength + bytes.length);
+		buffer.putInt(STRING_DATA_LENGTH, stringDataLength + bytes.length);
+		buffer.putInt(ITEM_COUNT, itemCount + 1);
+		itemNames.add(item);
+		itemIdsByName.put(item, itemCount);
+		return itemCount;
+	}
+
+	private String readItemName(int itemId) {
+		final int start = itemId == 0 ? 0 : buffer.getInt(itemEnds + (itemId - 1) * 4);
+		final byte[] bytes = new byte[buffer.getInt(itemEnds + itemId * 4) - start];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(stringData + start + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public String toString() {
+		return "FridgeStore{" +
+				"householdCount=" + getHouseholdCount() +
+				", lotCount=" + getLotCount() +
+				", itemCount=" + getItemCount() +
+				'}';
+	}
+}
@@ -0,0 +1,100 @@
+package net.clareburt;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import net.clareburt.model.Ingredient;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes an Ingredient field by field, without reflection. The amount is read straight to an int whether
+ * the Json gives it as a number or as a string, eg. "amount":"2". Fields that an Ingredient does not have are skipped,
+ * and a missing or null amount or useBy leaves the Ingredient's default, as Gson's reflective adapter does.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+class IngredientTypeAdapter extends TypeAdapter<Ingredient> {
+
+	private final UnitTypeAdapter unitAdapter;
+
+	IngredientTypeAdapter(UnitTypeAdapter unitAdapter) {
+		this.unitAdapter = unitAdapter;
+	}
+
+	@Override
+	public Ingredient read(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		final Ingredient ingredient = new Ingredient();
+		in.beginObject();
+		while (in.hasNext()) {
+			final String name = in.nextName();
+			if ("item".equals(name)) {
+				ingredient.setItem(readString(in));
+			} else if ("amount".equals(name)) {
+				if (in.peek() == JsonToken.NULL) {
+					in.nextNull();
+				} else {
+					ingredient.setAmount(readInt(in));
+				}
+			} else if ("unit".equals(name)) {
+				ingredient.setUnit(unitAdapter.read(in));
+			} else if ("useBy".equals(name)) {
+				if (in.peek() == JsonToken.NULL) {
+					in.nextNull();
+				} else {
+					ingredient.setUseByEpochDay(readInt(in));
+				}
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return ingredient;
+	}
+
+	@Override
+	public void write(JsonWriter out, Ingredient ingredient) throws IOException {
+		if (ingredient == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginObject();
+		out.name("item").value(ingredient.getItem());
+		out.name("amount").value(ingredient.getAmount());
+		out.name("unit");
+		unitAdapter.write(out, ingredient.getUnit());
+		out.name("useBy").value(ingredient.getUseByEpochDay());
+		out.endObject();
+	}
+
+	/**
+	 * Reads a string as Gson does, which also takes a number or boolean as its text.
+	 */
+	static String readString(JsonReader in) throws IOException {
+		final JsonToken token = in.peek();
+		if (token == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		if (token == JsonToken.BOOLEAN) {
+			return Boolean.toString(in.nextBoolean());
+		}
+		return in.nextString();
+	}
+
+	private static int readInt(JsonReader in) throws IOException {
+		try {
+			return in.nextInt();
+		} catch (NumberFormatException e) {
+			throw new JsonSyntaxException(e);
+		}
+	}
+
+}
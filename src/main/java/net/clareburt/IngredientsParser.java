@@ -1,10 +1,13 @@
 package net.clareburt;
 
+import au.com.bytecode.opencsv.CSVReader;
 import net.clareburt.model.Ingredient;
 
+import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.function.Consumer;
 
 /**
  * @author Justin Clareburt
@@ -12,14 +15,60 @@ import java.util.Collection;
  */
 public class IngredientsParser {
 
+	private static final int COLUMN_COUNT = 4;
+
 	public Collection<Ingredient> getIngredients(Collection<String[]> csvData) throws ParseException {
 		final ArrayList<Ingredient> ingredients = new ArrayList<Ingredient>();
 		if (csvData != null) {
+			int lineNumber = 0;
 			for (String[] row : csvData) {
-				ingredients.add(new Ingredient(row[0], row[1], row[2], row[3]));
+				lineNumber++;
+				if (isBlank(row)) continue;
+				ingredients.add(parseRow(row, lineNumber));
 			}
 		}
 		return ingredients;
 	}
 
+	/**
+	 * Reads the fridge CSV one row at a time, handing each Ingredient to the consumer as soon as its row has been
+	 * parsed. The raw rows are not kept, so the consumer can start using the fridge items before the whole file has
+	 * been read. Blank lines are skipped.
+	 * @param csvReader CSVReader over the fridge items
+	 * @param consumer Consumer that is given each fridge item in file order
+	 * @throws ParseException if a row is not a valid fridge item. The error offset is the line number of the row.
+	 */
+	public void readIngredients(CSVReader csvReader, Consumer<? super Ingredient> consumer) throws IOException, ParseException {
+		int lineNumber = 0;
+		String[] row;
+		while ((row = csvReader.readNext()) != null) {
+			lineNumber++;
+			if (isBlank(row)) continue;
+			consumer.accept(parseRow(row, lineNumber));
+		}
+	}
+
+	Ingredient parseRow(String[] row, int lineNumber) throws ParseException {
+		if (row.length < COLUMN_COUNT) {
+			throw invalidRow(lineNumber, "expected " + COLUMN_COUNT + " columns but found " + row.length);
+		}
+		try {
+			return new Ingredient(row[0], row[1], row[2], row[3]);
+		} catch (NumberFormatException e) {
+			throw invalidRow(lineNumber, "invalid amount '" + row[1] + "'");
+		} catch (IllegalArgumentException e) {
+			throw invalidRow(lineNumber, "invalid unit '" + row[2] + "'");
+		} catch (ParseException e) {
+			throw invalidRow(lineNumber, e.getMessage());
+		}
+	}
+
+	boolean isBlank(String[] row) {
+		return row.length == 1 && row[0].trim().isEmpty();
+	}
+
+	private ParseException invalidRow(int lineNumber, String reason) {
+		return new ParseException("Invalid fridge item on line " + lineNumber + ": " + reason, lineNumber);
+	}
+
 }
@@ -0,0 +1,439 @@
+package net.clareburt;
+
+import au.com.bytecode.opencsv.CSVReader;
+import net.clareburt.model.Ingredient;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Loads a fridge CSV file in parallel. The file is memory mapped and split into chunks at line boundaries, each chunk
+ * is decoded and parsed into Ingredients on its own thread, and the chunks are merged back in file order, so the
+ * result is the same as reading the file with CSVReader and IngredientsParser.readIngredients, including the line
+ * numbers of invalid rows.
+ * <p>
+ * Rows follow the rules of CSVReader with its defaults: fields are separated by commas and may be quoted with double
+ * quotes, a quote within a quoted field is written twice or escaped with a backslash, and a quoted field may go on
+ * over several lines, the line breaks within it being read as '\n'. A chunk must not start inside a quoted field, so
+ * the chunks are first scanned in parallel twice over, once as if they start outside quotes and once as if they start
+ * inside them. Whether each really starts inside quotes then follows from the chunk before it, and a chunk that does is
+ * started from its first line break outside quotes instead.
+ * <p>
+ * Line breaks, quotes and separators are found in the raw bytes, so only charsets in which these characters are
+ * single bytes that do not occur within other characters are supported, see isSupported.
+ * <p>
+ * A buffer can map at most 2 GB, so a larger file is read on the calling thread with CSVReader instead.
+ * <p>
+ * A loader created with a parallelism above 1 has its own pool of threads, which are shut down when it is closed.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class MappedIngredientsLoader implements Closeable {
+
+	/** Smallest chunk a file is split into, in bytes. A file smaller than two chunks is read on the calling thread. */
+	public static final int DEFAULT_MIN_CHUNK_SIZE = 256 * 1024;
+
+	private static final char SEPARATOR = ',';
+	private static final char QUOTE = '"';
+	private static final char ESCAPE = '\\';
+	private static final int NOT_FOUND = -1;
+
+	/** Largest file that is mapped, in bytes. Larger files are read with CSVReader. */
+	static final long MAX_MAPPED_SIZE = Integer.MAX_VALUE;
+
+	private final IngredientsParser ingredientsParser;
+	private final int parallelism;
+	private final int minChunkSize;
+	private final long maxMappedSize;
+	private final ForkJoinPool pool;
+
+	public MappedIngredientsLoader(IngredientsParser ingredientsParser, int parallelism) {
+		this(ingredientsParser, parallelism, DEFAULT_MIN_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param ingredientsParser IngredientsParser used to parse each row
+	 * @param parallelism number of threads used to parse a file, 1 to parse on the calling thread
+	 * @param minChunkSize smallest chunk a file is split into, in bytes
+	 */
+	public MappedIngredientsLoader(IngredientsParser ingredientsParser, int parallelism, int minChunkSize) {
+		this(ingredientsParser, parallelism, minChunkSize, MAX_MAPPED_SIZE);
+	}
+
+	/**
+	 * @param maxMappedSize largest file that is mapped, in bytes, at most MAX_MAPPED_SIZE
+	 */
+	MappedIngredientsLoader(IngredientsParser ingredientsParser, int parallelism, int minChunkSize, long maxMappedSize) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+		}
+		if (minChunkSize < 1) {
+			throw new IllegalArgumentException("minChunkSize must be at least 1: " + minChunkSize);
+		}
+		this.ingredientsParser = ingredientsParser;
+		this.parallelism = parallelism;
+		this.minChunkSize = minChunkSize;
+		this.maxMappedSize = Math.min(maxMappedSize, MAX_MAPPED_SIZE);
+		this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+	}
+
+	/**
+	 * @return whether files in the charset can be loaded, which is so for UTF-8, US-ASCII and ISO-8859-1
+	 */
+	public static boolean isSupported(Charset charset) {
+		return StandardCharsets.UTF_8.equals(charset) || StandardCharsets.US_ASCII.equals(charset) || StandardCharsets.ISO_8859_1.equals(charset);
+	}
+
+	/**
+	 * Shuts down the threads used to parse files. Files can no longer be loaded in parallel, and loading one that
+	 * would be split into chunks fails with a RejectedExecutionException.
+	 */
+	@Override
+	public void close() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Loads the fridge items from a file in the platform's default charset, as FileReader reads it.
+	 */
+	public List<Ingredient> load(File file) throws IOException, ParseException {
+		return load(file, Charset.defaultCharset());
+	}
+
+	/**
+	 * Loads the fridge items from a file. Blank lines are skipped. A file too large to map is read with CSVReader.
+	 * @return the fridge items in file order
+	 * @throws IOException if the file cannot be read
+	 * @throws ParseException if a row is not a valid fridge item. The error offset is the line number of the first
+	 * such row, counted as IngredientsParser.readIngredients counts it.
+	 */
+	public List<Ingredient> load(File file, Charset charset) throws IOException, ParseException {
+		if (!isSupported(charset)) {
+			throw new IllegalArgumentException("Unsupported charset: " + charset);
+		}
+		if (file.length() > maxMappedSize) {
+			return read(file, charset);
+		}
+		final ByteBuffer buffer = map(file);
+		final int[] starts = findChunkStarts(buffer);
+		final List<Chunk> chunks = new ArrayList<Chunk>(starts.length);
+		for (int i = 0; i < starts.length; i++) {
+			chunks.add(new Chunk(buffer, starts[i], i + 1 < starts.length ? starts[i + 1] : buffer.limit(), charset));
+		}
+		invokeAll(chunks);
+
+		int ingredientCount = 0;
+		int rowCount = 0;
+		for (Chunk chunk : chunks) {
+			if (chunk.invalidRow != null) {
+				// Parse the row again with its line number in the file, which throws the same error for it
+				ingredientsParser.parseRow(chunk.invalidRow, rowCount + chunk.invalidRowNumber);
+			}
+			ingredientCount += chunk.ingredients.size();
+			rowCount += chunk.rowCount;
+		}
+		final List<Ingredient> ingredients = new ArrayList<Ingredient>(ingredientCount);
+		for (Chunk chunk : chunks) {
+			ingredients.addAll(chunk.ingredients);
+		}
+		return ingredients;
+	}
+
+	/**
+	 * Reads the fridge items from a file with CSVReader, on the calling thread.
+	 */
+	private List<Ingredient> read(File file, Charset charset) throws IOException, ParseException {
+		final List<Ingredient> ingredients = new ArrayList<Ingredient>();
+		final CSVReader csvReader = new CSVReader(new InputStreamReader(new FileInputStream(file), charset));
+		try {
+			ingredientsParser.readIngredients(csvReader, new Consumer<Ingredient>() {
+				@Override
+				public void accept(Ingredient ingredient) {
+					ingredients.add(ingredient);
+				}
+			});
+		} finally {
+			csvReader.close();
+		}
+		return ingredients;
+	}
+
+	private static ByteBuffer map(File file) throws IOException {
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			// The mapping stays valid once the channel is closed
+			final FileChannel channel = randomAccessFile.getChannel();
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("File is too large to map: " + file);
+			}
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Splits the file into about even chunks, one for each thread, that each start at the beginning of a row.
+	 * @return the offset of each chunk, in ascending order
+	 */
+	private int[] findChunkStarts(ByteBuffer buffer) {
+		final int size = buffer.limit();
+		final int chunkCount = Math.max(1, Math.min(parallelism, size / minChunkSize));
+		if (chunkCount == 1) {
+			return new int[]{0};
+		}
+		final List<QuoteScan> scans = new ArrayList<QuoteScan>(chunkCount);
+		int start = 0;
+		for (int i = 1; i <= chunkCount && start < size; i++) {
+			final int end = i == chunkCount ? size : findNextLineStart(buffer, (int) ((long) size * i / chunkCount));
+			if (end > start) {
+				scans.add(new QuoteScan(buffer, start, end));
+				start = end;
+			}
+		}
+		invokeAll(scans);
+
+		final int[] starts = new int[scans.size()];
+		int startCount = 0;
+		boolean inQuotes = false;
+		for (QuoteScan scan : scans) {
+			// A chunk that starts inside a quoted field starts its first row after the field's line breaks, and one
+			// that is inside a quoted field throughout is left to the chunk before it
+			final int rowStart = inQuotes ? scan.firstRowStartInQuotes : scan.start;
+			if (rowStart != NOT_FOUND) {
+				starts[startCount++] = rowStart;
+			}
+			inQuotes = inQuotes ? scan.endsInQuotesFromInQuotes : scan.endsInQuotes;
+		}
+		return Arrays.copyOf(starts, startCount);
+	}
+
+	/**
+	 * @return the offset after the first line break at or after the offset, or the size of the file if there is none
+	 */
+	private static int findNextLineStart(ByteBuffer buffer, int offset) {
+		final int size = buffer.limit();
+		for (int i = offset; i < size; i++) {
+			final byte b = buffer.get(i);
+			if (b == '\n') {
+				return i + 1;
+			}
+			if (b == '\r') {
+				return i + 1 < size && buffer.get(i + 1) == '\n' ? i + 2 : i + 1;
+			}
+		}
+		return size;
+	}
+
+	private void invokeAll(final List<? extends RecursiveAction> tasks) {
+		if (pool == null || tasks.size() == 1) {
+			for (RecursiveAction task : tasks) {
+				task.invoke();
+			}
+			return;
+		}
+		pool.invoke(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				ForkJoinTask.invokeAll(tasks);
+			}
+		});
+	}
+
+	/**
+	 * Finds whether a chunk ends inside a quoted field, both for when it starts outside quotes and for when it starts
+	 * inside them, and where its first row starts for when it starts inside them.
+	 */
+	private static class QuoteScan extends RecursiveAction {
+
+		private final ByteBuffer buffer;
+		private final int start;
+		private final int end;
+		private boolean endsInQuotes;
+		private boolean endsInQuotesFromInQuotes;
+		private int firstRowStartInQuotes = NOT_FOUND;
+
+		QuoteScan(ByteBuffer buffer, int start, int end) {
+			this.buffer = buffer;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			endsInQuotes = scan(false);
+			endsInQuotesFromInQuotes = scan(true);
+		}
+
+		/**
+		 * Follows the quotes through the chunk the way CSVReader does.
+		 * @return whether the chunk ends inside quotes
+		 */
+		private boolean scan(boolean startsInQuotes) {
+			boolean inQuotes = startsInQuotes;
+			int i = start;
+			while (i < end) {
+				final byte b = buffer.get(i);
+				if (b == '\n' || b == '\r') {
+					i += b == '\r' && i + 1 < end && buffer.get(i + 1) == '\n' ? 2 : 1;
+					if (startsInQuotes && !inQuotes && firstRowStartInQuotes == NOT_FOUND && i < end) {
+						firstRowStartInQuotes = i;
+					}
+				} else if (b == ESCAPE) {
+					// The character after an escape is never read as a quote, whether the escape is kept or dropped
+					i += i + 1 < end && !isLineBreak(buffer.get(i + 1)) ? 2 : 1;
+				} else if (b == QUOTE) {
+					if (inQuotes && i + 1 < end && buffer.get(i + 1) == QUOTE) {
+						i += 2;
+					} else {
+						inQuotes = !inQuotes;
+						i++;
+					}
+				} else {
+					i++;
+				}
+			}
+			return inQuotes;
+		}
+
+		private static boolean isLineBreak(byte b) {
+			return b == '\n' || b == '\r';
+		}
+	}
+
+	/**
+	 * Parses the rows of a chunk into Ingredients, stopping at the first invalid row.
+	 */
+	private class Chunk extends RecursiveAction {
+
+		private final ByteBuffer buffer;
+		private final int start;
+		private final int end;
+		private final Charset charset;
+		private final List<Ingredient> ingredients = new ArrayList<Ingredient>();
+		private int rowCount;
+		private String[] invalidRow;
+		private int invalidRowNumber;
+
+		// The decoded chunk and the line being read
+		private CharBuffer chars;
+		private int position;
+		private int lineStart;
+		private int lineEnd;
+
+		Chunk(ByteBuffer buffer, int start, int end, Charset charset) {
+			this.buffer = buffer;
+			this.start = start;
+			this.end = end;
+			this.charset = charset;
+		}
+
+		@Override
+		protected void compute() {
+			final ByteBuffer bytes = buffer.duplicate();
+			((Buffer) bytes).limit(end).position(start);
+			// Chunks start and end at line breaks, so no character is split between two chunks
+			chars = charset.decode(bytes);
+			while (nextLine()) {
+				rowCount++;
+				final String[] row = readRow();
+				if (ingredientsParser.isBlank(row)) continue;
+				try {
+					ingredients.add(ingredientsParser.parseRow(row, rowCount));
+				} catch (ParseException e) {
+					invalidRow = row;
+					invalidRowNumber = rowCount;
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Moves on to the next line, which ends at "\n", "\r" or "\r\n" as for BufferedReader.readLine.
+		 * @return whether there was another line
+		 */
+		private boolean nextLine() {
+			final int length = chars.length();
+			if (position >= length) {
+				return false;
+			}
+			int i = position;
+			while (i < length && chars.charAt(i) != '\n' && chars.charAt(i) != '\r') {
+				i++;
+			}
+			lineStart = position;
+			lineEnd = i;
+			if (i + 1 < length && chars.charAt(i) == '\r' && chars.charAt(i + 1) == '\n') {
+				i++;
+			}
+			position = Math.min(i + 1, length);
+			return true;
+		}
+
+		/**
+		 * Reads the fields of the row starting on the current line, as CSVReader.readNext does.
+		 */
+		private String[] readRow() {
+			final List<String> fields = new ArrayList<String>();
+			StringBuilder field = new StringBuilder(64);
+			boolean inQuotes = false;
+			do {
+				if (inQuotes) {
+					// The quoted field goes on over the next line
+					field.append('\n');
+					if (!nextLine()) break;
+				}
+				for (int i = lineStart; i < lineEnd; i++) {
+					final char c = chars.charAt(i);
+					if (c == ESCAPE) {
+						if (inQuotes && i + 1 < lineEnd && (chars.charAt(i + 1) == QUOTE || chars.charAt(i + 1) == ESCAPE)) {
+							field.append(chars.charAt(i + 1));
+						}
+						// Otherwise the escape is dropped along with the character after it
+						i++;
+					} else if (c == QUOTE) {
+						if (inQuotes && i + 1 < lineEnd && chars.charAt(i + 1) == QUOTE) {
+							field.append(c);
+							i++;
+						} else {
+							inQuotes = !inQuotes;
+							// A quote in the middle of a field is kept
+							if (i - lineStart > 2 && chars.charAt(i - 1) != SEPARATOR && i + 1 < lineEnd && chars.charAt(i + 1) != SEPARATOR) {
+								field.append(c);
+							}
+						}
+					} else if (c == SEPARATOR && !inQuotes) {
+						fields.add(field.toString());
+						field = new StringBuilder(64);
+					} else {
+						field.append(c);
+					}
+				}
+			} while (inQuotes);
+			fields.add(field.toString());
+			return fields.toArray(new String[fields.size()]);
+		}
+	}
+
+}
@@ -0,0 +1,480 @@
+package net.clareburt;
+
+import net.clareburt.model.Ingredient;
+import net.clareburt.model.Recipe;
+import net.clareburt.model.RecipeMatch;
+import net.clareburt.model.Unit;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A recipe catalog compiled to a binary file and queried in place through a memory mapped buffer. Opening the file
+ * maps it without reading or parsing the recipes, and no Recipe or Ingredient objects are created for the catalog, so
+ * startup takes about as long as opening the file and the catalog takes almost no heap. Recipe names are only decoded
+ * for the recipes that a fridge can make.
+ * <p>
+ * The file is written big endian as a header followed by fixed width sections:
+ * <pre>
+ * header        int magic, int format version, int recipe count, int item count, int ingredient count,
+ *               int posting count, int count of recipes without ingredients, int string data length
+ * string table  int offset of each string into the string data, plus the end offset. The ingredient names come
+ *               first, sorted by their UTF-8 bytes so that an item ID can be found by binary search, then the
+ *               recipe names in catalog order
+ * recipes       per recipe: int name string or -1, int first ingredient, int ingredient count,
+ *               int number of distinct items required
+ * ingredients   per ingredient: int item ID or -1, int amount, int unit ordinal or -1
+ * postings      int start of each item's recipes, plus the end, then the recipes using each item in catalog order
+ * empty recipes int position of each recipe without ingredients, which no item posts
+ * string data   UTF-8 bytes of the strings
+ * </pre>
+ * The catalog is thread safe.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class MappedRecipeCatalog {
+
+	/** Extension of catalog files. */
+	public static final String FILE_EXTENSION = ".rcat";
+
+	private static final int MAGIC = 0x52434154;
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 8 * 4;
+	private static final int RECIPE_RECORD_SIZE = 4 * 4;
+	private static final int INGREDIENT_RECORD_SIZE = 3 * 4;
+	private static final int NOT_FOUND = -1;
+	private static final Unit[] UNITS = Unit.values();
+
+	private final ByteBuffer buffer;
+	private final int recipeCount;
+	private final int itemCount;
+	private final int stringOffsets;
+	private final int recipeRecords;
+	private final int ingredientRecords;
+	private final int postingStarts;
+	private final int postings;
+	private final int emptyRecipes;
+	private final int emptyRecipeCount;
+	private final int stringData;
+
+	// Scratch hit counts, taken for each call and left zeroed between calls
+	private final ScratchArrays hitCounts;
+
+	MappedRecipeCatalog(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not a recipe catalog file");
+		}
+		if (buffer.getInt(4) != FORMAT_VERSION) {
+			throw new IOException("Unsupported recipe catalog version: " + buffer.getInt(4));
+		}
+		recipeCount = buffer.getInt(8);
+		hitCounts = new ScratchArrays(recipeCount);
+		itemCount = buffer.getInt(12);
+		final int ingredientCount = buffer.getInt(16);
+		final int postingCount = buffer.getInt(20);
+		emptyRecipeCount = buffer.getInt(24);
+		final int stringDataLength = buffer.getInt(28);
+		stringOffsets = HEADER_SIZE;
+		recipeRecords = stringOffsets + (itemCount + recipeCount + 1) * 4;
+		ingredientRecords = recipeRecords + recipeCount * RECIPE_RECORD_SIZE;
+		postingStarts = ingredientRecords + ingredientCount * INGREDIENT_RECORD_SIZE;
+		postings = postingStarts + (itemCount + 1) * 4;
+		emptyRecipes = postings + postingCount * 4;
+		stringData = emptyRecipes + emptyRecipeCount * 4;
+		if (stringData + stringDataLength != buffer.limit()) {
+			throw new IOException("Recipe catalog file is truncated");
+		}
+	}
+
+	/**
+	 * Maps a catalog file written by write.
+	 * @throws IOException if the file cannot be read or is not a catalog file
+	 */
+	public static MappedRecipeCatalog open(File file) throws IOException {
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			// The mapping stays valid once the channel is closed
+			final FileChannel channel = randomAccessFile.getChannel();
+			return new MappedRecipeCatalog(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Compiles the recipes to a catalog file. Recipes without an ingredient list are left out, as they are from a
+	 * RecipeCatalog.
+	 */
+	public static void write(Collection<Recipe> recipes, File file) throws IOException {
+		final OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			write(recipes, outputStream);
+		} finally {
+			outputStream.close();
+		}
+	}
+
+	/**
+	 * Compiles the recipes to the catalog format, writing it to the stream.
+	 */
+	public static void write(Collection<Recipe> recipes, OutputStream outputStream) throws IOException {
+		final List<Recipe> preparedRecipes = new ArrayList<Recipe>(recipes.size());
+		final Map<String, byte[]> itemBytes = new HashMap<String, byte[]>();
+		int ingredientCount = 0;
+		for (Recipe recipe : recipes) {
+			if (recipe != null && recipe.getIngredients() != null) {
+				preparedRecipes.add(recipe);
+				ingredientCount += recipe.getIngredients().size();
+				for (Ingredient ingredient : recipe.getIngredients()) {
+					if (ingredient.getItem() != null && !itemBytes.containsKey(ingredient.getItem())) {
+						itemBytes.put(ingredient.getItem(), ingredient.getItem().getBytes(StandardCharsets.UTF_8));
+					}
+				}
+			}
+		}
+
+		// Sort the items by their bytes so that the reader can search the string table without decoding it
+		final List<String> items = new ArrayList<String>(itemBytes.keySet());
+		items.sort(new Comparator<String>() {
+			@Override
+			public int compare(String a, String b) {
+				return compareBytes(itemBytes.get(a), itemBytes.get(b));
+			}
+		});
+		final Map<String, Integer> itemIds = new HashMap<String, Integer>();
+		final List<byte[]> strings = new ArrayList<byte[]>(items.size() + preparedRecipes.size());
+		for (String item : items) {
+			itemIds.put(item, itemIds.size());
+			strings.add(itemBytes.get(item));
+		}
+		for (Recipe recipe : preparedRecipes) {
+			strings.add(recipe.getName() == null ? new byte[0] : recipe.getName().getBytes(StandardCharsets.UTF_8));
+		}
+
+		// Each recipe is posted once under each distinct item it requires
+		final List<List<Integer>> recipesUsing = new ArrayList<List<Integer>>(items.size());
+		for (int i = 0; i < items.size(); i++) {
+			recipesUsing.add(new ArrayList<Integer>());
+		}
+		final int[] requiredItemCounts = new int[preparedRecipes.size()];
+		final List<Integer> recipesWithoutIngredients = new ArrayList<Integer>();
+		int postingCount = 0;
+		for (int r = 0; r < preparedRecipes.size(); r++) {
+			final List<Integer> recipeItems = new ArrayList<Integer>();
+			for (Ingredient ingredient : preparedRecipes.get(r).getIngredients()) {
+				final Integer itemId = ingredient.getItem() == null ? NOT_FOUND : itemIds.get(ingredient.getItem());
+				if (!recipeItems.contains(itemId)) {
+					recipeItems.add(itemId);
+				}
+			}
+			requiredItemCounts[r] = recipeItems.size();
+			if (recipeItems.isEmpty()) {
+				recipesWithoutIngredients.add(r);
+			}
+			for (int itemId : recipeItems) {
+				// An ingredient without a name can never be found in the fridge, so its recipe is never a candidate
+				if (itemId != NOT_FOUND) {
+					recipesUsing.get(itemId).add(r);
+					postingCount++;
+				}
+			}
+		}
+
+		int stringDataLength = 0;
+		for (byte[] string : strings) {
+			stringDataLength += string.length;
+		}
+
+		final DataOutputStream out = new DataOutputStream(outputStream);
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeInt(preparedRecipes.size());
+		out.writeInt(items.size());
+		out.writeInt(ingredientCount);
+		out.writeInt(postingCount);
+		out.writeInt(recipesWithoutIngredients.size());
+		out.writeInt(stringDataLength);
+		int stringOffset = 0;
+		for (byte[] string : strings) {
+			out.writeInt(stringOffset);
+			stringOffset += string.length;
+		}
+		out.writeInt(stringOffset);
+		int ingredient = 0;
+		for (int r = 0; r < preparedRecipes.size(); r++) {
+			final Recipe recipe = preparedRecipes.get(r);
+			out.writeInt(recipe.getName() == null ? NOT_FOUND : items.size() + r);
+			out.writeInt(ingredient);
+			out.writeInt(recipe.getIngredients().size());
+			out.writeInt(requiredItemCounts[r]);
+			ingredient += recipe.getIngredients().size();
+		}
+		for (Recipe recipe : preparedRecipes) {
+			for (Ingredient recipeIngredient : recipe.getIngredients()) {
+				out.writeInt(recipeIngredient.getItem() == null ? NOT_FOUND : itemIds.get(recipeIngredient.getItem()));
+				out.writeInt(recipeIngredient.getAmount());
+				out.writeInt(recipeIngredient.getUnit() == null ? NOT_FOUND : recipeIngredient.getUnit().ordinal());
+			}
+		}
+		int postingStart = 0;
+		for (List<Integer> recipesUsingItem : recipesUsing) {
+			out.writeInt(postingStart);
+			postingStart += recipesUsingItem.size();
+		}
+		out.writeInt(postingStart);
+		for (List<Integer> recipesUsingItem : recipesUsing) {
+			for (int recipe : recipesUsingItem) {
+				out.writeInt(recipe);
+			}
+		}
+		for (int recipe : recipesWithoutIngredients) {
+			out.writeInt(recipe);
+		}
+		for (byte[] string : strings) {
+			out.write(string);
+		}
+		out.flush();
+	}
+
+	public int size() {
+		return recipeCount;
+	}
+
+	public boolean isEmpty() {
+		return recipeCount == 0;
+	}
+
+	/**
+	 * @return the number of distinct ingredient names in the catalog
+	 */
+	public int getItemCount() {
+		return itemCount;
+	}
+
+	public String getRecipeName(int recipe) {
+		final int name = buffer.getInt(recipeRecords + recipe * RECIPE_RECORD_SIZE);
+		return name == NOT_FOUND ? null : getString(name);
+	}
+
+	public String getItemName(int itemId) {
+		return getString(itemId);
+	}
+
+	/**
+	 * @return the ID of the ingredient name, or -1 if no recipe uses it
+	 */
+	public int getItemId(String item) {
+		final byte[] itemBytes = item.getBytes(StandardCharsets.UTF_8);
+		int low = 0;
+		int high = itemCount - 1;
+		while (low <= high) {
+			final int middle = (low + high) >>> 1;
+			final int compare = compareString(middle, itemBytes);
+			if (compare < 0) {
+				low = middle + 1;
+			} else if (compare > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return NOT_FOUND;
+	}
+
+	public int getIngredientStart(int recipe) {
+		return buffer.getInt(recipeRecords + recipe * RECIPE_RECORD_SIZE + 4);
+	}
+
+	public int getIngredientEnd(int recipe) {
+		return getIngredientStart(recipe) + buffer.getInt(recipeRecords + recipe * RECIPE_RECORD_SIZE + 8);
+	}
+
+	/**
+	 * @return the item ID of the ingredient, or -1 if the ingredient has no name
+	 */
+	public int getIngredientItem(int ingredient) {
+		return buffer.getInt(ingredientRecords + ingredient * INGREDIENT_RECORD_SIZE);
+	}
+
+	public int getIngredientAmount(int ingredient) {
+		return buffer.getInt(ingredientRecords + ingredient * INGREDIENT_RECORD_SIZE + 4);
+	}
+
+	/**
+	 * @return the unit of the ingredient, or null if it has none
+	 */
+	public Unit getIngredientUnit(int ingredient) {
+		final int unit = buffer.getInt(ingredientRecords + ingredient * INGREDIENT_RECORD_SIZE + 8);
+		return unit == NOT_FOUND ? null : UNITS[unit];
+	}
+
+	/**
+	 * Finds the recipes for which the fridge has every required item in date by walking the inverted index entries of
+	 * the fridge's items only. Amounts are not checked.
+	 * @param fridgeItemIds catalog item IDs of the fridge's items, from getFridgeItemIds
+	 * @return the positions of the candidate recipes in catalog order
+	 */
+	public int[] findCandidateRecipes(int[] fridgeItemIds) {
+		final int[] hits = hitCounts.take();
+		int postingCount = 0;
+		for (int itemId : fridgeItemIds) {
+			postingCount += getPostingStart(itemId + 1) - getPostingStart(itemId);
+		}
+		final int[] touched = new int[postingCount];
+		int touchedCount = 0;
+		for (int itemId : fridgeItemIds) {
+			final int end = getPostingStart(itemId + 1);
+			for (int i = getPostingStart(itemId); i < end; i++) {
+				final int recipe = buffer.getInt(postings + i * 4);
+				if (hits[recipe]++ == 0) {
+					touched[touchedCount++] = recipe;
+				}
+			}
+		}
+		final int[] candidates = new int[touchedCount + emptyRecipeCount];
+		int candidateCount = 0;
+		for (int i = 0; i < touchedCount; i++) {
+			final int recipe = touched[i];
+			if (hits[recipe] == getRequiredItemCount(recipe)) {
+				candidates[candidateCount++] = recipe;
+			}
+			hits[recipe] = 0;
+		}
+		hitCounts.release(hits);
+		// Recipes without ingredients are not posted under any item, but can always be made
+		for (int i = 0; i < emptyRecipeCount; i++) {
+			candidates[candidateCount++] = buffer.getInt(emptyRecipes + i * 4);
+		}
+		final int[] sortedCandidates = Arrays.copyOf(candidates, candidateCount);
+		Arrays.sort(sortedCandidates);
+		return sortedCandidates;
+	}
+
+	/**
+	 * Looks up the fridge's items in the catalog once so that recipes can be matched by item ID.
+	 * @return the catalog item IDs of the fridge items that some recipe uses, in ascending order
+	 */
+	public int[] getFridgeItemIds(FridgeIndex fridgeIndex) {
+		final int[] itemIds = new int[fridgeIndex.getItems().size()];
+		int count = 0;
+		for (String item : fridgeIndex.getItems()) {
+			final int itemId = getItemId(item);
+			if (itemId != NOT_FOUND) {
+				itemIds[count++] = itemId;
+			}
+		}
+		final int[] sortedItemIds = Arrays.copyOf(itemIds, count);
+		Arrays.sort(sortedItemIds);
+		return sortedItemIds;
+	}
+
+	/**
+	 * Checks the fridge lots for each ingredient of the recipe, using up the lots that expire first until there is
+	 * enough of the ingredient. Ingredients of the same item are met one after the other from the same lots.
+	 * @param fridgeItemIds catalog item IDs of the fridge's items, from getFridgeItemIds
+	 * @param fridgeItemNames the fridge's names for the items at the same positions
+	 * @return the match with the chosen fridge lots, or null if there was not enough of an ingredient
+	 */
+	public RecipeMatch matchRecipe(int recipe, FridgeIndex fridgeIndex, int[] fridgeItemIds, String[] fridgeItemNames) {
+		final int start = getIngredientStart(recipe);
+		final int end = getIngredientEnd(recipe);
+		final List<List<Ingredient>> allocation = new ArrayList<List<Ingredient>>(end - start);
+		for (int i = start; i < end; i++) {
+			final int itemId = getIngredientItem(i);
+			final int position = Arrays.binarySearch(fridgeItemIds, itemId);
+			if (position < 0) {
+				return null;
+			}
+			final Unit unit = getIngredientUnit(i);
+			final List<Ingredient> lots = fridgeIndex.allocate(fridgeItemNames[position], getIngredientAmount(i), unit, getAmountTakenBefore(start, i, itemId, unit));
+			if (lots == null) {
+				return null;
+			}
+			// Copied, as the lots are a view of the index
+			allocation.add(new ArrayList<Ingredient>(lots));
+		}
+		return RecipeMatch.fromAllocation(getRecipeName(recipe), allocation);
+	}
+
+	/**
+	 * @return the amount that the ingredients before the ingredient in its recipe, which starts at start, take from the
+	 * item in units with the same base unit as the unit, in the base unit
+	 */
+	private long getAmountTakenBefore(int start, int ingredient, int itemId, Unit unit) {
+		final Unit baseUnit = FridgeIndex.getBaseUnit(unit);
+		long taken = 0;
+		for (int i = start; i < ingredient; i++) {
+			if (getIngredientItem(i) == itemId && FridgeIndex.getBaseUnit(getIngredientUnit(i)) == baseUnit) {
+				taken += FridgeIndex.toBaseAmount(Math.max(getIngredientAmount(i), 0), getIngredientUnit(i));
+			}
+		}
+		return taken;
+	}
+
+	private int getRequiredItemCount(int recipe) {
+		return buffer.getInt(recipeRecords + recipe * RECIPE_RECORD_SIZE + 12);
+	}
+
+	private int getPostingStart(int itemId) {
+		return buffer.getInt(postingStarts + itemId * 4);
+	}
+
+	private String getString(int string) {
+		final int start = buffer.getInt(stringOffsets + string * 4);
+		final byte[] bytes = new byte[buffer.getInt(stringOffsets + (string + 1) * 4) - start];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(stringData + start + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Compares a string in the table with the bytes, in the order the items were sorted in.
+	 */
+	private int compareString(int string, byte[] bytes) {
+		final int start = stringData + buffer.getInt(stringOffsets + string * 4);
+		final int length = stringData + buffer.getInt(stringOffsets + (string + 1) * 4) - start;
+		for (int i = 0; i < Math.min(length, bytes.length); i++) {
+			final int compare = (buffer.get(start + i) & 0xff) - (bytes[i] & 0xff);
+			if (compare != 0) {
+				return compare;
+			}
+		}
+		return length - bytes.length;
+	}
+
+	private static int compareBytes(byte[] a, byte[] b) {
+		for (int i = 0; i < Math.min(a.length, b.length); i++) {
+			final int compare = (a[i] & 0xff) - (b[i] & 0xff);
+			if (compare != 0) {
+				return compare;
+			}
+		}
+		return a.length - b.length;
+	}
+
+	@Override
+	public String toString() {
+		return "MappedRecipeCatalog{" +
+				"recipeCount=" + recipeCount +
+				", itemCount=" + itemCount +
+				'}';
+	}
+}
@@ -0,0 +1,531 @@
+package net.clareburt;
+
+import net.clareburt.model.Ingredient;
+import net.clareburt.model.MealPlan;
+import net.clareburt.model.RecipeMatch;
+import net.clareburt.model.Unit;
+import net.clareburt.util.DateUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plans the recipes for the coming meals, one meal a day starting today, so as to use up the stock that is closest to
+ * its useBy date. Each meal uses up fridge amounts, so later meals are chosen from what the earlier ones leave, and
+ * lots that pass their useBy date before a meal cannot be used for it.
+ * <p>
+ * A meal scores the urgency of the lots its ingredients are taken from, URGENCY_SCALE / (1 + days left as of today)
+ * for the first lot of each ingredient, and a plan scores the sum of its meals. Plans are searched depth first, trying
+ * the highest scoring meals first so that the first plan found is the greedy one. Using up stock can only make the
+ * best meal score lower, so a partial plan cannot score more than its score so far plus the remaining meals times the
+ * best meal score now, and branches that cannot beat the best plan found are pruned.
+ * <p>
+ * The meals are not all matched and sorted at each step. A meal cannot score more than the sum of the urgency of the
+ * earliest lots of its items in the whole fridge, which needs no lots to be allocated, and as using up stock can only
+ * lower a meal's score that bound holds at every step of the search. The recipes are put in order of their bound once
+ * per search, and each step takes them in that order, works out their bound again from the lots it has left, and
+ * matches them in the order of that tighter bound only until the meals it has matched can no longer be beaten by
+ * those left. The order itself is built lazily from a heap, so the recipes of a large catalog that no step gets to
+ * are never sorted or matched.
+ * <p>
+ * The greedy plan is always finished. After that the search stops once it has visited maxNodes partial plans or run
+ * for maxMillis, returning the best plan found so far, so running out of budget never cuts a plan short.
+ * <p>
+ * The planner holds no state between calls and can be shared between threads. The fridge lots passed in are not
+ * changed.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class MealPlanner {
+
+	/** Score of an ingredient taken from a lot with a useBy date of today. */
+	public static final long URGENCY_SCALE = 1000000;
+
+	public static final int DEFAULT_MAX_NODES = 100000;
+	public static final long DEFAULT_MAX_MILLIS = 20;
+
+	private final RecipeCatalog catalog;
+	private final int maxNodes;
+	private final long maxNanos;
+
+	public MealPlanner(RecipeCatalog catalog) {
+		this(catalog, DEFAULT_MAX_NODES, DEFAULT_MAX_MILLIS);
+	}
+
+	/**
+	 * @param catalog RecipeCatalog to choose the meals from
+	 * @param maxNodes the most partial plans to visit before returning the best plan found
+	 * @param maxMillis the longest to search before returning the best plan found, in milliseconds, at least 0
+	 */
+	public MealPlanner(RecipeCatalog catalog, int maxNodes, long maxMillis) {
+		if (maxNodes < 1) {
+			throw new IllegalArgumentException("Node budget must be at least 1: " + maxNodes);
+		}
+		if (maxMillis < 0) {
+			throw new IllegalArgumentException("Time budget must not be negative: " + maxMillis);
+		}
+		this.catalog = catalog;
+		this.maxNodes = maxNodes;
+		this.maxNanos = TimeUnit.MILLISECONDS.toNanos(maxMillis);
+	}
+
+	/**
+	 * Plans the meals from today's date.
+	 * @param fridgeItems Collection of Ingredients in the fridge
+	 * @param mealCount number of meals to plan, at least 0
+	 * @return the best plan found, which has no meals if the fridge cannot make any recipe
+	 */
+	public MealPlan plan(Collection<Ingredient> fridgeItems, int mealCount) {
+		return plan(fridgeItems, mealCount, DateUtil.getCurrentEpochDay());
+	}
+
+	/**
+	 * Plans the meals from the given day.
+	 * @param fridgeItems Collection of Ingredients in the fridge
+	 * @param mealCount number of meals to plan, at least 0
+	 * @param currentDay epoch day of the first meal
+	 * @return the best plan found, which has no meals if the fridge cannot make any recipe
+	 */
+	public MealPlan plan(Collection<Ingredient> fridgeItems, int mealCount, int currentDay) {
+		if (mealCount < 0) {
+			throw new IllegalArgumentException("Meal count must not be negative: " + mealCount);
+		}
+		final Search search = new Search(fridgeItems, mealCount, currentDay);
+		search.search(0, 0);
+		return new MealPlan(search.bestMeals, Math.max(search.bestScore, 0), !search.exhausted);
+	}
+
+	/**
+	 * The state of one search: the planner's own copy of the fridge lots, which meals use up and give back as the
+	 * search moves down and up the tree, and the best plan found so far.
+	 */
+	private class Search {
+
+		private final int mealCount;
+		private final int currentDay;
+		private final long deadline;
+		private final FridgeIndex fridgeIndex;
+		// The planner's copies of the lots in date, ordered by useBy date, and the fridge lots they were copied from
+		private final Ingredient[] lotsByUseBy;
+		private final Map<Ingredient, Ingredient> originals = new IdentityHashMap<Ingredient, Ingredient>();
+		private final List<RecipeMatch> meals = new ArrayList<RecipeMatch>();
+		// Lots used up or passed their useBy date, so the changes can be undone
+		private final List<Change> changes = new ArrayList<Change>();
+		private int expiredLotCount;
+		private RecipeOrder recipeOrder;
+
+		private List<RecipeMatch> bestMeals = Collections.emptyList();
+		private long bestScore = -1;
+		private int nodeCount;
+		private boolean exhausted;
+
+		Search(Collection<Ingredient> fridgeItems, int mealCount, int currentDay) {
+			this.mealCount = mealCount;
+			this.currentDay = currentDay;
+			this.deadline = System.nanoTime() + maxNanos;
+			this.fridgeIndex = new FridgeIndex(currentDay);
+			final List<Ingredient> lots = new ArrayList<Ingredient>();
+			if (fridgeItems != null) {
+				for (Ingredient fridgeItem : fridgeItems) {
+					if (fridgeItem.getUseByEpochDay() >= currentDay) {
+						final Ingredient lot = copy(fridgeItem);
+						originals.put(lot, fridgeItem);
+						fridgeIndex.add(lot);
+						lots.add(lot);
+					}
+				}
+			}
+			lotsByUseBy = lots.toArray(new Ingredient[lots.size()]);
+			Arrays.sort(lotsByUseBy, new Comparator<Ingredient>() {
+				@Override
+				public int compare(Ingredient lot, Ingredient otherLot) {
+					return Integer.compare(lot.getUseByEpochDay(), otherLot.getUseByEpochDay());
+				}
+			});
+		}
+
+		void search(int meal, long score) {
+			if (meal == mealCount) {
+				recordPlan(score);
+				return;
+			}
+			nodeCount++;
+			final int expiredLotMark = expiredLotCount;
+			final int expiryMark = expireLots(currentDay + meal);
+			if (recipeOrder == null) {
+				recipeOrder = new RecipeOrder();
+			}
+			final MealQueue candidates = new MealQueue();
+			ScoredMeal candidate = candidates.next();
+			if (candidate == null) {
+				recordPlan(score);
+			} else {
+				final long bestMealScore = candidate.score;
+				final long remainingMeals = mealCount - meal - 1;
+				for (; candidate != null; candidate = candidates.next()) {
+					// Candidates are in score order, so once one cannot beat the best plan none of the rest can
+					if (score + candidate.score + remainingMeals * bestMealScore <= bestScore) {
+						break;
+					}
+					// Until the first plan has been found the search only goes down, so the greedy plan is finished
+					if (bestScore >= 0 && isOutOfBudget()) {
+						break;
+					}
+					final int changeMark = changes.size();
+					if (useIngredients(candidate.recipe)) {
+						meals.add(candidate.match);
+						search(meal + 1, score + candidate.score);
+						meals.remove(meals.size() - 1);
+					}
+					undoChanges(changeMark);
+				}
+			}
+			// Go back to the previous meal's day before putting back the lots that had expired by this one
+			fridgeIndex.setCurrentDay(currentDay + Math.max(meal - 1, 0));
+			undoChanges(expiryMark);
+			expiredLotCount = expiredLotMark;
+		}
+
+		private boolean isOutOfBudget() {
+			if (!exhausted && (nodeCount >= maxNodes || System.nanoTime() - deadline > 0)) {
+				exhausted = true;
+			}
+			return exhausted;
+		}
+
+		private void recordPlan(long score) {
+			if (score <= bestScore) {
+				return;
+			}
+			bestScore = score;
+			bestMeals = new ArrayList<RecipeMatch>(meals.size());
+			for (RecipeMatch meal : meals) {
+				final List<List<Ingredient>> allocation = new ArrayList<List<Ingredient>>(meal.getAllocation().size());
+				for (List<Ingredient> lots : meal.getAllocation()) {
+					final List<Ingredient> originalLots = new ArrayList<Ingredient>(lots.size());
+					for (Ingredient lot : lots) {
+						originalLots.add(originals.get(lot));
+					}
+					allocation.add(originalLots);
+				}
+				bestMeals.add(RecipeMatch.fromAllocation(meal.getName(), allocation));
+			}
+		}
+
+		/**
+		 * The recipes that can be made from the first meal's fridge, as far as its items go, ordered by the most they
+		 * can score and then by catalog position. The order is sorted from a heap only as far as the search asks.
+		 */
+		private class RecipeOrder {
+
+			// Recipes by catalog position and their bounds, with the heap of the slots not yet sorted
+			private final int[] recipes;
+			private final long[] bounds;
+			private final int[] heap;
+			private int heapSize;
+			private final int[] sorted;
+			private int sortedCount;
+
+			RecipeOrder() {
+				int candidateCount = 0;
+				if (fridgeIndex.isEmpty()) {
+					recipes = new int[0];
+					bounds = new long[0];
+				} else {
+					final RecipeGenerator.CatalogRecipeChecker checker = new RecipeGenerator.CatalogRecipeChecker(fridgeIndex, catalog);
+					final ItemUrgency itemUrgency = new ItemUrgency();
+					recipes = new int[checker.size()];
+					bounds = new long[checker.size()];
+					for (int position = 0; position < checker.size(); position++) {
+						if (!checker.hasRequiredItems(position)) continue;
+						final int recipe = checker.getRecipe(position);
+						final long bound = itemUrgency.getBound(recipe);
+						if (bound >= 0) {
+							recipes[candidateCount] = recipe;
+							bounds[candidateCount] = bound;
+							candidateCount++;
+						}
+					}
+				}
+				heap = new int[candidateCount];
+				for (int i = 0; i < candidateCount; i++) {
+					heap[i] = i;
+				}
+				heapSize = candidateCount;
+				for (int i = heapSize / 2 - 1; i >= 0; i--) {
+					siftDown(i);
+				}
+				sorted = new int[candidateCount];
+			}
+
+			/**
+			 * @return whether there is a recipe at the index of the order, sorting the order up to it if need be
+			 */
+			boolean has(int index) {
+				while (sortedCount <= index && heapSize > 0) {
+					sorted[sortedCount++] = heap[0];
+					heap[0] = heap[--heapSize];
+					siftDown(0);
+				}
+				return index < sortedCount;
+			}
+
+			int getRecipe(int index) {
+				return recipes[sorted[index]];
+			}
+
+			long getBound(int index) {
+				return bounds[sorted[index]];
+			}
+
+			private void siftDown(int index) {
+				final int slot = heap[index];
+				while (index < heapSize / 2) {
+					int child = 2 * index + 1;
+					if (child + 1 < heapSize && isBefore(heap[child + 1], heap[child])) {
+						child++;
+					}
+					if (!isBefore(heap[child], slot)) {
+						break;
+					}
+					heap[index] = heap[child];
+					index = child;
+				}
+				heap[index] = slot;
+			}
+
+			private boolean isBefore(int slot, int otherSlot) {
+				return bounds[slot] > bounds[otherSlot] || (bounds[slot] == bounds[otherSlot] && recipes[slot] < recipes[otherSlot]);
+			}
+		}
+
+		/**
+		 * The urgency of the earliest lot left of each fridge item that the catalog uses.
+		 */
+		private class ItemUrgency {
+
+			// Ordered by catalog item ID
+			private final int[] itemIds;
+			private final long[] urgency;
+
+			ItemUrgency() {
+				final long[] itemDays = new long[fridgeIndex.getItems().size()];
+				int itemCount = 0;
+				for (String item : fridgeIndex.getItems()) {
+					final int itemId = catalog.getItemId(item);
+					if (itemId >= 0) {
+						itemDays[itemCount++] = ((long) itemId << 32) | (fridgeIndex.getEarliestUseByEpochDay(item) & 0xffffffffL);
+					}
+				}
+				Arrays.sort(itemDays, 0, itemCount);
+				itemIds = new int[itemCount];
+				urgency = new long[itemCount];
+				for (int i = 0; i < itemCount; i++) {
+					itemIds[i] = (int) (itemDays[i] >>> 32);
+					urgency[i] = URGENCY_SCALE / (1 + (int) itemDays[i] - currentDay);
+				}
+			}
+
+			/**
+			 * @return the most the recipe can score from the lots left, or -1 if one of its items has none left
+			 */
+			long getBound(int recipe) {
+				long bound = 0;
+				for (int i = catalog.getIngredientStart(recipe); i < catalog.getIngredientEnd(recipe); i++) {
+					final int item = Arrays.binarySearch(itemIds, catalog.getIngredientItem(i));
+					if (item < 0) {
+						return -1;
+					}
+					bound += urgency[item];
+				}
+				return bound;
+			}
+		}
+
+		/**
+		 * The recipes that can be made from the lots left, given highest scoring first and equally scored ones in
+		 * catalog order. Recipes are taken in the search's order and their bounds worked out again from the lots left,
+		 * and the recipe with the best of those is matched, until the best meal matched scores at least as much as
+		 * the recipes left could.
+		 */
+		private class MealQueue {
+
+			private final ItemUrgency itemUrgency = new ItemUrgency();
+			// Recipes taken from the search's order, scored by their bound from the lots left, and not matched yet
+			private final PriorityQueue<ScoredMeal> bounded = new PriorityQueue<ScoredMeal>();
+			private final PriorityQueue<ScoredMeal> matched = new PriorityQueue<ScoredMeal>();
+			private int nextIndex;
+
+			/**
+			 * @return the next best meal, or null once there are none left
+			 */
+			ScoredMeal next() {
+				while (true) {
+					final boolean hasNext = recipeOrder.has(nextIndex);
+					final ScoredMeal bestBounded = bounded.peek();
+					// The recipes left in the order can score no more than the next one's bound in it
+					if (hasNext && (bestBounded == null || !isBefore(bestBounded.score, bestBounded.recipe, recipeOrder.getBound(nextIndex), recipeOrder.getRecipe(nextIndex)))) {
+						final ScoredMeal best = matched.peek();
+						if (best != null && isBefore(best.score, best.recipe, recipeOrder.getBound(nextIndex), recipeOrder.getRecipe(nextIndex))) {
+							break;
+						}
+						final int recipe = recipeOrder.getRecipe(nextIndex++);
+						final long bound = itemUrgency.getBound(recipe);
+						if (bound >= 0) {
+							bounded.add(new ScoredMeal(recipe, null, bound));
+						}
+					} else if (bestBounded != null) {
+						final ScoredMeal best = matched.peek();
+						if (best != null && isBefore(best.score, best.recipe, bestBounded.score, bestBounded.recipe)) {
+							break;
+						}
+						bounded.poll();
+						final RecipeMatch match = catalog.matchRecipe(bestBounded.recipe, fridgeIndex);
+						if (match != null) {
+							matched.add(new ScoredMeal(bestBounded.recipe, match, scoreMeal(match)));
+						}
+					} else {
+						break;
+					}
+				}
+				return matched.poll();
+			}
+		}
+
+		/**
+		 * @return whether a meal of the recipe and score comes before any the other recipe could make, scoring at most
+		 * the other score
+		 */
+		private boolean isBefore(long score, int recipe, long otherScore, int otherRecipe) {
+			return score > otherScore || (score == otherScore && recipe < otherRecipe);
+		}
+
+		private long scoreMeal(RecipeMatch match) {
+			long score = 0;
+			for (int day : match.getExpirySignature()) {
+				score += URGENCY_SCALE / (1 + day - currentDay);
+			}
+			return score;
+		}
+
+		/**
+		 * Takes each ingredient of the recipe from the lots that expire first, removing the lots that are used up.
+		 * @return whether there was enough of every ingredient, which may not be so when two ingredients share an item
+		 * and a lot is used up in part, as the amounts used up are rounded to whole units of the lot
+		 */
+		private boolean useIngredients(int recipe) {
+			for (int i = catalog.getIngredientStart(recipe); i < catalog.getIngredientEnd(recipe); i++) {
+				final Unit unit = catalog.getIngredientUnit(i);
+				final int amount = catalog.getIngredientAmount(i);
+				final List<Ingredient> lots = fridgeIndex.allocate(catalog.getItemName(catalog.getIngredientItem(i)), amount, unit);
+				if (lots == null) {
+					return false;
+				}
+				long required = unit == null ? amount : unit.toBaseAmount(amount);
+				// Copied, as removing the used up lots changes the index's view
+				for (Ingredient lot : lots.toArray(new Ingredient[lots.size()])) {
+					final long factor = lot.getUnit() == null ? 1 : lot.getUnit().toBaseAmount(1);
+					final long available = lot.getAmount() * factor;
+					if (available <= required) {
+						changes.add(new Change(lot, lot.getAmount(), true));
+						fridgeIndex.remove(lot);
+						required -= available;
+					} else {
+						// Round the amount used up to whole units of the lot
+						changes.add(new Change(lot, lot.getAmount(), false));
+						fridgeIndex.setAmount(lot, lot.getAmount() - (int) ((required + factor - 1) / factor));
+						required = 0;
+					}
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Removes the lots that have passed their useBy date by the day.
+		 * @return mark to pass to undoChanges to put them back
+		 */
+		private int expireLots(int day) {
+			final int mark = changes.size();
+			fridgeIndex.setCurrentDay(day);
+			while (expiredLotCount < lotsByUseBy.length && lotsByUseBy[expiredLotCount].getUseByEpochDay() < day) {
+				final Ingredient lot = lotsByUseBy[expiredLotCount++];
+				// Lots that were used up have already been removed
+				if (fridgeIndex.remove(lot)) {
+					changes.add(new Change(lot, lot.getAmount(), true));
+				}
+			}
+			return mark;
+		}
+
+		/**
+		 * Puts back the lots and amounts changed since the mark, in the reverse order to that they were changed in.
+		 */
+		private void undoChanges(int mark) {
+			for (int i = changes.size() - 1; i >= mark; i--) {
+				final Change change = changes.remove(i);
+				fridgeIndex.setAmount(change.lot, change.amount);
+				if (change.removed) {
+					fridgeIndex.add(change.lot);
+				}
+			}
+		}
+	}
+
+	private static Ingredient copy(Ingredient fridgeItem) {
+		final Ingredient lot = new Ingredient();
+		lot.setItem(fridgeItem.getItem());
+		lot.setAmount(fridgeItem.getAmount());
+		lot.setUnit(fridgeItem.getUnit());
+		lot.setUseByEpochDay(fridgeItem.getUseByEpochDay());
+		return lot;
+	}
+
+	private static class Change {
+
+		private final Ingredient lot;
+		private final int amount;
+		private final boolean removed;
+
+		Change(Ingredient lot, int amount, boolean removed) {
+			this.lot = lot;
+			this.amount = amount;
+			this.removed = removed;
+		}
+	}
+
+	/**
+	 * A meal that can be made along with its score, ordered highest score first and then by catalog position. A recipe
+	 * not yet matched is held with its bound as the score and no match.
+	 */
+	private static class ScoredMeal implements Comparable<ScoredMeal> {
+
+		private final int recipe;
+		private final RecipeMatch match;
+		private final long score;
+
+		ScoredMeal(int recipe, RecipeMatch match, long score) {
+			this.recipe = recipe;
+			this.match = match;
+			this.score = score;
+		}
+
+		@Override
+		public int compareTo(ScoredMeal other) {
+			if (score != other.score) {
+				return score > other.score ? -1 : 1;
+			}
+			return recipe < other.recipe ? -1 : (recipe == other.recipe ? 0 : 1);
+		}
+	}
+
+}
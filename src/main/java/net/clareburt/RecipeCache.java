@@ -0,0 +1,343 @@
+package net.clareburt;
+
+import net.clareburt.model.Ingredient;
+import net.clareburt.util.DateUtil;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of recipe suggestions for fridges that are asked about more than once, eg. by several devices in one
+ * household. Entries are keyed by the fridge lots, the version of the catalog and the day the suggestion was made for,
+ * so a fridge whose lots change, a newly loaded catalog or the turn of the day all look up a different entry. The key
+ * holds a sorted copy of the lots and compares them in full, so two fridges only share an entry if they hold the same
+ * lots; the hash of the lots is only used to find the entry.
+ * <p>
+ * The cache holds at most maxSize entries and an entry is dropped once it is older than the time to live. The cache
+ * is thread safe. So that concurrent requests do not all wait on one lock, the entries are split by hash between up to
+ * MAX_SEGMENTS segments, each with its own lock, and a full segment evicts its own least recently used entry; a cache
+ * too small to give each segment MIN_SEGMENT_SIZE entries has fewer segments, down to one. Suggestions are worked out
+ * outside the locks, so two threads asking about the same fridge at once may both work it out.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class RecipeCache {
+
+	static final int MAX_SEGMENTS = 16;
+	static final int MIN_SEGMENT_SIZE = 64;
+
+	private final int maxSize;
+	private final long ttlMillis;
+	private final Clock clock;
+	private final Segment[] segments;
+
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+
+	/**
+	 * @param maxSize maximum number of suggestions to hold
+	 * @param ttlMillis how long a suggestion is kept for, in milliseconds
+	 */
+	public RecipeCache(int maxSize, long ttlMillis) {
+		this(maxSize, ttlMillis, Clock.systemUTC());
+	}
+
+	/**
+	 * @param maxSize maximum number of suggestions to hold
+	 * @param ttlMillis how long a suggestion is kept for, in milliseconds
+	 * @param clock Clock against which the age of the entries is measured
+	 */
+	public RecipeCache(int maxSize, long ttlMillis, Clock clock) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("Cache size must be at least 1: " + maxSize);
+		}
+		this.maxSize = maxSize;
+		this.ttlMillis = ttlMillis;
+		this.clock = clock;
+		// A power of two, so that a segment can be picked by masking the hash
+		int segmentCount = 1;
+		while (segmentCount < MAX_SEGMENTS && maxSize / (segmentCount * 2) >= MIN_SEGMENT_SIZE) {
+			segmentCount *= 2;
+		}
+		this.segments = new Segment[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			segments[i] = new Segment(maxSize / segmentCount + (i < maxSize % segmentCount ? 1 : 0));
+		}
+	}
+
+	/**
+	 * Returns the cached suggestion for the fridge as of today, working it out with the generator if it is not cached.
+	 * @param recipeGenerator RecipeGenerator used on a cache miss
+	 * @param fridgeItems Collection of Ingredients in the fridge
+	 * @param catalog RecipeCatalog to choose from
+	 * @return String name of the recipe to use
+	 */
+	public String generateRecipe(RecipeGenerator recipeGenerator, Collection<Ingredient> fridgeItems, RecipeCatalog catalog) {
+		if (fridgeItems == null || catalog == null) {
+			return recipeGenerator.generateRecipeFromCatalog(fridgeItems, catalog);
+		}
+		final Key key = new Key(new FridgeSnapshot(fridgeItems), catalog.getVersion(), DateUtil.getCurrentEpochDay());
+		final Segment segment = getSegment(key);
+		final String cachedRecipe = segment.get(key);
+		if (cachedRecipe != null) {
+			return cachedRecipe;
+		}
+		final String recipe = recipeGenerator.generateRecipeFromCatalog(fridgeItems, catalog);
+		segment.put(key, recipe);
+		return recipe;
+	}
+
+	/**
+	 * Drops every suggestion made from the catalog, eg. once it has been replaced.
+	 */
+	public void invalidateCatalog(RecipeCatalog catalog) {
+		for (Segment segment : segments) {
+			segment.invalidateCatalog(catalog.getVersion());
+		}
+	}
+
+	/**
+	 * Drops every suggestion made for a fridge holding these lots, on any day and from any catalog.
+	 */
+	public void invalidateFridge(Collection<Ingredient> fridgeItems) {
+		final FridgeSnapshot fridge = new FridgeSnapshot(fridgeItems);
+		for (Segment segment : segments) {
+			segment.invalidateFridge(fridge);
+		}
+	}
+
+	public void clear() {
+		for (Segment segment : segments) {
+			segment.clear();
+		}
+	}
+
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	/**
+	 * @return the number of entries dropped because the cache was full or they had outlived the time to live
+	 */
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+
+	private Segment getSegment(Key key) {
+		final int hash = key.hashCode();
+		return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+	}
+
+	@Override
+	public String toString() {
+		return "RecipeCache{" +
+				"size=" + size() +
+				", maxSize=" + maxSize +
+				", hitCount=" + getHitCount() +
+				", missCount=" + getMissCount() +
+				", evictionCount=" + getEvictionCount() +
+				'}';
+	}
+
+	/**
+	 * Entries whose keys hash to one segment, evicted least recently used first once the segment is full.
+	 */
+	private class Segment {
+
+		private final LinkedHashMap<Key, CachedSuggestion> entries;
+
+		Segment(final int maxSize) {
+			// Access ordered, so the eldest entry is the least recently used
+			this.entries = new LinkedHashMap<Key, CachedSuggestion>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Key, CachedSuggestion> eldest) {
+					if (size() > maxSize) {
+						evictionCount.increment();
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+
+		synchronized String get(Key key) {
+			final CachedSuggestion suggestion = entries.get(key);
+			if (suggestion != null && clock.millis() - suggestion.createdMillis >= ttlMillis) {
+				entries.remove(key);
+				evictionCount.increment();
+			} else if (suggestion != null) {
+				hitCount.increment();
+				return suggestion.recipe;
+			}
+			missCount.increment();
+			return null;
+		}
+
+		synchronized void put(Key key, String recipe) {
+			entries.put(key, new CachedSuggestion(recipe, clock.millis()));
+		}
+
+		synchronized void invalidateCatalog(long catalogVersion) {
+			final Iterator<Key> keys = entries.keySet().iterator();
+			while (keys.hasNext()) {
+				if (keys.next().catalogVersion == catalogVersion) {
+					keys.remove();
+				}
+			}
+		}
+
+		synchronized void invalidateFridge(FridgeSnapshot fridge) {
+			final Iterator<Key> keys = entries.keySet().iterator();
+			while (keys.hasNext()) {
+				if (keys.next().fridge.equals(fridge)) {
+					keys.remove();
+				}
+			}
+		}
+
+		synchronized void clear() {
+			entries.clear();
+		}
+
+		synchronized int size() {
+			return entries.size();
+		}
+	}
+
+	private static class Key {
+
+		private final FridgeSnapshot fridge;
+		private final long catalogVersion;
+		private final int epochDay;
+
+		Key(FridgeSnapshot fridge, long catalogVersion, int epochDay) {
+			this.fridge = fridge;
+			this.catalogVersion = catalogVersion;
+			this.epochDay = epochDay;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+
+			final Key key = (Key) o;
+			return catalogVersion == key.catalogVersion && epochDay == key.epochDay && fridge.equals(key.fridge);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = fridge.hashCode();
+			result = 31 * result + (int) (catalogVersion ^ (catalogVersion >>> 32));
+			result = 31 * result + epochDay;
+			return result;
+		}
+	}
+
+	/**
+	 * The lots of a fridge sorted by item, useBy date, unit and amount, as the suggestion does not depend on the order
+	 * the lots were given in. Copying the fields also keeps the key from changing if the caller's lots later do.
+	 */
+	private static class FridgeSnapshot {
+
+		private static final Comparator<Ingredient> LOT_ORDER = new Comparator<Ingredient>() {
+			@Override
+			public int compare(Ingredient lot, Ingredient otherLot) {
+				if (lot.getItem() == null || otherLot.getItem() == null) {
+					if (lot.getItem() != otherLot.getItem()) {
+						return lot.getItem() == null ? -1 : 1;
+					}
+				} else {
+					final int itemOrder = lot.getItem().compareTo(otherLot.getItem());
+					if (itemOrder != 0) return itemOrder;
+				}
+				final int useByOrder = Integer.compare(lot.getUseByEpochDay(), otherLot.getUseByEpochDay());
+				if (useByOrder != 0) return useByOrder;
+				final int unitOrder = Integer.compare(getUnitOrdinal(lot), getUnitOrdinal(otherLot));
+				if (unitOrder != 0) return unitOrder;
+				return Integer.compare(lot.getAmount(), otherLot.getAmount());
+			}
+		};
+
+		private final String[] items;
+		private final int[] amounts;
+		private final int[] units;
+		private final int[] useByDays;
+		private final int hash;
+
+		FridgeSnapshot(Collection<Ingredient> fridgeItems) {
+			final Ingredient[] lots = fridgeItems.toArray(new Ingredient[fridgeItems.size()]);
+			Arrays.sort(lots, LOT_ORDER);
+			items = new String[lots.length];
+			amounts = new int[lots.length];
+			units = new int[lots.length];
+			useByDays = new int[lots.length];
+			for (int i = 0; i < lots.length; i++) {
+				items[i] = lots[i].getItem();
+				amounts[i] = lots[i].getAmount();
+				units[i] = getUnitOrdinal(lots[i]);
+				useByDays[i] = lots[i].getUseByEpochDay();
+			}
+			int result = Arrays.hashCode(items);
+			result = 31 * result + Arrays.hashCode(amounts);
+			result = 31 * result + Arrays.hashCode(units);
+			result = 31 * result + Arrays.hashCode(useByDays);
+			hash = result;
+		}
+
+		private static int getUnitOrdinal(Ingredient lot) {
+			return lot.getUnit() == null ? -1 : lot.getUnit().ordinal();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+
+			final FridgeSnapshot that = (FridgeSnapshot) o;
+			return hash == that.hash && Arrays.equals(amounts, that.amounts) && Arrays.equals(useByDays, that.useByDays)
+					&& Arrays.equals(units, that.units) && Arrays.equals(items, that.items);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	private static class CachedSuggestion {
+
+		private final String recipe;
+		private final long createdMillis;
+
+		CachedSuggestion(String recipe, long createdMillis) {
+			this.recipe = recipe;
+			this.createdMillis = createdMillis;
+		}
+	}
+
+}
@@ -0,0 +1,382 @@
+package net.clareburt;
+
+import net.clareburt.model.Ingredient;
+import net.clareburt.model.Recipe;
+import net.clareburt.model.RecipeMatch;
+import net.clareburt.model.Unit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A recipe catalog that has been loaded and prepared once so that it can be matched against many fridges. The catalog
+ * cannot be changed once it has been created, so it can be shared between threads.
+ * <p>
+ * Preparing the catalog compiles it into a dictionary encoded form. Each ingredient name is given a dense int ID and
+ * each recipe is stored as runs of ingredient IDs and required amounts in flat arrays, along with the words of a bit
+ * set of the IDs it requires. A fridge encoded as a bit set of the items it has in date can then reject most recipes
+ * with a few word wide ANDs, before any fridge lots are looked at.
+ * <p>
+ * The catalog also keeps an inverted index from each item ID to the recipes that use it. For a sparse fridge, counting
+ * the hits of each fridge item on the recipes that use it finds the candidate recipes without visiting the rest of the
+ * catalog: a recipe is a candidate when its hit count equals the number of distinct items it requires.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class RecipeCatalog {
+
+	private static final int NOT_FOUND = -1;
+
+	private static final AtomicLong nextVersion = new AtomicLong();
+
+	private final long version = nextVersion.incrementAndGet();
+	private final List<Recipe> recipes;
+
+	private final Map<String, Integer> itemIds = new HashMap<String, Integer>();
+	private final List<String> itemNames = new ArrayList<String>();
+
+	// Ingredients of recipe r are at [ingredientStart[r], ingredientStart[r + 1])
+	private final int[] ingredientStart;
+	private final int[] ingredientItems;
+	private final int[] ingredientAmounts;
+	private final Unit[] ingredientUnits;
+	// Amount the ingredients before each one in its recipe take from the same item, in its base unit
+	private final long[] ingredientTaken;
+
+	// Required item bit set words of recipe r are at [maskStart[r], maskStart[r + 1])
+	private final int[] maskStart;
+	private final int[] maskWords;
+	private final long[] masks;
+
+	// Recipes using item i are at [postingStart[i], postingStart[i + 1]), in catalog order
+	private final int[] postingStart;
+	private final int[] postings;
+	private final int[] requiredItemCounts;
+	private final int[] recipesWithoutIngredients;
+
+	// Scratch hit counts, taken for each call and left zeroed between calls
+	private final ScratchArrays hitCounts;
+
+	public RecipeCatalog(Collection<Recipe> recipes) {
+		final List<Recipe> preparedRecipes = new ArrayList<Recipe>(recipes.size());
+		int ingredientCount = 0;
+		for (Recipe recipe : recipes) {
+			// A recipe without an ingredient list can never be checked against the fridge
+			if (recipe != null && recipe.getIngredients() != null) {
+				preparedRecipes.add(recipe);
+				ingredientCount += recipe.getIngredients().size();
+			}
+		}
+		this.recipes = Collections.unmodifiableList(preparedRecipes);
+		hitCounts = new ScratchArrays(preparedRecipes.size());
+
+		ingredientStart = new int[preparedRecipes.size() + 1];
+		ingredientItems = new int[ingredientCount];
+		ingredientAmounts = new int[ingredientCount];
+		ingredientUnits = new Unit[ingredientCount];
+		ingredientTaken = new long[ingredientCount];
+		maskStart = new int[preparedRecipes.size() + 1];
+		final int[] recipeWords = new int[ingredientCount];
+		final long[] recipeMasks = new long[ingredientCount];
+		int ingredient = 0;
+		int mask = 0;
+		for (int r = 0; r < preparedRecipes.size(); r++) {
+			ingredientStart[r] = ingredient;
+			maskStart[r] = mask;
+			for (Ingredient recipeIngredient : preparedRecipes.get(r).getIngredients()) {
+				final int itemId = internItem(recipeIngredient.getItem());
+				ingredientItems[ingredient] = itemId;
+				ingredientAmounts[ingredient] = recipeIngredient.getAmount();
+				ingredientUnits[ingredient] = recipeIngredient.getUnit();
+				ingredientTaken[ingredient] = getAmountTakenBefore(ingredientStart[r], ingredient);
+				ingredient++;
+				mask = addToMask(recipeWords, recipeMasks, maskStart[r], mask, itemId);
+			}
+		}
+		ingredientStart[preparedRecipes.size()] = ingredient;
+		maskStart[preparedRecipes.size()] = mask;
+		maskWords = Arrays.copyOf(recipeWords, mask);
+		masks = Arrays.copyOf(recipeMasks, mask);
+
+		// Build the inverted index from the bit sets, which hold each distinct item of a recipe once
+		requiredItemCounts = new int[preparedRecipes.size()];
+		postingStart = new int[itemNames.size() + 1];
+		int emptyRecipes = 0;
+		for (int r = 0; r < preparedRecipes.size(); r++) {
+			for (int i = maskStart[r]; i < maskStart[r + 1]; i++) {
+				requiredItemCounts[r] += Long.bitCount(masks[i]);
+				for (long bits = masks[i]; bits != 0; bits &= bits - 1) {
+					postingStart[(maskWords[i] << 6) + Long.numberOfTrailingZeros(bits) + 1]++;
+				}
+			}
+			if (requiredItemCounts[r] == 0) emptyRecipes++;
+		}
+		for (int i = 0; i < itemNames.size(); i++) {
+			postingStart[i + 1] += postingStart[i];
+		}
+		postings = new int[postingStart[itemNames.size()]];
+		recipesWithoutIngredients = new int[emptyRecipes];
+		final int[] postingEnd = Arrays.copyOf(postingStart, itemNames.size());
+		emptyRecipes = 0;
+		for (int r = 0; r < preparedRecipes.size(); r++) {
+			for (int i = maskStart[r]; i < maskStart[r + 1]; i++) {
+				for (long bits = masks[i]; bits != 0; bits &= bits - 1) {
+					postings[postingEnd[(maskWords[i] << 6) + Long.numberOfTrailingZeros(bits)]++] = r;
+				}
+			}
+			if (requiredItemCounts[r] == 0) recipesWithoutIngredients[emptyRecipes++] = r;
+		}
+	}
+
+	/**
+	 * @return a number that is different for every catalog created, so results worked out from one catalog can be told
+	 * apart from those of a catalog loaded later
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public List<Recipe> getRecipes() {
+		return recipes;
+	}
+
+	public int size() {
+		return recipes.size();
+	}
+
+	public boolean isEmpty() {
+		return recipes.isEmpty();
+	}
+
+	public String getRecipeName(int recipe) {
+		return recipes.get(recipe).getName();
+	}
+
+	/**
+	 * @return the number of distinct ingredient names in the catalog
+	 */
+	public int getItemCount() {
+		return itemNames.size();
+	}
+
+	/**
+	 * @return the ID of the ingredient name, or -1 if no recipe uses it
+	 */
+	public int getItemId(String item) {
+		final Integer itemId = itemIds.get(item);
+		return itemId == null ? NOT_FOUND : itemId;
+	}
+
+	public String getItemName(int itemId) {
+		return itemNames.get(itemId);
+	}
+
+	public int getIngredientStart(int recipe) {
+		return ingredientStart[recipe];
+	}
+
+	public int getIngredientEnd(int recipe) {
+		return ingredientStart[recipe + 1];
+	}
+
+	public int getIngredientItem(int ingredient) {
+		return ingredientItems[ingredient];
+	}
+
+	public int getIngredientAmount(int ingredient) {
+		return ingredientAmounts[ingredient];
+	}
+
+	public Unit getIngredientUnit(int ingredient) {
+		return ingredientUnits[ingredient];
+	}
+
+	/**
+	 * @return the amount that the ingredients before the ingredient in its recipe take from the same item, in units
+	 * with the same base unit, in the base unit. The ingredient is met from what they leave.
+	 */
+	public long getIngredientTaken(int ingredient) {
+		return ingredientTaken[ingredient];
+	}
+
+	private long getAmountTakenBefore(int start, int ingredient) {
+		final Unit baseUnit = FridgeIndex.getBaseUnit(ingredientUnits[ingredient]);
+		long taken = 0;
+		for (int i = start; i < ingredient; i++) {
+			if (ingredientItems[i] == ingredientItems[ingredient] && FridgeIndex.getBaseUnit(ingredientUnits[i]) == baseUnit) {
+				taken += FridgeIndex.toBaseAmount(Math.max(ingredientAmounts[i], 0), ingredientUnits[i]);
+			}
+		}
+		return taken;
+	}
+
+	/**
+	 * Encodes the items the fridge has in date as a bit set of catalog item IDs. Items no recipe uses are left out.
+	 */
+	public long[] getAvailableItems(FridgeIndex fridgeIndex) {
+		final long[] availableItems = new long[(itemNames.size() + 63) >>> 6];
+		for (String item : fridgeIndex.getItems()) {
+			final int itemId = getItemId(item);
+			if (itemId != NOT_FOUND) {
+				availableItems[itemId >>> 6] |= 1L << itemId;
+			}
+		}
+		return availableItems;
+	}
+
+	/**
+	 * Returns whether every item the recipe requires is in the bit set of available items. Amounts are not checked.
+	 */
+	public boolean hasRequiredItems(int recipe, long[] availableItems) {
+		for (int i = maskStart[recipe]; i < maskStart[recipe + 1]; i++) {
+			if ((availableItems[maskWords[i]] & masks[i]) != masks[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks the fridge lots for each ingredient of the recipe, using up the lots that expire first until there is
+	 * enough of the ingredient. Ingredients of the same item are met one after the other from the same lots.
+	 * @return the match with the chosen fridge lots, or null if there was not enough of an ingredient
+	 */
+	public RecipeMatch matchRecipe(int recipe, FridgeIndex fridgeIndex) {
+		final int end = ingredientStart[recipe + 1];
+		final List<List<Ingredient>> allocation = new ArrayList<List<Ingredient>>(end - ingredientStart[recipe]);
+		for (int i = ingredientStart[recipe]; i < end; i++) {
+			final List<Ingredient> lots = fridgeIndex.allocate(itemNames.get(ingredientItems[i]), ingredientAmounts[i], ingredientUnits[i], ingredientTaken[i]);
+			if (lots == null) {
+				return null;
+			}
+			// Copied, as the lots are a view of the index
+			allocation.add(new ArrayList<Ingredient>(lots));
+		}
+		return RecipeMatch.fromAllocation(getRecipeName(recipe), allocation);
+	}
+
+	/**
+	 * Returns the positions of the recipes that use the item, in catalog order.
+	 */
+	public int[] getRecipesUsing(String item) {
+		final int itemId = getItemId(item);
+		if (itemId == NOT_FOUND) {
+			return new int[0];
+		}
+		return Arrays.copyOfRange(postings, postingStart[itemId], postingStart[itemId + 1]);
+	}
+
+	/**
+	 * Returns the number of inverted index entries that findCandidateRecipes would visit for the fridge, so that it
+	 * can be compared with the cost of checking every recipe's bit set.
+	 */
+	public int countPostings(FridgeIndex fridgeIndex) {
+		int postingCount = 0;
+		for (String item : fridgeIndex.getItems()) {
+			final int itemId = getItemId(item);
+			if (itemId != NOT_FOUND) {
+				postingCount += postingStart[itemId + 1] - postingStart[itemId];
+			}
+		}
+		return postingCount;
+	}
+
+	/**
+	 * Finds the recipes for which the fridge has every required item in date by walking the inverted index entries of
+	 * the fridge's items only. Amounts are not checked.
+	 * @return the positions of the candidate recipes in catalog order
+	 */
+	public int[] findCandidateRecipes(FridgeIndex fridgeIndex) {
+		final int[] fridgeItemIds = new int[fridgeIndex.getItems().size()];
+		int count = 0;
+		for (String item : fridgeIndex.getItems()) {
+			final int itemId = getItemId(item);
+			if (itemId != NOT_FOUND) {
+				fridgeItemIds[count++] = itemId;
+			}
+		}
+		return findCandidateRecipes(fridgeItemIds, count);
+	}
+
+	/**
+	 * Finds the recipes that use only the given items by walking the inverted index entries of those items. Amounts
+	 * are not checked.
+	 * @param fridgeItemIds distinct catalog item IDs of the items the fridge has in date
+	 * @param count number of item IDs to use from the start of the array
+	 * @return the positions of the candidate recipes in catalog order
+	 */
+	public int[] findCandidateRecipes(int[] fridgeItemIds, int count) {
+		final int[] hits = hitCounts.take();
+		int postingCount = 0;
+		for (int i = 0; i < count; i++) {
+			postingCount += postingStart[fridgeItemIds[i] + 1] - postingStart[fridgeItemIds[i]];
+		}
+		final int[] touched = new int[postingCount];
+		int touchedCount = 0;
+		for (int f = 0; f < count; f++) {
+			final int itemId = fridgeItemIds[f];
+			for (int i = postingStart[itemId]; i < postingStart[itemId + 1]; i++) {
+				if (hits[postings[i]]++ == 0) {
+					touched[touchedCount++] = postings[i];
+				}
+			}
+		}
+		final int[] candidates = new int[touchedCount + recipesWithoutIngredients.length];
+		int candidateCount = 0;
+		for (int i = 0; i < touchedCount; i++) {
+			final int recipe = touched[i];
+			if (hits[recipe] == requiredItemCounts[recipe]) {
+				candidates[candidateCount++] = recipe;
+			}
+			hits[recipe] = 0;
+		}
+		hitCounts.release(hits);
+		for (int recipe : recipesWithoutIngredients) {
+			candidates[candidateCount++] = recipe;
+		}
+		final int[] sortedCandidates = Arrays.copyOf(candidates, candidateCount);
+		Arrays.sort(sortedCandidates);
+		return sortedCandidates;
+	}
+
+	private int internItem(String item) {
+		final Integer itemId = itemIds.get(item);
+		if (itemId != null) {
+			return itemId;
+		}
+		final int newItemId = itemNames.size();
+		itemIds.put(item, newItemId);
+		itemNames.add(item);
+		return newItemId;
+	}
+
+	/**
+	 * Adds the item ID to the recipe's bit set, whose words start at recipeStart, returning the new end of the words.
+	 */
+	private static int addToMask(int[] words, long[] masks, int recipeStart, int end, int itemId) {
+		final int word = itemId >>> 6;
+		for (int i = recipeStart; i < end; i++) {
+			if (words[i] == word) {
+				masks[i] |= 1L << itemId;
+				return end;
+			}
+		}
+		words[end] = word;
+		masks[end] = 1L << itemId;
+		return end + 1;
+	}
+
+	@Override
+	public String toString() {
+		return "RecipeCatalog{" +
+				"recipes=" + recipes +
+				'}';
+	}
+}
@@ -3,18 +3,38 @@ package net.clareburt;
 import au.com.bytecode.opencsv.CSVReader;
 import com.google.gson.JsonParseException;
 import net.clareburt.exception.ParsingException;
+import net.clareburt.metrics.MetricsSnapshot;
+import net.clareburt.metrics.RecipeMetrics;
+import net.clareburt.model.BatchResult;
 import net.clareburt.model.Ingredient;
 import net.clareburt.model.Recipe;
-import org.apache.commons.io.FileUtils;
+import net.clareburt.model.RecipeMatch;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 
 /**
  * @author Justin Clareburt
@@ -24,16 +44,48 @@ public class RecipeFinder {
 
 	private static final Logger logger = LoggerFactory.getLogger(RecipeFinder.class);
 
+	/**
+	 * System property holding the number of threads used to check recipes and to load fridge files. Defaults to the
+	 * number of processors.
+	 */
+	public static final String PARALLELISM_PROPERTY = "recipe.parallelism";
+	/** System property holding the maximum number of suggestions to cache. Defaults to 10000. */
+	public static final String CACHE_SIZE_PROPERTY = "recipe.cache.size";
+	/** System property holding how long a suggestion is cached for, in milliseconds. Defaults to 10 minutes. */
+	public static final String CACHE_TTL_PROPERTY = "recipe.cache.ttl";
+
+	private static final String COMPILE_OPTION = "-compile";
+	private static final String SERVE_OPTION = "-serve";
+
 	private static final RecipeFinder instance = new RecipeFinder();
 
 	private IngredientsParser ingredientsParser;
+	private MappedIngredientsLoader ingredientsLoader;
 	private RecipeParser recipeParser;
 	private RecipeGenerator recipeGenerator;
+	private RecipeCache recipeCache;
+	private RecipeMetrics metrics;
+	private ExecutorService loadExecutor;
 
 	private RecipeFinder() {
+		final int parallelism = Integer.getInteger(PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors());
 		ingredientsParser = new IngredientsParser();
+		// The loader and generator are kept for the life of the JVM, so they are not closed. Their pools use daemon threads.
+		ingredientsLoader = new MappedIngredientsLoader(ingredientsParser, parallelism);
 		recipeParser = new RecipeParser();
-		recipeGenerator = new RecipeGenerator();
+		recipeGenerator = new RecipeGenerator(parallelism);
+		metrics = RecipeMetrics.getInstance();
+		metrics.register();
+		recipeCache = new RecipeCache(Integer.getInteger(CACHE_SIZE_PROPERTY, 10000), Long.getLong(CACHE_TTL_PROPERTY, TimeUnit.MINUTES.toMillis(10)));
+		// Daemon threads, so that files still loading do not keep the JVM running
+		loadExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				final Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
 	}
 
 	public static RecipeFinder getInstance() {
@@ -41,9 +93,37 @@ public class RecipeFinder {
 	}
 
 	public static void main(String[] args) {
+		if (args.length == 3 && COMPILE_OPTION.equals(args[0])) {
+			try {
+				RecipeFinder.getInstance().compileCatalog(args[1], args[2]);
+			} catch (ParsingException e) {
+				System.out.println(e.getMessage());
+			}
+			return;
+		}
+		if (args.length == 3 && SERVE_OPTION.equals(args[0])) {
+			final int port;
+			try {
+				port = Integer.parseInt(args[1]);
+			} catch (NumberFormatException e) {
+				System.out.println("Invalid port: " + args[1]);
+				printUsage();
+				return;
+			}
+			try {
+				final RecipeFinder recipeFinder = RecipeFinder.getInstance();
+				new RecipeServer(recipeFinder, recipeFinder.watchCatalog(args[2]), port).start();
+			} catch (ParsingException e) {
+				System.out.println(e.getMessage());
+			} catch (IOException e) {
+				System.out.println("Unable to start server: " + e.getMessage());
+			}
+			return;
+		}
 		if (args.length != 2) {
 			System.out.println("Invalid input parameters.");
-			System.out.println("RecipeFinder fridgeCSV recipesJson ");
+			printUsage();
+			return;
 		}
 		final String fridgeCsvFilename = args[0];
 		final String recipesJsonFilename = args[1];
@@ -56,43 +136,356 @@ public class RecipeFinder {
 		}
 	}
 
+	private static void printUsage() {
+		System.out.println("RecipeFinder fridgeCSV recipesJson|recipeCatalog" + MappedRecipeCatalog.FILE_EXTENSION);
+		System.out.println("RecipeFinder " + COMPILE_OPTION + " recipesJson recipeCatalog" + MappedRecipeCatalog.FILE_EXTENSION);
+		System.out.println("RecipeFinder " + SERVE_OPTION + " port recipesJson");
+	}
+
+	/**
+	 * Reads the fridge items and recipes and suggests the best recipe. The recipes can be given as Json or as a catalog
+	 * file compiled by compileCatalog, which is mapped rather than parsed.
+	 */
 	public String generateRecipesFromFilenames(String fridgeCsvFilename, String recipesJsonFilename) throws ParsingException {
-		// Read and parse fridge items
-		final Collection<Ingredient> fridgeItems = getIngredients(fridgeCsvFilename);
+		final long start = System.nanoTime();
+		try {
+			// Read and parse fridge items
+			final Collection<Ingredient> fridgeItems = getIngredients(fridgeCsvFilename);
+
+			if (recipesJsonFilename.endsWith(MappedRecipeCatalog.FILE_EXTENSION)) {
+				return recipeGenerator.generateRecipeFromMappedCatalog(fridgeItems, loadMappedCatalog(recipesJsonFilename));
+			}
+
+			// Read and parse recipes
+			final Collection<Recipe> recipes = getRecipes(recipesJsonFilename);
+
+			// Determine best recipe
+			return recipeGenerator.generateRecipe(fridgeItems, recipes);
+		} finally {
+			metrics.recordSince(RecipeMetrics.Phase.END_TO_END, start);
+		}
+	}
+
+	/**
+	 * Reads the fridge items and recipes and suggests the best recipes that can be made, best first.
+	 * @param count maximum number of recipes to suggest
+	 */
+	public List<RecipeMatch> generateRecipesFromFilenames(String fridgeCsvFilename, String recipesJsonFilename, int count) throws ParsingException {
+		final long start = System.nanoTime();
+		try {
+			final Collection<Ingredient> fridgeItems = getIngredients(fridgeCsvFilename);
+			final Collection<Recipe> recipes = getRecipes(recipesJsonFilename);
+			return recipeGenerator.generateRecipes(fridgeItems, recipes, count);
+		} finally {
+			metrics.recordSince(RecipeMetrics.Phase.END_TO_END, start);
+		}
+	}
+
+	/**
+	 * Suggests the best recipe as generateRecipesFromFilenames does, reading the fridge items and the recipes at the
+	 * same time on a thread pool of the finder's own.
+	 * @see #generateRecipesAsync(String, String, Executor)
+	 */
+	public CompletableFuture<String> generateRecipesAsync(String fridgeCsvFilename, String recipesJsonFilename) {
+		return generateRecipesAsync(fridgeCsvFilename, recipesJsonFilename, loadExecutor);
+	}
+
+	/**
+	 * Suggests the best recipe as generateRecipesFromFilenames does without blocking the calling thread. The fridge
+	 * items and the recipes are read at the same time on the executor, and the recipes are matched on the executor
+	 * once both have been read.
+	 * @param executor Executor to read the files and match the recipes on
+	 * @return a future of the name of the recipe to use. If either file cannot be read, the future completes
+	 * exceptionally with the ParsingException, wrapped in a CompletionException as for any dependent stage.
+	 */
+	public CompletableFuture<String> generateRecipesAsync(final String fridgeCsvFilename, final String recipesJsonFilename, Executor executor) {
+		final long start = System.nanoTime();
+		final CompletableFuture<Collection<Ingredient>> fridgeItems = loadAsync(new Load<Collection<Ingredient>>() {
+			@Override
+			public Collection<Ingredient> load() throws ParsingException {
+				return getIngredients(fridgeCsvFilename);
+			}
+		}, executor);
+
+		final CompletableFuture<String> suggestion;
+		if (recipesJsonFilename.endsWith(MappedRecipeCatalog.FILE_EXTENSION)) {
+			final CompletableFuture<MappedRecipeCatalog> catalog = loadAsync(new Load<MappedRecipeCatalog>() {
+				@Override
+				public MappedRecipeCatalog load() throws ParsingException {
+					return loadMappedCatalog(recipesJsonFilename);
+				}
+			}, executor);
+			suggestion = fridgeItems.thenCombineAsync(catalog, new BiFunction<Collection<Ingredient>, MappedRecipeCatalog, String>() {
+				@Override
+				public String apply(Collection<Ingredient> fridgeItems, MappedRecipeCatalog catalog) {
+					return recipeGenerator.generateRecipeFromMappedCatalog(fridgeItems, catalog);
+				}
+			}, executor);
+		} else {
+			final CompletableFuture<Collection<Recipe>> recipes = loadAsync(new Load<Collection<Recipe>>() {
+				@Override
+				public Collection<Recipe> load() throws ParsingException {
+					return getRecipes(recipesJsonFilename);
+				}
+			}, executor);
+			suggestion = fridgeItems.thenCombineAsync(recipes, new BiFunction<Collection<Ingredient>, Collection<Recipe>, String>() {
+				@Override
+				public String apply(Collection<Ingredient> fridgeItems, Collection<Recipe> recipes) {
+					return recipeGenerator.generateRecipe(fridgeItems, recipes);
+				}
+			}, executor);
+		}
+		return suggestion.whenComplete(new BiConsumer<String, Throwable>() {
+			@Override
+			public void accept(String recipe, Throwable failure) {
+				metrics.recordSince(RecipeMetrics.Phase.END_TO_END, start);
+			}
+		});
+	}
+
+	/**
+	 * Reads and prepares a recipe catalog so that it can be matched against many fridges.
+	 */
+	public RecipeCatalog loadCatalog(String recipesJsonFilename) throws ParsingException {
+		return new RecipeCatalog(getRecipes(recipesJsonFilename));
+	}
+
+	/**
+	 * Loads a catalog and keeps it up to date as its recipes Json file is republished. The returned watcher supplies
+	 * the current catalog.
+	 */
+	public CatalogWatcher watchCatalog(String recipesJsonFilename) throws ParsingException {
+		final CatalogWatcher catalogWatcher;
+		try {
+			catalogWatcher = new CatalogWatcher(this, recipesJsonFilename);
+		} catch (IOException e) {
+			throw new ParsingException("Unable to watch file: " + recipesJsonFilename);
+		}
+		catalogWatcher.start();
+		return catalogWatcher;
+	}
 
-		// Read and parse recipes
+	/**
+	 * Compiles the recipes Json to a catalog file that can be opened with loadMappedCatalog.
+	 */
+	public void compileCatalog(String recipesJsonFilename, String catalogFilename) throws ParsingException {
 		final Collection<Recipe> recipes = getRecipes(recipesJsonFilename);
+		try {
+			MappedRecipeCatalog.write(recipes, new File(catalogFilename));
+		} catch (IOException e) {
+			throw new ParsingException("Error writing recipe catalog: " + catalogFilename);
+		}
+		logger.info("Compiled {} recipes to {}", recipes.size(), catalogFilename);
+	}
 
-		// Determine best recipe
-		return recipeGenerator.generateRecipe(fridgeItems, recipes);
+	/**
+	 * Maps a catalog file compiled by compileCatalog. The recipes are queried in place, so this does not parse them.
+	 */
+	public MappedRecipeCatalog loadMappedCatalog(String catalogFilename) throws ParsingException {
+		try {
+			return MappedRecipeCatalog.open(new File(catalogFilename));
+		} catch (FileNotFoundException e) {
+			throw new ParsingException("File not found: " + catalogFilename);
+		} catch (IOException e) {
+			throw new ParsingException("Error reading recipe catalog: " + catalogFilename);
+		}
+	}
+
+	/**
+	 * Suggests a recipe for a fridge from a catalog that is loaded once. Suggestions are cached, so a fridge with the
+	 * same lots asked about again on the same day is answered without checking the recipes.
+	 * @param catalog RecipeCatalog loaded with loadCatalog
+	 * @param fridgeItems Collection of Ingredients in the fridge
+	 * @return String name of the recipe to use
+	 */
+	public String generateRecipe(RecipeCatalog catalog, Collection<Ingredient> fridgeItems) {
+		final long start = System.nanoTime();
+		try {
+			return recipeCache.generateRecipe(recipeGenerator, fridgeItems, catalog);
+		} finally {
+			metrics.recordSince(RecipeMetrics.Phase.END_TO_END, start);
+		}
+	}
+
+	/**
+	 * @return a copy of the latency and throughput metrics of each phase, which are also published over JMX
+	 */
+	public MetricsSnapshot getMetricsSnapshot() {
+		return metrics.getSnapshot();
+	}
+
+	/**
+	 * @return the cache of suggestions made from loaded catalogs, eg. to read its hit and miss counts
+	 */
+	public RecipeCache getRecipeCache() {
+		return recipeCache;
+	}
+
+	/**
+	 * Suggests a recipe for each fridge in turn from a catalog that is loaded once.
+	 * @param catalog RecipeCatalog loaded with loadCatalog
+	 * @param fridges the items in each fridge
+	 * @return the suggestion for each fridge in the order the fridges were given, and the throughput
+	 */
+	public BatchResult generateRecipesForFridges(RecipeCatalog catalog, Iterable<? extends Collection<Ingredient>> fridges) {
+		final List<String> suggestions = new ArrayList<String>();
+		final long start = System.nanoTime();
+		for (Collection<Ingredient> fridgeItems : fridges) {
+			suggestions.add(generateRecipe(catalog, fridgeItems));
+		}
+		return logBatchResult(new BatchResult(suggestions, System.nanoTime() - start));
+	}
+
+	/**
+	 * Reads each fridge file in turn and suggests a recipe for it, reading and preparing the recipes only once.
+	 * @return the suggestion for each fridge in the order the files were given, and the throughput
+	 */
+	public BatchResult generateRecipesForFridgeFiles(List<String> fridgeCsvFilenames, String recipesJsonFilename) throws ParsingException {
+		final RecipeCatalog catalog = loadCatalog(recipesJsonFilename);
+		final List<String> suggestions = new ArrayList<String>();
+		final long start = System.nanoTime();
+		for (String fridgeCsvFilename : fridgeCsvFilenames) {
+			suggestions.add(generateRecipe(catalog, getIngredients(fridgeCsvFilename)));
+		}
+		return logBatchResult(new BatchResult(suggestions, System.nanoTime() - start));
+	}
+
+	private BatchResult logBatchResult(BatchResult batchResult) {
+		logger.info("Batch complete: {}, {}", batchResult, recipeCache);
+		return batchResult;
+	}
+
+	/**
+	 * Reads fridge items in the fridge CSV format from a source other than a file, eg. a request body. The reader is
+	 * closed once the items have been read.
+	 * @param fridgeCsv Reader over the fridge items
+	 * @param source description of where the items came from, used in error messages
+	 */
+	public Collection<Ingredient> readIngredients(Reader fridgeCsv, String source) throws ParsingException {
+		return getIngredients(fridgeCsv, source);
 	}
 
 	private Collection<Ingredient> getIngredients(String fridgeCsvFilename) throws ParsingException {
-		final Collection<Ingredient> fridgeItems;
+		if (MappedIngredientsLoader.isSupported(Charset.defaultCharset())) {
+			return loadIngredients(fridgeCsvFilename);
+		}
+		final Reader fridgeCsv;
 		try {
-			fridgeItems = ingredientsParser.getIngredients(new CSVReader(new FileReader(new File(fridgeCsvFilename))).readAll());
-			logger.debug("fridgeItems = " + fridgeItems);
+			fridgeCsv = new FileReader(new File(fridgeCsvFilename));
+		} catch (FileNotFoundException e) {
+			throw new ParsingException("File not found: " + fridgeCsvFilename);
+		}
+		return getIngredients(fridgeCsv, fridgeCsvFilename);
+	}
+
+	/**
+	 * Loads a fridge file by parsing chunks of it in parallel.
+	 */
+	private Collection<Ingredient> loadIngredients(String fridgeCsvFilename) throws ParsingException {
+		final long start = System.nanoTime();
+		try {
+			final List<Ingredient> fridgeItems = ingredientsLoader.load(new File(fridgeCsvFilename));
+			logger.debug("fridgeItems = {}", fridgeItems);
+			return fridgeItems;
 		} catch (FileNotFoundException e) {
 			throw new ParsingException("File not found: " + fridgeCsvFilename);
 		} catch (IOException e) {
 			throw new ParsingException("Error reading file: " + fridgeCsvFilename);
 		} catch (ParseException e) {
-			throw new ParsingException("Error parsing date: " + e.getMessage());
+			throw new ParsingException("Error parsing fridge items: " + e.getMessage());
+		} finally {
+			metrics.recordSince(RecipeMetrics.Phase.CSV_READ, start);
+		}
+	}
+
+	private Collection<Ingredient> getIngredients(Reader fridgeCsv, String source) throws ParsingException {
+		final Collection<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		final long start = System.nanoTime();
+		CSVReader csvReader = null;
+		try {
+			// Parse each row as it is read rather than holding every raw row in memory first
+			csvReader = new CSVReader(fridgeCsv);
+			ingredientsParser.readIngredients(csvReader, new Consumer<Ingredient>() {
+				@Override
+				public void accept(Ingredient ingredient) {
+					fridgeItems.add(ingredient);
+				}
+			});
+			logger.debug("fridgeItems = {}", fridgeItems);
+		} catch (IOException e) {
+			throw new ParsingException("Error reading file: " + source);
+		} catch (ParseException e) {
+			throw new ParsingException("Error parsing fridge items: " + e.getMessage());
+		} finally {
+			closeQuietly(csvReader);
+			metrics.recordSince(RecipeMetrics.Phase.CSV_READ, start);
 		}
 		return fridgeItems;
 	}
 
 	private Collection<Recipe> getRecipes(String recipesJsonFilename) throws ParsingException {
-		final Collection<Recipe> recipes;
+		final Collection<Recipe> recipes = new ArrayList<Recipe>();
+		final long start = System.nanoTime();
+		InputStream recipeJson = null;
 		try {
-			recipes = recipeParser.getRecipesFromJson(FileUtils.readFileToString(new File(recipesJsonFilename)));
-			logger.debug("recipes = " + recipes);
+			// Stream the recipes straight from the file rather than reading the whole file into a String first
+			recipeJson = new FileInputStream(new File(recipesJsonFilename));
+			recipeParser.readRecipes(recipeJson, new Consumer<Recipe>() {
+				@Override
+				public void accept(Recipe recipe) {
+					recipes.add(recipe);
+				}
+			});
+			logger.debug("recipes = {}", recipes);
 		} catch (IOException e) {
 			throw new ParsingException("File not found: " + recipesJsonFilename);
 		} catch (JsonParseException e) {
 			throw new ParsingException("Error reading recipe Json: " + recipesJsonFilename);
+		} finally {
+			IOUtils.closeQuietly(recipeJson);
+			metrics.recordSince(RecipeMetrics.Phase.JSON_PARSE, start);
 		}
 		return recipes;
 	}
 
+	/**
+	 * Runs the load on the executor.
+	 * @return a future of what was loaded, which completes exceptionally with whatever the load throws if it fails
+	 */
+	static <T> CompletableFuture<T> loadAsync(final Load<T> load, Executor executor) {
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						future.complete(load.load());
+					} catch (Throwable e) {
+						// Errors too, as supplyAsync does, so that a caller waiting on the future is not left waiting
+						future.completeExceptionally(e);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	private void closeQuietly(CSVReader csvReader) {
+		if (csvReader == null) return;
+		try {
+			csvReader.close();
+		} catch (IOException e) {
+			logger.debug("Error closing CSV reader", e);
+		}
+	}
+
+	/**
+	 * Reading of a file that may fail with a ParsingException.
+	 */
+	interface Load<T> {
+		T load() throws ParsingException;
+	}
+
 }
@@ -1,18 +1,67 @@
 package net.clareburt;
 
+import net.clareburt.metrics.RecipeMetrics;
 import net.clareburt.model.Ingredient;
 import net.clareburt.model.Recipe;
+import net.clareburt.model.RecipeMatch;
+import net.clareburt.model.Unit;
 import net.clareburt.util.DateUtil;
 
+import java.io.Closeable;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
+ * A generator created with a parallelism above 1 has its own pool of threads, which are shut down when it is closed.
+ *
  * @author Justin Clareburt
  * @since 23/02/14
  */
-public class RecipeGenerator {
+public class RecipeGenerator implements Closeable {
 
-	private static final String DEFAULT_RECIPE = "Order Takeout";
+	static final String DEFAULT_RECIPE = "Order Takeout";
+
+	/** Number of recipes below which a parallel evaluation task checks its recipes itself rather than splitting. */
+	private static final int PARALLEL_THRESHOLD = 1024;
+
+	private final int parallelism;
+	private final ForkJoinPool pool;
+	private final RecipeMetrics metrics = RecipeMetrics.getInstance();
+
+	/**
+	 * Creates a generator that checks recipes on the calling thread.
+	 */
+	public RecipeGenerator() {
+		this(1);
+	}
+
+	/**
+	 * Creates a generator that checks large recipe catalogs in parallel.
+	 * @param parallelism number of threads used to check recipes, 1 to check recipes on the calling thread
+	 */
+	public RecipeGenerator(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+		}
+		this.parallelism = parallelism;
+		this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Shuts down the threads used to check recipes. Catalogs small enough to be checked on the calling thread can still
+	 * be used, but checking a larger one fails with a RejectedExecutionException.
+	 */
+	@Override
+	public void close() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
 
 	/**
 	 * Given a collection of items in the fridge and a collection of recipes, suggest a recipe for which the fridge
@@ -26,115 +75,563 @@ public class RecipeGenerator {
 		if (fridgeItems == null || fridgeItems.isEmpty() || recipes == null || recipes.isEmpty()) {
 			return DEFAULT_RECIPE;
 		}
-		final Date currentDate = DateUtil.getCurrentDate();
-		// Loop through recipes checking if ingredients exist (in date)
-		final Map<String, Collection<Ingredient>> validRecipes = new HashMap<String, Collection<Ingredient>>();
-		recipeLoop: for (Recipe recipe : recipes) {
-			final Collection<Ingredient> ingredients = new ArrayList<Ingredient>();
-			for (Ingredient recipeIngredient : recipe.getIngredients()) {
-				// Look for ingredient in fridge
-				final Ingredient ingredient = findItemWithClosestUseByDate(fridgeItems, recipeIngredient, currentDate);
-				if (ingredient == null) {
-					// This ingredient was not found. Immediately stop checking the ingredients in this recipe.
-					continue recipeLoop;
-				}
-				ingredients.add(ingredient);
-			}
-			validRecipes.put(recipe.getName(), ingredients);
+		final long start = System.nanoTime();
+		// Index the fridge once so that each ingredient lookup does not scan every fridge item
+		return generateRecipeFromIndex(new FridgeIndex(fridgeItems, DateUtil.getCurrentEpochDay()), recipes, start);
+	}
+
+	/**
+	 * Suggests a recipe from a catalog that has already been loaded and prepared. Recipes that need an item the
+	 * fridge does not have in date are rejected using the catalog's item bit sets before any fridge lots are checked.
+	 * The candidates are visited soonest expiring first and the search stops once no recipe left can beat the best one
+	 * found. Large catalogs are visited in parallel, a block of the candidates at a time.
+	 * @param fridgeItems Collection of Ingredients
+	 * @param catalog RecipeCatalog to choose from
+	 * @return String name of the recipe to use
+	 */
+	public String generateRecipeFromCatalog(Collection<Ingredient> fridgeItems, RecipeCatalog catalog) {
+		if (fridgeItems == null || fridgeItems.isEmpty() || catalog == null || catalog.isEmpty()) {
+			return DEFAULT_RECIPE;
 		}
-		return getBestRecipe(validRecipes);
+		final long start = System.nanoTime();
+		final FridgeIndex fridgeIndex = new FridgeIndex(fridgeItems, DateUtil.getCurrentEpochDay());
+		final CatalogRecipeChecker checker = new CatalogRecipeChecker(fridgeIndex, catalog);
+		return getName(rankRecipesByBound(checker, fridgeIndex, catalog, start));
 	}
 
-	private Ingredient findItemWithClosestUseByDate(Collection<Ingredient> fridgeItems, Ingredient recipeIngredient, Date currentDate) {
-		Ingredient ingredient = null;
-		Date closestDate = null;
-		for (Ingredient fridgeItem : fridgeItems) {
-			if (fridgeItem.getItem().equals(recipeIngredient.getItem())) {
-				// Check useBy date and amount
-				if (fridgeItem.getAmount() < recipeIngredient.getAmount() ||
-						fridgeItem.getUseBy().before(currentDate)) {
-					continue;
-				}
-				if (closestDate == null || closestDate.after(fridgeItem.getUseBy())) {
-					closestDate = fridgeItem.getUseBy();
-					ingredient = fridgeItem;
-				}
+	/**
+	 * Suggests a recipe from a catalog file that is queried in place. Only the recipes that use the fridge's items are
+	 * visited, through the catalog's inverted index.
+	 * @param fridgeItems Collection of Ingredients
+	 * @param catalog MappedRecipeCatalog to choose from
+	 * @return String name of the recipe to use
+	 */
+	public String generateRecipeFromMappedCatalog(Collection<Ingredient> fridgeItems, MappedRecipeCatalog catalog) {
+		if (fridgeItems == null || fridgeItems.isEmpty() || catalog == null || catalog.isEmpty()) {
+			return DEFAULT_RECIPE;
+		}
+		final long start = System.nanoTime();
+		final FridgeIndex fridgeIndex = new FridgeIndex(fridgeItems, DateUtil.getCurrentEpochDay());
+		return getName(rankRecipes(new MappedCatalogRecipeChecker(fridgeIndex, catalog), fridgeIndex, catalog.size(), start));
+	}
+
+	/**
+	 * Suggests a recipe for a household whose fridge is held in a FridgeStore. The household's lots are matched where
+	 * they are stored, without creating Ingredient or RecipeMatch objects, and only the recipes that use the
+	 * household's items are visited, through the catalog's inverted index.
+	 * @param store FridgeStore holding the household's lots
+	 * @param householdId ID the household was added to the store with
+	 * @param catalog RecipeCatalog to choose from
+	 * @return String name of the recipe to use
+	 */
+	public String generateRecipeFromStore(FridgeStore store, int householdId, RecipeCatalog catalog) {
+		if (store == null || catalog == null || catalog.isEmpty()) {
+			return DEFAULT_RECIPE;
+		}
+		final int household = store.findHousehold(householdId);
+		if (household == FridgeStore.NOT_FOUND || store.getLotStart(household) == store.getLotEnd(household)) {
+			return DEFAULT_RECIPE;
+		}
+		final long start = System.nanoTime();
+		final StoredFridge fridge = new StoredFridge(store, household, catalog, DateUtil.getCurrentEpochDay());
+		final int[] candidates = catalog.findCandidateRecipes(fridge.getItemIds(), fridge.getItemIds().length);
+		metrics.recordFridge(fridge.getLotCount(), catalog.size());
+		metrics.recordSince(RecipeMetrics.Phase.MATCHING, start);
+
+		final long rankingStart = System.nanoTime();
+		int bestRecipe = -1;
+		int[] bestSignature = null;
+		int feasibleCount = 0;
+		for (int recipe : candidates) {
+			final int[] signature = fridge.matchRecipe(recipe);
+			if (signature == null) continue;
+			feasibleCount++;
+			// Ties go to the recipe that comes first in the catalog, as the candidates are in catalog order
+			if (bestSignature == null || RecipeMatch.compareSignatures(signature, bestSignature) < 0) {
+				bestRecipe = recipe;
+				bestSignature = signature;
 			}
 		}
-		return ingredient;
+		metrics.recordRecipes(candidates.length, feasibleCount);
+		metrics.recordSince(RecipeMetrics.Phase.RANKING, rankingStart);
+		return bestRecipe == -1 ? DEFAULT_RECIPE : catalog.getRecipeName(bestRecipe);
 	}
 
-	private String getBestRecipe(Map<String, Collection<Ingredient>> recipes) {
-		if (recipes.isEmpty()) {
+	/**
+	 * Suggests a recipe from an index of the fridge items, eg. one that was filled while the fridge was being read.
+	 * @param fridgeIndex FridgeIndex of the items in the fridge
+	 * @param recipes Collection of Recipes
+	 * @return String name of the recipe to use
+	 */
+	public String generateRecipeFromIndex(FridgeIndex fridgeIndex, Collection<Recipe> recipes) {
+		return generateRecipeFromIndex(fridgeIndex, recipes, System.nanoTime());
+	}
+
+	private String generateRecipeFromIndex(FridgeIndex fridgeIndex, Collection<Recipe> recipes, long start) {
+		if (fridgeIndex == null || fridgeIndex.isEmpty() || recipes == null || recipes.isEmpty()) {
 			return DEFAULT_RECIPE;
 		}
-		final Recipe bestRecipe = new Recipe();
-		for (String recipeName : recipes.keySet()) {
-			final Collection<Ingredient> newRecipeIngredients = recipes.get(recipeName);
-			// The first recipe will be used as the best recipe
-			if (bestRecipe.getName() == null) {
-				updateBestRecipe(bestRecipe, recipeName, newRecipeIngredients);
-				continue;
+		final List<Recipe> recipeList = recipes instanceof List ? (List<Recipe>) recipes : new ArrayList<Recipe>(recipes);
+		return getName(rankRecipes(new ListRecipeChecker(fridgeIndex, recipeList), fridgeIndex, recipeList.size(), start));
+	}
+
+	/**
+	 * Given a collection of items in the fridge and a collection of recipes, suggest the best recipes that can be made
+	 * from the fridge, ranked the same way as generateRecipe. Only the best recipes seen so far are kept while the
+	 * catalog is checked, so the cost grows with log(count) rather than with the number of feasible recipes.
+	 * @param fridgeItems Collection of Ingredients
+	 * @param recipes Collection of Recipes
+	 * @param count maximum number of recipes to suggest
+	 * @return the best recipes, best first, with the fridge lots chosen for each of their ingredients. Empty if no
+	 * recipe can be made.
+	 */
+	public List<RecipeMatch> generateRecipes(Collection<Ingredient> fridgeItems, Collection<Recipe> recipes, int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("count must be at least 1: " + count);
+		}
+		if (fridgeItems == null || fridgeItems.isEmpty() || recipes == null || recipes.isEmpty()) {
+			return new ArrayList<RecipeMatch>();
+		}
+		final long start = System.nanoTime();
+		final FridgeIndex fridgeIndex = new FridgeIndex(fridgeItems, DateUtil.getCurrentEpochDay());
+		final List<Recipe> recipeList = recipes instanceof List ? (List<Recipe>) recipes : new ArrayList<Recipe>(recipes);
+		return rankRecipes(new ListRecipeChecker(fridgeIndex, recipeList), fridgeIndex, recipeList.size(), start, count);
+	}
+
+	/**
+	 * Suggests the best recipes from a catalog that has already been loaded and prepared, best first.
+	 * @see #generateRecipes(Collection, Collection, int)
+	 */
+	public List<RecipeMatch> generateRecipesFromCatalog(Collection<Ingredient> fridgeItems, RecipeCatalog catalog, int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("count must be at least 1: " + count);
+		}
+		if (fridgeItems == null || fridgeItems.isEmpty() || catalog == null || catalog.isEmpty()) {
+			return new ArrayList<RecipeMatch>();
+		}
+		final long start = System.nanoTime();
+		final FridgeIndex fridgeIndex = new FridgeIndex(fridgeItems, DateUtil.getCurrentEpochDay());
+		return rankRecipes(new CatalogRecipeChecker(fridgeIndex, catalog), fridgeIndex, catalog.size(), start, count);
+	}
+
+	private String getName(RecipeMatch bestRecipe) {
+		return bestRecipe == null ? DEFAULT_RECIPE : bestRecipe.getName();
+	}
+
+	/**
+	 * Records the matching phase, from the start until the checker is ready, then finds the best recipe as the ranking
+	 * phase.
+	 */
+	private RecipeMatch rankRecipes(RecipeChecker checker, FridgeIndex fridgeIndex, int catalogSize, long start) {
+		metrics.recordFridge(fridgeIndex.getLotCount(), catalogSize);
+		metrics.recordSince(RecipeMetrics.Phase.MATCHING, start);
+		final long rankingStart = System.nanoTime();
+		final RecipeMatch bestRecipe = findBestRecipe(checker);
+		metrics.recordSince(RecipeMetrics.Phase.RANKING, rankingStart);
+		return bestRecipe;
+	}
+
+	private List<RecipeMatch> rankRecipes(RecipeChecker checker, FridgeIndex fridgeIndex, int catalogSize, long start, int count) {
+		metrics.recordFridge(fridgeIndex.getLotCount(), catalogSize);
+		metrics.recordSince(RecipeMetrics.Phase.MATCHING, start);
+		final long rankingStart = System.nanoTime();
+		final List<RecipeMatch> bestRecipes = findBestRecipes(checker, count);
+		metrics.recordSince(RecipeMetrics.Phase.RANKING, rankingStart);
+		return bestRecipes;
+	}
+
+	/**
+	 * Finds the best recipe, visiting the candidates in order of a lower bound on the first date of their expiry
+	 * signature: the earliest useBy date of the fridge's lots of the items they require. A recipe's signature cannot
+	 * start before its bound, so once the bound passes the first date of the best signature found, no recipe left can
+	 * beat it and the search stops. Ties still go to the recipe that comes first in the catalog. Working out the
+	 * bounds is the matching phase and visiting the recipes the ranking phase.
+	 * <p>
+	 * With a pool, the ordered candidates are visited a block at a time, each block split between the pool's threads
+	 * as a full scan would be, and no more blocks are visited once the next one starts after the best signature found.
+	 * The best recipe is nearly always in the first few candidates, so this visits far fewer recipes than a full scan.
+	 */
+	private RecipeMatch rankRecipesByBound(CatalogRecipeChecker checker, FridgeIndex fridgeIndex, RecipeCatalog catalog, long start) {
+		metrics.recordFridge(fridgeIndex.getLotCount(), catalog.size());
+		// The earliest useBy date of each fridge item that the catalog uses, ordered by catalog item ID
+		final long[] itemDays = new long[fridgeIndex.getItems().size()];
+		int itemCount = 0;
+		for (String item : fridgeIndex.getItems()) {
+			final int itemId = catalog.getItemId(item);
+			if (itemId >= 0) {
+				itemDays[itemCount++] = ((long) itemId << 32) | (fridgeIndex.getEarliestUseByEpochDay(item) & 0xffffffffL);
 			}
-			// Update the best recipe if the new recipe has better ingredients
-			if (hasBetterIngredients(newRecipeIngredients, bestRecipe.getIngredients())) {
-				updateBestRecipe(bestRecipe, recipeName, newRecipeIngredients);
+		}
+		Arrays.sort(itemDays, 0, itemCount);
+		final int[] itemIds = new int[itemCount];
+		for (int i = 0; i < itemCount; i++) {
+			itemIds[i] = (int) (itemDays[i] >>> 32);
+		}
+
+		// Order the candidates by bound, then by catalog position
+		final long[] order = new long[checker.size()];
+		int candidateCount = 0;
+		for (int position = 0; position < checker.size(); position++) {
+			if (!checker.hasRequiredItems(position)) continue;
+			final int recipe = checker.getRecipe(position);
+			int bound = Integer.MAX_VALUE;
+			for (int i = catalog.getIngredientStart(recipe); i < catalog.getIngredientEnd(recipe); i++) {
+				final int item = Arrays.binarySearch(itemIds, catalog.getIngredientItem(i));
+				bound = Math.min(bound, item < 0 ? Integer.MAX_VALUE : (int) itemDays[item]);
 			}
+			order[candidateCount++] = ((long) bound << 32) | recipe;
 		}
-		return bestRecipe.getName();
+		Arrays.sort(order, 0, candidateCount);
+		// The recipes rejected by their bit sets were checked; the candidates are counted as they are visited
+		metrics.recordRecipes(checker.size() - candidateCount, 0);
+		metrics.recordSince(RecipeMetrics.Phase.MATCHING, start);
+
+		final long rankingStart = System.nanoTime();
+		RankedMatch bestRecipe = null;
+		if (pool != null && candidateCount > PARALLEL_THRESHOLD) {
+			final int blockSize = PARALLEL_THRESHOLD * parallelism;
+			for (int from = 0; from < candidateCount && !isBeyondBound(bestRecipe, order[from]); from += blockSize) {
+				bestRecipe = pool.invoke(new BoundedRecipeTask(order, from, Math.min(from + blockSize, candidateCount), catalog, fridgeIndex, bestRecipe));
+			}
+		} else {
+			bestRecipe = findBestRecipeByBound(order, 0, candidateCount, catalog, fridgeIndex, null);
+		}
+		metrics.recordSince(RecipeMetrics.Phase.RANKING, rankingStart);
+		return bestRecipe == null ? null : bestRecipe.match;
 	}
 
 	/**
-	 * Returns whether the new recipe ingredients will expire sooner than the best recipe ingredients
-	 * or if all dates are the same returns whether the new recipe has more ingredients.
+	 * Visits a range of the candidates ordered by bound, as packed by rankRecipesByBound, until the bound passes the
+	 * first date of the best signature found.
+	 * @param bestRecipe the best recipe found before the range, or null if none has been
+	 * @return the best of bestRecipe and the recipes in the range
 	 */
-	private boolean hasBetterIngredients(Collection<Ingredient> newRecipeIngredients, Collection<Ingredient> bestRecipeIngredients) {
-		// Copy the list of ingredients
-		final Collection<Ingredient> newIngredients = new HashSet<Ingredient>(newRecipeIngredients);
-		final Collection<Ingredient> bestIngredients = new HashSet<Ingredient>(bestRecipeIngredients);
-		// Compare the earliest expiring ingredient of each recipe, removing each ingredient from the collection after
-		// each comparison until eventually a difference is found or one recipe has more ingredients that the other.
-		while (true) {
-			final Ingredient newIngredient = findEarliestExpiringItem(newIngredients);
-			final Ingredient bestIngredient = findEarliestExpiringItem(bestIngredients);
+	private static RankedMatch findBestRecipeByBound(long[] order, int from, int to, RecipeCatalog catalog, FridgeIndex fridgeIndex, RankedMatch bestRecipe) {
+		int consideredCount = 0;
+		int feasibleCount = 0;
+		for (int i = from; i < to && !isBeyondBound(bestRecipe, order[i]); i++) {
+			consideredCount++;
+			final int recipe = (int) order[i];
+			final RecipeMatch match = catalog.matchRecipe(recipe, fridgeIndex);
+			if (match == null) continue;
+			feasibleCount++;
+			final RankedMatch rankedMatch = new RankedMatch(match, recipe);
+			if (bestRecipe == null || rankedMatch.compareTo(bestRecipe) < 0) {
+				bestRecipe = rankedMatch;
+			}
+		}
+		RecipeMetrics.getInstance().recordRecipes(consideredCount, feasibleCount);
+		return bestRecipe;
+	}
 
-			// Favour the recipe with the most ingredients
-			if (newIngredient == null) {
-				return false;
+	/**
+	 * @return whether the candidate, and so every one after it in bound order, starts expiring after the best recipe
+	 */
+	private static boolean isBeyondBound(RankedMatch bestRecipe, long candidate) {
+		final int[] signature = bestRecipe == null ? null : bestRecipe.match.getExpirySignature();
+		return signature != null && signature.length > 0 && (int) (candidate >> 32) > signature[0];
+	}
+
+	private RecipeMatch findBestRecipe(RecipeChecker checker) {
+		if (pool != null && checker.size() > PARALLEL_THRESHOLD) {
+			return pool.invoke(new BestRecipeTask(checker, 0, checker.size()));
+		}
+		return findBestRecipe(checker, 0, checker.size());
+	}
+
+	/**
+	 * Returns the recipe in the given range of the catalog whose ingredients will expire soonest or, if all dates are
+	 * the same, the recipe with the most ingredients. Ties go to the recipe that comes first in the catalog.
+	 */
+	private static RecipeMatch findBestRecipe(RecipeChecker checker, int from, int to) {
+		RecipeMatch bestRecipe = null;
+		int feasibleCount = 0;
+		for (int recipe = from; recipe < to; recipe++) {
+			final RecipeMatch match = checker.check(recipe);
+			if (match != null) feasibleCount++;
+			// The first recipe found will be used as the best recipe
+			if (match != null && (bestRecipe == null || match.isBetterThan(bestRecipe))) {
+				bestRecipe = match;
 			}
-			if (bestIngredient == null) {
-				return true;
+		}
+		RecipeMetrics.getInstance().recordRecipes(to - from, feasibleCount);
+		return bestRecipe;
+	}
+
+	private static List<RecipeMatch> findBestRecipes(RecipeChecker checker, int count) {
+		// Heap of the best recipes seen so far with the worst of them at the head, ready to be replaced
+		final PriorityQueue<RankedMatch> bestRecipes = new PriorityQueue<RankedMatch>(count + 1, Collections.reverseOrder());
+		int feasibleCount = 0;
+		for (int recipe = 0; recipe < checker.size(); recipe++) {
+			final RecipeMatch match = checker.check(recipe);
+			if (match != null) {
+				feasibleCount++;
+				final RankedMatch rankedMatch = new RankedMatch(match, recipe);
+				if (bestRecipes.size() < count) {
+					bestRecipes.add(rankedMatch);
+				} else if (rankedMatch.compareTo(bestRecipes.peek()) < 0) {
+					bestRecipes.poll();
+					bestRecipes.add(rankedMatch);
+				}
 			}
+		}
+		RecipeMetrics.getInstance().recordRecipes(checker.size(), feasibleCount);
+		final RecipeMatch[] ranked = new RecipeMatch[bestRecipes.size()];
+		for (int i = ranked.length - 1; i >= 0; i--) {
+			ranked[i] = bestRecipes.poll().match;
+		}
+		return Arrays.asList(ranked);
+	}
+
+	/**
+	 * Checks whether the fridge contains the ingredients (in date) of each recipe to be considered, given by position
+	 * in catalog order. Checkers only read the fridge and catalog, so one checker can be shared by parallel tasks.
+	 */
+	interface RecipeChecker {
+
+		/**
+		 * @return the number of recipes to be considered
+		 */
+		int size();
+
+		/**
+		 * @return the match with the chosen fridge lots, or null if an ingredient was not found
+		 */
+		RecipeMatch check(int recipe);
+	}
 
-			int compare = newIngredient.getUseBy().compareTo(bestIngredient.getUseBy());
-			if (compare < 0) {
-				// Found earlier expiring item. Update best recipe.
-				return true;
+	private static class ListRecipeChecker implements RecipeChecker {
+
+		private final FridgeIndex fridgeIndex;
+		private final List<Recipe> recipes;
+
+		ListRecipeChecker(FridgeIndex fridgeIndex, List<Recipe> recipes) {
+			this.fridgeIndex = fridgeIndex;
+			this.recipes = recipes;
+		}
+
+		@Override
+		public int size() {
+			return recipes.size();
+		}
+
+		@Override
+		public RecipeMatch check(int recipeNumber) {
+			final Recipe recipe = recipes.get(recipeNumber);
+			final List<List<Ingredient>> allocation = new ArrayList<List<Ingredient>>(recipe.getIngredients().size());
+			int ingredient = 0;
+			for (Ingredient recipeIngredient : recipe.getIngredients()) {
+				// Look for enough of the ingredient in the fridge, using the lots that expire first and leaving what
+				// the ingredients before it take from the same item
+				final long taken = getAmountTakenBefore(recipe, ingredient++, recipeIngredient);
+				final List<Ingredient> lots = fridgeIndex.allocate(recipeIngredient.getItem(), recipeIngredient.getAmount(), recipeIngredient.getUnit(), taken);
+				if (lots == null) {
+					// There is not enough of this ingredient. Immediately stop checking the ingredients in this recipe.
+					return null;
+				}
+				// Copied, as the lots are a view of the index
+				allocation.add(new ArrayList<Ingredient>(lots));
 			}
-			if (compare > 0) {
-				// Best recipe is still the best.
-				return false;
+			return RecipeMatch.fromAllocation(recipe.getName(), allocation);
+		}
+
+		/**
+		 * @return the amount that the recipe's ingredients before the given one take from its item, in units with the
+		 * same base unit, in the base unit
+		 */
+		private static long getAmountTakenBefore(Recipe recipe, int ingredient, Ingredient recipeIngredient) {
+			final Unit baseUnit = FridgeIndex.getBaseUnit(recipeIngredient.getUnit());
+			long taken = 0;
+			final Iterator<Ingredient> earlierIngredients = recipe.getIngredients().iterator();
+			for (int i = 0; i < ingredient; i++) {
+				final Ingredient earlier = earlierIngredients.next();
+				if (Objects.equals(earlier.getItem(), recipeIngredient.getItem()) && FridgeIndex.getBaseUnit(earlier.getUnit()) == baseUnit) {
+					taken += FridgeIndex.toBaseAmount(Math.max(earlier.getAmount(), 0), earlier.getUnit());
+				}
 			}
-			// Remove both items from the lists and compare next earliest expiring items
-			newIngredients.remove(newIngredient);
-			bestIngredients.remove(bestIngredient);
+			return taken;
 		}
 	}
 
-	private Ingredient findEarliestExpiringItem(Collection<Ingredient> ingredients) {
-		if (ingredients == null) return null;
-		Ingredient earliestExpiringItem = null;
-		for (Ingredient ingredient : ingredients) {
-			if (earliestExpiringItem == null || ingredient.getUseBy().before(earliestExpiringItem.getUseBy())) {
-				earliestExpiringItem = ingredient;
+	/**
+	 * Checks the recipes of a compiled catalog. When walking the inverted index entries of the fridge's items costs
+	 * less than visiting every recipe, only the candidate recipes found that way are considered. Otherwise every
+	 * recipe is considered and those needing an item the fridge lacks are rejected by their bit sets.
+	 */
+	static class CatalogRecipeChecker implements RecipeChecker {
+
+		private final FridgeIndex fridgeIndex;
+		private final RecipeCatalog catalog;
+		private final long[] availableItems;
+		private final int[] candidates;
+
+		CatalogRecipeChecker(FridgeIndex fridgeIndex, RecipeCatalog catalog) {
+			this.fridgeIndex = fridgeIndex;
+			this.catalog = catalog;
+			if (catalog.countPostings(fridgeIndex) < catalog.size()) {
+				this.candidates = catalog.findCandidateRecipes(fridgeIndex);
+				this.availableItems = null;
+			} else {
+				this.candidates = null;
+				this.availableItems = catalog.getAvailableItems(fridgeIndex);
 			}
 		}
-		return earliestExpiringItem;
+
+		@Override
+		public int size() {
+			return candidates != null ? candidates.length : catalog.size();
+		}
+
+		/**
+		 * @return the catalog position of the recipe considered at the position
+		 */
+		int getRecipe(int position) {
+			return candidates != null ? candidates[position] : position;
+		}
+
+		/**
+		 * @return whether the fridge has every item the recipe at the position requires. Amounts are not checked.
+		 */
+		boolean hasRequiredItems(int position) {
+			// Most recipes need an item that is not in the fridge, which the bit sets show without looking at any lots
+			return candidates != null || catalog.hasRequiredItems(position, availableItems);
+		}
+
+		@Override
+		public RecipeMatch check(int position) {
+			return hasRequiredItems(position) ? catalog.matchRecipe(getRecipe(position), fridgeIndex) : null;
+		}
+	}
+
+	/**
+	 * Checks the candidate recipes of a mapped catalog, looking up the fridge's items in the catalog only once.
+	 */
+	private static class MappedCatalogRecipeChecker implements RecipeChecker {
+
+		private final FridgeIndex fridgeIndex;
+		private final MappedRecipeCatalog catalog;
+		private final int[] fridgeItemIds;
+		private final String[] fridgeItemNames;
+		private final int[] candidates;
+
+		MappedCatalogRecipeChecker(FridgeIndex fridgeIndex, MappedRecipeCatalog catalog) {
+			this.fridgeIndex = fridgeIndex;
+			this.catalog = catalog;
+			this.fridgeItemIds = catalog.getFridgeItemIds(fridgeIndex);
+			this.fridgeItemNames = new String[fridgeItemIds.length];
+			for (int i = 0; i < fridgeItemIds.length; i++) {
+				fridgeItemNames[i] = catalog.getItemName(fridgeItemIds[i]);
+			}
+			this.candidates = catalog.findCandidateRecipes(fridgeItemIds);
+		}
+
+		@Override
+		public int size() {
+			return candidates.length;
+		}
+
+		@Override
+		public RecipeMatch check(int position) {
+			return catalog.matchRecipe(candidates[position], fridgeIndex, fridgeItemIds, fridgeItemNames);
+		}
 	}
 
-	private void updateBestRecipe(Recipe bestRecipe, String recipeName, Collection<Ingredient> newIngredients) {
-		bestRecipe.setName(recipeName);
-		bestRecipe.setIngredients(newIngredients);
+	/**
+	 * A match along with its position in the catalog, ordered best first. Equal matches are ordered by catalog
+	 * position so the ranking is the same as repeatedly taking the result of generateRecipe.
+	 */
+	private static class RankedMatch implements Comparable<RankedMatch> {
+
+		private final RecipeMatch match;
+		private final int position;
+
+		RankedMatch(RecipeMatch match, int position) {
+			this.match = match;
+			this.position = position;
+		}
+
+		@Override
+		public int compareTo(RankedMatch other) {
+			final int compare = RecipeMatch.compareSignatures(match.getExpirySignature(), other.match.getExpirySignature());
+			if (compare != 0) {
+				return compare;
+			}
+			return position < other.position ? -1 : (position == other.position ? 0 : 1);
+		}
+	}
+
+	/**
+	 * Finds the best recipe in a range of the candidates ordered by bound by splitting the range in half until it is
+	 * small enough to visit directly. Each half stops at its own best recipe's bound, and the halves are merged by
+	 * signature and then catalog position, so the result is the same as visiting the whole range in order.
+	 */
+	private static class BoundedRecipeTask extends RecursiveTask<RankedMatch> {
+
+		private final long[] order;
+		private final int from;
+		private final int to;
+		private final RecipeCatalog catalog;
+		private final FridgeIndex fridgeIndex;
+		private final RankedMatch bestRecipe;
+
+		BoundedRecipeTask(long[] order, int from, int to, RecipeCatalog catalog, FridgeIndex fridgeIndex, RankedMatch bestRecipe) {
+			this.order = order;
+			this.from = from;
+			this.to = to;
+			this.catalog = catalog;
+			this.fridgeIndex = fridgeIndex;
+			this.bestRecipe = bestRecipe;
+		}
+
+		@Override
+		protected RankedMatch compute() {
+			if (to - from <= PARALLEL_THRESHOLD) {
+				return findBestRecipeByBound(order, from, to, catalog, fridgeIndex, bestRecipe);
+			}
+			final int middle = (from + to) >>> 1;
+			final BoundedRecipeTask right = new BoundedRecipeTask(order, middle, to, catalog, fridgeIndex, bestRecipe);
+			right.fork();
+			final RankedMatch leftBest = new BoundedRecipeTask(order, from, middle, catalog, fridgeIndex, bestRecipe).compute();
+			final RankedMatch rightBest = right.join();
+			if (leftBest == null) {
+				return rightBest;
+			}
+			return rightBest != null && rightBest.compareTo(leftBest) < 0 ? rightBest : leftBest;
+		}
+	}
+
+	/**
+	 * Finds the best recipe in a range of the catalog by splitting the range in half until it is small enough to
+	 * check directly. Each half keeps its own best recipe and the two are merged with the same rule as the sequential
+	 * check, with ties going to the left half, so the result does not depend on how the work was scheduled.
+	 */
+	private static class BestRecipeTask extends RecursiveTask<RecipeMatch> {
+
+		private final RecipeChecker checker;
+		private final int from;
+		private final int to;
+
+		BestRecipeTask(RecipeChecker checker, int from, int to) {
+			this.checker = checker;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected RecipeMatch compute() {
+			if (to - from <= PARALLEL_THRESHOLD) {
+				return findBestRecipe(checker, from, to);
+			}
+			final int middle = (from + to) >>> 1;
+			final BestRecipeTask right = new BestRecipeTask(checker, middle, to);
+			right.fork();
+			final RecipeMatch leftBest = new BestRecipeTask(checker, from, middle).compute();
+			final RecipeMatch rightBest = right.join();
+			if (leftBest == null) {
+				return rightBest;
+			}
+			return rightBest != null && rightBest.isBetterThan(leftBest) ? rightBest : leftBest;
+		}
 	}
 
 }
@@ -1,12 +1,26 @@
 package net.clareburt;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import net.clareburt.model.Ingredient;
 import net.clareburt.model.Recipe;
+import net.clareburt.model.Unit;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.function.Consumer;
 
 /**
  * @author Justin Clareburt
@@ -14,10 +28,105 @@ import java.util.Collection;
  */
 public class RecipeParser {
 
+	private static final Charset JSON_CHARSET = Charset.forName("UTF-8");
+	private static final Type RECIPES_TYPE = new TypeToken<Collection<Recipe>>() {}.getType();
+	// Gson is thread safe, so one instance with the adapters registered is shared by every parser
+	private static final Gson GSON = createGson();
+
 	public Collection<Recipe> getRecipesFromJson(String recipeJson) throws JsonSyntaxException {
-		final Collection<Recipe> recipes = new Gson().fromJson(recipeJson, new TypeToken<Collection<Recipe>>() {}.getType());
+		final Collection<Recipe> recipes = GSON.fromJson(recipeJson, RECIPES_TYPE);
 		if (recipes == null) return new ArrayList<Recipe>();
 		return recipes;
 	}
 
+	/**
+	 * Reads a Json array of recipes from the stream one recipe at a time, handing each recipe to the consumer as soon
+	 * as it has been read so the whole catalog never has to be held in memory.
+	 * @param recipeJson InputStream of UTF-8 encoded Json
+	 * @param consumer Consumer that is given each recipe in catalog order
+	 */
+	public void readRecipes(InputStream recipeJson, Consumer<? super Recipe> consumer) throws IOException, JsonSyntaxException {
+		readRecipes(new InputStreamReader(recipeJson, JSON_CHARSET), consumer);
+	}
+
+	/**
+	 * Reads a Json array of recipes from the reader one recipe at a time, handing each recipe to the consumer as soon
+	 * as it has been read so the whole catalog never has to be held in memory.
+	 * @param recipeJson Reader of the Json
+	 * @param consumer Consumer that is given each recipe in catalog order. Anything it throws reaches the caller
+	 * unchanged.
+	 */
+	public void readRecipes(Reader recipeJson, Consumer<? super Recipe> consumer) throws IOException, JsonSyntaxException {
+		final JsonReader jsonReader = new JsonReader(recipeJson);
+		jsonReader.setLenient(true);
+		if (!beginRecipes(jsonReader)) return;
+		Recipe recipe;
+		while ((recipe = nextRecipe(jsonReader)) != null) {
+			consumer.accept(recipe);
+		}
+	}
+
+	/**
+	 * Starts reading the array of recipes.
+	 * @return false if the document holds no recipes, being empty or a null
+	 */
+	private boolean beginRecipes(JsonReader jsonReader) throws IOException {
+		try {
+			if (isEmpty(jsonReader)) return false;
+			jsonReader.beginArray();
+			return true;
+		} catch (MalformedJsonException e) {
+			throw new JsonSyntaxException(e);
+		} catch (IllegalStateException e) {
+			throw new JsonSyntaxException(e);
+		}
+	}
+
+	/**
+	 * Reads the next recipe in the array, skipping any nulls.
+	 * @return the recipe, or null once the end of the array has been read
+	 */
+	private Recipe nextRecipe(JsonReader jsonReader) throws IOException {
+		try {
+			while (jsonReader.hasNext()) {
+				final Recipe recipe = GSON.fromJson(jsonReader, Recipe.class);
+				if (recipe != null) {
+					return recipe;
+				}
+			}
+			jsonReader.endArray();
+			return null;
+		} catch (MalformedJsonException e) {
+			throw new JsonSyntaxException(e);
+		} catch (IllegalStateException e) {
+			throw new JsonSyntaxException(e);
+		}
+	}
+
+	/**
+	 * Creates a Gson that reads and writes Recipes, Ingredients and Units with hand written adapters rather than by
+	 * reflection.
+	 */
+	private static Gson createGson() {
+		final UnitTypeAdapter unitAdapter = new UnitTypeAdapter();
+		final IngredientTypeAdapter ingredientAdapter = new IngredientTypeAdapter(unitAdapter);
+		return new GsonBuilder()
+				.registerTypeAdapter(Unit.class, unitAdapter)
+				.registerTypeAdapter(Ingredient.class, ingredientAdapter)
+				.registerTypeAdapter(Recipe.class, new RecipeTypeAdapter(ingredientAdapter))
+				.create();
+	}
+
+	private boolean isEmpty(JsonReader jsonReader) throws IOException {
+		try {
+			if (jsonReader.peek() == JsonToken.NULL) {
+				jsonReader.nextNull();
+				return true;
+			}
+			return false;
+		} catch (EOFException e) {
+			return true;
+		}
+	}
+
 }
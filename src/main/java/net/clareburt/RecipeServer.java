@@ -0,0 +1,154 @@
+package net.clareburt;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import net.clareburt.exception.ParsingException;
+import net.clareburt.model.Ingredient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Long running server that suggests recipes over HTTP from a catalog that is loaded once and kept in memory, or kept
+ * up to date by a CatalogWatcher. A client
+ * POSTs the contents of a fridge CSV file to /recipe and gets back the name of the recipe to use as plain text.
+ * Invalid fridge items get a 400 response with the parsing error.
+ * <p>
+ * Each request is handled on its own virtual thread when the JVM has them, so requests waiting on slow clients do not
+ * hold up the others. On older JVMs requests are handled on a fixed pool of THREADS_PROPERTY platform threads, so that
+ * a burst of requests queues up rather than starting a thread for each.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class RecipeServer {
+
+	private static final Logger logger = LoggerFactory.getLogger(RecipeServer.class);
+
+	/** Path that fridge contents are posted to. */
+	public static final String RECIPE_PATH = "/recipe";
+	/**
+	 * System property holding the number of threads requests are handled on when virtual threads are not available.
+	 * Defaults to four times the number of processors.
+	 */
+	public static final String THREADS_PROPERTY = "recipe.server.threads";
+
+	private static final int BACKLOG = 1024;
+	private static final String TEXT_PLAIN = "text/plain; charset=utf-8";
+
+	private final RecipeFinder recipeFinder;
+	private final Supplier<RecipeCatalog> catalog;
+	private final HttpServer httpServer;
+	private final ExecutorService executor;
+
+	/**
+	 * Creates a server for the catalog, ready to be started.
+	 * @param catalog RecipeCatalog loaded with RecipeFinder.loadCatalog
+	 * @param port port to listen on, or 0 to use any free port
+	 */
+	public RecipeServer(RecipeFinder recipeFinder, final RecipeCatalog catalog, int port) throws IOException {
+		this(recipeFinder, new Supplier<RecipeCatalog>() {
+			@Override
+			public RecipeCatalog get() {
+				return catalog;
+			}
+		}, port);
+	}
+
+	/**
+	 * Creates a server for a catalog that may change, ready to be started. Each request uses the catalog that was
+	 * current when it arrived.
+	 * @param catalog Supplier of the current RecipeCatalog, eg. a CatalogWatcher
+	 * @param port port to listen on, or 0 to use any free port
+	 */
+	public RecipeServer(RecipeFinder recipeFinder, Supplier<RecipeCatalog> catalog, int port) throws IOException {
+		this.recipeFinder = recipeFinder;
+		this.catalog = catalog;
+		this.httpServer = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+		this.executor = newRequestExecutor();
+		httpServer.setExecutor(executor);
+		httpServer.createContext(RECIPE_PATH, new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				handleRecipeRequest(exchange);
+			}
+		});
+	}
+
+	public void start() {
+		httpServer.start();
+		logger.info("Serving {} recipes on port {}", catalog.get().size(), getPort());
+	}
+
+	/**
+	 * Stops accepting requests and waits up to the delay for the requests being handled to finish.
+	 */
+	public void stop(int delaySeconds) {
+		httpServer.stop(delaySeconds);
+		executor.shutdown();
+	}
+
+	/**
+	 * @return the port the server is listening on
+	 */
+	public int getPort() {
+		return httpServer.getAddress().getPort();
+	}
+
+	private void handleRecipeRequest(HttpExchange exchange) throws IOException {
+		try {
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				exchange.getResponseHeaders().set("Allow", "POST");
+				sendResponse(exchange, 405, "Fridge items must be POSTed to " + RECIPE_PATH);
+				return;
+			}
+			final Collection<Ingredient> fridgeItems;
+			try {
+				fridgeItems = recipeFinder.readIngredients(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8), "request body");
+			} catch (ParsingException e) {
+				sendResponse(exchange, 400, e.getMessage());
+				return;
+			}
+			sendResponse(exchange, 200, recipeFinder.generateRecipe(catalog.get(), fridgeItems));
+		} catch (RuntimeException e) {
+			logger.error("Error handling recipe request", e);
+			sendResponse(exchange, 500, "Internal error");
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static void sendResponse(HttpExchange exchange, int status, String body) throws IOException {
+		final byte[] bytes = (body + "\n").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", TEXT_PLAIN);
+		exchange.sendResponseHeaders(status, bytes.length);
+		final OutputStream responseBody = exchange.getResponseBody();
+		responseBody.write(bytes);
+		responseBody.close();
+	}
+
+	/**
+	 * Returns an executor that runs each task on a new virtual thread. Virtual threads are looked up reflectively so
+	 * that the server still builds and runs, on a fixed pool of platform threads, on JVMs without them.
+	 */
+	static ExecutorService newRequestExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			final int threads = Integer.getInteger(THREADS_PROPERTY, 4 * Runtime.getRuntime().availableProcessors());
+			logger.info("Virtual threads are not available, handling requests on {} threads", threads);
+			return Executors.newFixedThreadPool(threads);
+		}
+	}
+
+}
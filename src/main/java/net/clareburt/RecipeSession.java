@@ -0,0 +1,194 @@
+package net.clareburt;
+
+import net.clareburt.model.Ingredient;
+import net.clareburt.model.RecipeMatch;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.TreeSet;
+
+/**
+ * Keeps the recipe suggestion for one fridge up to date as lots are added, consumed and removed. The feasible recipes
+ * are held in rank order and each change only checks the recipes that use the changed item again, so the cost of a
+ * change depends on how many recipes use the item rather than on the size of the catalog.
+ * <p>
+ * The suggestion is the same as RecipeGenerator.generateRecipeFromCatalog would give for the current fridge. A
+ * session created with an ExpiryScheduler also drops lots as they pass their useBy date, when the scheduler is
+ * advanced, and should be closed once it is no longer used so that the scheduler lets go of its lots. A session is not
+ * thread safe, so the scheduler must be advanced on the thread that uses the session.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class RecipeSession implements Closeable {
+
+	private final RecipeCatalog catalog;
+	private final FridgeIndex fridgeIndex;
+
+	// Match for each recipe in the catalog, or null if the fridge cannot make it
+	private final RecipeMatch[] matches;
+	// Positions of the feasible recipes, best first
+	private final TreeSet<Integer> ranking;
+	// Told about each lot in date, or null if lots are only checked against the day the session was created on
+	private final ExpiryScheduler expiryScheduler;
+	private boolean closed;
+	private final ExpiryScheduler.ExpiryListener expiryListener = new ExpiryScheduler.ExpiryListener() {
+		@Override
+		public void expired(Ingredient lot, int currentDay) {
+			fridgeIndex.setCurrentDay(currentDay);
+			// The scheduler has already let go of the lot
+			if (fridgeIndex.remove(lot)) {
+				updateRecipesUsing(lot.getItem());
+			}
+		}
+	};
+
+	/**
+	 * Creates a session for a fridge, checking every recipe in the catalog once.
+	 * @param catalog RecipeCatalog to choose from
+	 * @param fridgeItems Collection of Ingredients in the fridge
+	 * @param currentDay epoch day against which the useBy dates are checked
+	 */
+	public RecipeSession(RecipeCatalog catalog, Collection<Ingredient> fridgeItems, int currentDay) {
+		this(catalog, fridgeItems, currentDay, null);
+	}
+
+	/**
+	 * Creates a session for a fridge whose lots are removed as the scheduler's clock passes their useBy dates. Only
+	 * the recipes using an expired item are checked again.
+	 * @param catalog RecipeCatalog to choose from
+	 * @param fridgeItems Collection of Ingredients in the fridge
+	 * @param expiryScheduler ExpiryScheduler that supplies the current day and reports expired lots
+	 */
+	public RecipeSession(RecipeCatalog catalog, Collection<Ingredient> fridgeItems, ExpiryScheduler expiryScheduler) {
+		this(catalog, fridgeItems, expiryScheduler.getCurrentDay(), expiryScheduler);
+	}
+
+	private RecipeSession(RecipeCatalog catalog, Collection<Ingredient> fridgeItems, int currentDay, ExpiryScheduler expiryScheduler) {
+		this.catalog = catalog;
+		this.expiryScheduler = expiryScheduler;
+		this.fridgeIndex = new FridgeIndex(currentDay);
+		for (Ingredient lot : fridgeItems) {
+			addLot(lot);
+		}
+		this.matches = new RecipeMatch[catalog.size()];
+		this.ranking = new TreeSet<Integer>(new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				final int compare = RecipeMatch.compareSignatures(matches[a].getExpirySignature(), matches[b].getExpirySignature());
+				if (compare != 0) {
+					return compare;
+				}
+				// Ties go to the recipe that comes first in the catalog
+				return a.compareTo(b);
+			}
+		});
+		for (int recipe : catalog.findCandidateRecipes(fridgeIndex)) {
+			update(recipe);
+		}
+	}
+
+	/**
+	 * Adds a lot to the fridge. Lots that have passed their useBy date are ignored.
+	 */
+	public void addItem(Ingredient lot) {
+		if (addLot(lot)) {
+			updateRecipesUsing(lot.getItem());
+		}
+	}
+
+	/**
+	 * Uses some of a lot in the fridge, removing the lot once it is used up. The amount of the lot is reduced.
+	 * @param lot Ingredient that is in the fridge
+	 * @param amount amount of the lot that was used
+	 */
+	public void consumeItem(Ingredient lot, int amount) {
+		if (amount >= lot.getAmount()) {
+			removeItem(lot);
+			return;
+		}
+		fridgeIndex.setAmount(lot, lot.getAmount() - amount);
+		updateRecipesUsing(lot.getItem());
+	}
+
+	/**
+	 * Removes a lot from the fridge, eg. because it was thrown away.
+	 * @param lot Ingredient that is in the fridge
+	 */
+	public void removeItem(Ingredient lot) {
+		if (fridgeIndex.remove(lot)) {
+			if (expiryScheduler != null && !closed) {
+				expiryScheduler.cancel(lot, expiryListener);
+			}
+			updateRecipesUsing(lot.getItem());
+		}
+	}
+
+	/**
+	 * Stops the session being told about its lots expiring. The suggestion is no longer kept up to date with the
+	 * scheduler's clock, but lots can still be added and removed.
+	 */
+	@Override
+	public void close() {
+		if (expiryScheduler != null && !closed) {
+			expiryScheduler.cancelAll(expiryListener);
+		}
+		closed = true;
+	}
+
+	/**
+	 * @return the name of the recipe to use
+	 */
+	public String getBestRecipe() {
+		final RecipeMatch bestMatch = getBestMatch();
+		return bestMatch == null ? RecipeGenerator.DEFAULT_RECIPE : bestMatch.getName();
+	}
+
+	/**
+	 * @return the best recipe with the fridge lots chosen for it, or null if no recipe can be made
+	 */
+	public RecipeMatch getBestMatch() {
+		return ranking.isEmpty() ? null : matches[ranking.first()];
+	}
+
+	/**
+	 * @return the number of recipes that can be made from the fridge
+	 */
+	public int getFeasibleRecipeCount() {
+		return ranking.size();
+	}
+
+	private boolean addLot(Ingredient lot) {
+		if (expiryScheduler != null) {
+			// The scheduler may have moved on without any of this session's lots expiring
+			fridgeIndex.setCurrentDay(Math.max(fridgeIndex.getCurrentDay(), expiryScheduler.getCurrentDay()));
+		}
+		if (lot.getUseByEpochDay() < fridgeIndex.getCurrentDay()) {
+			return false;
+		}
+		fridgeIndex.add(lot);
+		if (expiryScheduler != null && !closed) {
+			expiryScheduler.schedule(lot, expiryListener);
+		}
+		return true;
+	}
+
+	private void updateRecipesUsing(String item) {
+		for (int recipe : catalog.getRecipesUsing(item)) {
+			update(recipe);
+		}
+	}
+
+	private void update(int recipe) {
+		// The match must leave the ranking before it changes, as the ranking is ordered by the match
+		if (matches[recipe] != null) {
+			ranking.remove(recipe);
+		}
+		matches[recipe] = catalog.matchRecipe(recipe, fridgeIndex);
+		if (matches[recipe] != null) {
+			ranking.add(recipe);
+		}
+	}
+
+}
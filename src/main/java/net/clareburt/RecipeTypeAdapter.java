@@ -0,0 +1,86 @@
+package net.clareburt;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import net.clareburt.model.Ingredient;
+import net.clareburt.model.Recipe;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes a Recipe field by field, without reflection, reading its ingredients with an
+ * IngredientTypeAdapter. Fields that a Recipe does not have are skipped.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+class RecipeTypeAdapter extends TypeAdapter<Recipe> {
+
+	private final IngredientTypeAdapter ingredientAdapter;
+
+	RecipeTypeAdapter(IngredientTypeAdapter ingredientAdapter) {
+		this.ingredientAdapter = ingredientAdapter;
+	}
+
+	@Override
+	public Recipe read(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		final Recipe recipe = new Recipe();
+		in.beginObject();
+		while (in.hasNext()) {
+			final String name = in.nextName();
+			if ("name".equals(name)) {
+				recipe.setName(IngredientTypeAdapter.readString(in));
+			} else if ("ingredients".equals(name)) {
+				recipe.setIngredients(readIngredients(in));
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return recipe;
+	}
+
+	private List<Ingredient> readIngredients(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		final List<Ingredient> ingredients = new ArrayList<Ingredient>();
+		in.beginArray();
+		while (in.hasNext()) {
+			ingredients.add(ingredientAdapter.read(in));
+		}
+		in.endArray();
+		return ingredients;
+	}
+
+	@Override
+	public void write(JsonWriter out, Recipe recipe) throws IOException {
+		if (recipe == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginObject();
+		out.name("name").value(recipe.getName());
+		out.name("ingredients");
+		if (recipe.getIngredients() == null) {
+			out.nullValue();
+		} else {
+			out.beginArray();
+			for (Ingredient ingredient : recipe.getIngredients()) {
+				ingredientAdapter.write(out, ingredient);
+			}
+			out.endArray();
+		}
+		out.endObject();
+	}
+
+}
@@ -0,0 +1,47 @@
+package net.clareburt;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A pool of zeroed int arrays of one length, for scratch space that is too large to allocate on every call. An array
+ * is taken for the length of a call and given back zeroed, so the arrays in use are bounded by the calls running at
+ * once rather than by the threads that have ever made one, as they would be with a ThreadLocal when every request runs
+ * on a new virtual thread. At most maxIdle arrays are kept between calls; any more given back are dropped.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+class ScratchArrays {
+
+	private final int length;
+	private final ArrayBlockingQueue<int[]> idle;
+
+	ScratchArrays(int length, int maxIdle) {
+		this.length = length;
+		this.idle = new ArrayBlockingQueue<int[]>(maxIdle);
+	}
+
+	/**
+	 * Creates a pool that keeps two arrays for each processor between calls.
+	 */
+	ScratchArrays(int length) {
+		this(length, 2 * Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @return a zeroed array, from the pool if there is one idle
+	 */
+	int[] take() {
+		final int[] array = idle.poll();
+		return array != null ? array : new int[length];
+	}
+
+	/**
+	 * Gives back an array taken from the pool. The caller must have zeroed it again; an array left dirty, eg. by a
+	 * call that failed part way, must not be given back.
+	 */
+	void release(int[] array) {
+		idle.offer(array);
+	}
+
+}
@@ -0,0 +1,127 @@
+package net.clareburt;
+
+import net.clareburt.model.Unit;
+
+import java.util.Arrays;
+
+/**
+ * The lots of one household in a FridgeStore, looked up by the item IDs of a recipe catalog, so that recipes can be
+ * matched against the store in place. The lots of each item the catalog uses are found once, as a run of the
+ * household's extent, and are then read straight from the store's columns.
+ * <p>
+ * Amounts are met the same way as by FridgeIndex.allocate: from the lots in date in units with the same base unit,
+ * using up the lots that expire first, with ingredients of the same item met one after the other from the same lots.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+class StoredFridge {
+
+	private final FridgeStore store;
+	private final RecipeCatalog catalog;
+	// Catalog item IDs of the items with a lot in date, ascending, and the runs of their lots in date in the store
+	private final int[] itemIds;
+	private final int[] lotStarts;
+	private final int[] lotEnds;
+	private int lotCount;
+
+	StoredFridge(FridgeStore store, int household, RecipeCatalog catalog, int currentDay) {
+		this.store = store;
+		this.catalog = catalog;
+		final int end = store.getLotEnd(household);
+		final long[] runs = new long[end - store.getLotStart(household)];
+		final int[] starts = new int[runs.length];
+		final int[] ends = new int[runs.length];
+		int runCount = 0;
+		int lot = store.getLotStart(household);
+		while (lot < end) {
+			final int storeItemId = store.getItemId(lot);
+			int runEnd = lot + 1;
+			while (runEnd < end && store.getItemId(runEnd) == storeItemId) {
+				runEnd++;
+			}
+			// The run is in useBy order, so the expired lots come first
+			int firstInDate = lot;
+			while (firstInDate < runEnd && store.getUseByEpochDay(firstInDate) < currentDay) {
+				firstInDate++;
+			}
+			final int itemId = catalog.getItemId(store.getItemName(storeItemId));
+			if (firstInDate < runEnd && itemId >= 0) {
+				// Sort the runs by catalog item ID, carrying their position along
+				runs[runCount] = ((long) itemId << 32) | runCount;
+				starts[runCount] = firstInDate;
+				ends[runCount] = runEnd;
+				runCount++;
+				lotCount += runEnd - firstInDate;
+			}
+			lot = runEnd;
+		}
+		Arrays.sort(runs, 0, runCount);
+		itemIds = new int[runCount];
+		lotStarts = new int[runCount];
+		lotEnds = new int[runCount];
+		for (int i = 0; i < runCount; i++) {
+			final int run = (int) runs[i];
+			itemIds[i] = (int) (runs[i] >>> 32);
+			lotStarts[i] = starts[run];
+			lotEnds[i] = ends[run];
+		}
+	}
+
+	/**
+	 * @return the catalog item IDs of the items with a lot in date, in ascending order
+	 */
+	int[] getItemIds() {
+		return itemIds;
+	}
+
+	/**
+	 * @return the number of lots in date of the items the catalog uses
+	 */
+	int getLotCount() {
+		return lotCount;
+	}
+
+	/**
+	 * Checks the household's lots for each ingredient of the recipe, using up the lots that expire first until there
+	 * is enough of the ingredient.
+	 * @return the recipe's expiry signature, from the first lot each ingredient uses, or null if there was not enough
+	 * of an ingredient. An ingredient whose item an earlier one has taken from starts at the first lot with some left.
+	 */
+	int[] matchRecipe(int recipe) {
+		final int start = catalog.getIngredientStart(recipe);
+		final int[] signature = new int[catalog.getIngredientEnd(recipe) - start];
+		for (int i = 0; i < signature.length; i++) {
+			final int item = Arrays.binarySearch(itemIds, catalog.getIngredientItem(start + i));
+			if (item < 0) {
+				return null;
+			}
+			final Unit unit = catalog.getIngredientUnit(start + i);
+			final Unit baseUnit = FridgeIndex.getBaseUnit(unit);
+			final long taken = catalog.getIngredientTaken(start + i);
+			final long required = taken + FridgeIndex.toBaseAmount(catalog.getIngredientAmount(start + i), unit);
+			int firstUseBy = 0;
+			boolean found = false;
+			long total = 0;
+			for (int lot = lotStarts[item]; lot < lotEnds[item] && (!found || total < required); lot++) {
+				final Unit lotUnit = store.getUnit(lot);
+				if (FridgeIndex.getBaseUnit(lotUnit) != baseUnit) {
+					continue;
+				}
+				total += FridgeIndex.toBaseAmount(Math.max(store.getAmount(lot), 0), lotUnit);
+				// The first lot used is the first with some of the item left once the amount taken is used up
+				if (!found && (taken == 0 || total > taken)) {
+					firstUseBy = store.getUseByEpochDay(lot);
+					found = true;
+				}
+			}
+			if (!found || total < required) {
+				return null;
+			}
+			signature[i] = firstUseBy;
+		}
+		Arrays.sort(signature);
+		return signature;
+	}
+
+}
@@ -0,0 +1,43 @@
+package net.clareburt;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import net.clareburt.model.Unit;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes a Unit as its name. As with Gson's own enum adapter, a name that is not a Unit is read as null.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+class UnitTypeAdapter extends TypeAdapter<Unit> {
+
+	private static final Map<String, Unit> UNITS_BY_NAME = new HashMap<String, Unit>();
+
+	static {
+		for (Unit unit : Unit.values()) {
+			UNITS_BY_NAME.put(unit.name(), unit);
+		}
+	}
+
+	@Override
+	public Unit read(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		return UNITS_BY_NAME.get(in.nextString());
+	}
+
+	@Override
+	public void write(JsonWriter out, Unit unit) throws IOException {
+		out.value(unit == null ? null : unit.name());
+	}
+
+}
@@ -0,0 +1,103 @@
+package net.clareburt.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Histogram of latencies in nanoseconds that is cheap enough to record into on every request. Each power of two is
+ * split into eight buckets, so a percentile is reported to within 12.5% of the recorded value using a fixed array of
+ * counters, and recording is an index calculation and an atomic increment with no locking or allocation.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(new LongBinaryOperator() {
+		@Override
+		public long applyAsLong(long left, long right) {
+			return Math.max(left, right);
+		}
+	}, 0);
+
+	/**
+	 * Records a latency. Negative latencies, eg. from a clock that stepped backwards, are recorded as zero.
+	 */
+	public void record(long nanos) {
+		final long value = Math.max(nanos, 0);
+		counts.incrementAndGet(getBucket(value));
+		totalNanos.add(value);
+		maxNanos.accumulate(value);
+	}
+
+	/**
+	 * Takes a copy of the counts. Values recorded while the copy is taken may or may not be included.
+	 */
+	public LatencySnapshot getSnapshot() {
+		final long[] bucketCounts = new long[BUCKET_COUNT];
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			bucketCounts[i] = counts.get(i);
+			count += bucketCounts[i];
+		}
+		final long max = maxNanos.get();
+		return new LatencySnapshot(count, count == 0 ? 0 : totalNanos.sum() / count,
+				getPercentile(bucketCounts, count, 0.5, max),
+				getPercentile(bucketCounts, count, 0.99, max),
+				getPercentile(bucketCounts, count, 0.999, max),
+				max);
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts.set(i, 0);
+		}
+		totalNanos.reset();
+		maxNanos.reset();
+	}
+
+	static int getBucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	/**
+	 * @return the largest value that falls in the bucket
+	 */
+	static long getBucketLimit(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		final int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+		final long lowest = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+	private static long getPercentile(long[] bucketCounts, long count, double percentile, long max) {
+		if (count == 0) {
+			return 0;
+		}
+		final long rank = (long) Math.ceil(percentile * count);
+		long seen = 0;
+		for (int i = 0; i < bucketCounts.length; i++) {
+			seen += bucketCounts[i];
+			if (seen >= rank) {
+				// The bucket limit can be above anything recorded in it
+				return Math.min(getBucketLimit(i), max);
+			}
+		}
+		return max;
+	}
+
+}
@@ -0,0 +1,65 @@
+package net.clareburt.metrics;
+
+import java.beans.ConstructorProperties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencies recorded for one phase, in nanoseconds.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class LatencySnapshot {
+
+	private final long count;
+	private final long meanNanos;
+	private final long p50Nanos;
+	private final long p99Nanos;
+	private final long p999Nanos;
+	private final long maxNanos;
+
+	@ConstructorProperties({"count", "meanNanos", "p50Nanos", "p99Nanos", "p999Nanos", "maxNanos"})
+	public LatencySnapshot(long count, long meanNanos, long p50Nanos, long p99Nanos, long p999Nanos, long maxNanos) {
+		this.count = count;
+		this.meanNanos = meanNanos;
+		this.p50Nanos = p50Nanos;
+		this.p99Nanos = p99Nanos;
+		this.p999Nanos = p999Nanos;
+		this.maxNanos = maxNanos;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getMeanNanos() {
+		return meanNanos;
+	}
+
+	public long getP50Nanos() {
+		return p50Nanos;
+	}
+
+	public long getP99Nanos() {
+		return p99Nanos;
+	}
+
+	public long getP999Nanos() {
+		return p999Nanos;
+	}
+
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "{count=" + count +
+				", meanMicros=" + TimeUnit.NANOSECONDS.toMicros(meanNanos) +
+				", p50Micros=" + TimeUnit.NANOSECONDS.toMicros(p50Nanos) +
+				", p99Micros=" + TimeUnit.NANOSECONDS.toMicros(p99Nanos) +
+				", p999Micros=" + TimeUnit.NANOSECONDS.toMicros(p999Nanos) +
+				", maxMicros=" + TimeUnit.NANOSECONDS.toMicros(maxNanos) +
+				'}';
+	}
+}
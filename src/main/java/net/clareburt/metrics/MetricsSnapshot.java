@@ -0,0 +1,83 @@
+package net.clareburt.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A copy of the recipe suggestion metrics taken at one time.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class MetricsSnapshot {
+
+	private final Map<RecipeMetrics.Phase, LatencySnapshot> latencies;
+	private final long recipesConsidered;
+	private final long recipesFeasible;
+	private final long fridgesMatched;
+	private final long fridgeLots;
+	private final int catalogSize;
+
+	public MetricsSnapshot(EnumMap<RecipeMetrics.Phase, LatencySnapshot> latencies, long recipesConsidered, long recipesFeasible,
+			long fridgesMatched, long fridgeLots, int catalogSize) {
+		this.latencies = Collections.unmodifiableMap(latencies);
+		this.recipesConsidered = recipesConsidered;
+		this.recipesFeasible = recipesFeasible;
+		this.fridgesMatched = fridgesMatched;
+		this.fridgeLots = fridgeLots;
+		this.catalogSize = catalogSize;
+	}
+
+	public LatencySnapshot getLatency(RecipeMetrics.Phase phase) {
+		return latencies.get(phase);
+	}
+
+	public Map<RecipeMetrics.Phase, LatencySnapshot> getLatencies() {
+		return latencies;
+	}
+
+	/**
+	 * @return the number of recipes that fridges have been checked against, not counting those skipped unchecked
+	 */
+	public long getRecipesConsidered() {
+		return recipesConsidered;
+	}
+
+	/**
+	 * @return the number of recipes considered that the fridge could not make
+	 */
+	public long getRecipesRejected() {
+		return recipesConsidered - recipesFeasible;
+	}
+
+	public long getFridgesMatched() {
+		return fridgesMatched;
+	}
+
+	/**
+	 * @return the total number of lots in the fridges matched
+	 */
+	public long getFridgeLots() {
+		return fridgeLots;
+	}
+
+	/**
+	 * @return the number of recipes in the catalog most recently matched against
+	 */
+	public int getCatalogSize() {
+		return catalogSize;
+	}
+
+	@Override
+	public String toString() {
+		return "MetricsSnapshot{" +
+				"latencies=" + latencies +
+				", recipesConsidered=" + recipesConsidered +
+				", recipesRejected=" + getRecipesRejected() +
+				", fridgesMatched=" + fridgesMatched +
+				", fridgeLots=" + fridgeLots +
+				", catalogSize=" + catalogSize +
+				'}';
+	}
+}
@@ -0,0 +1,178 @@
+package net.clareburt.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and throughput metrics for each phase of suggesting a recipe. Recording only touches striped counters and
+ * fixed histogram buckets, so the metrics are always on. They can be read through getSnapshot or over JMX once
+ * registered.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class RecipeMetrics implements RecipeMetricsMXBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(RecipeMetrics.class);
+
+	/** Name under which the metrics are registered with the platform MBean server. */
+	public static final String OBJECT_NAME = "net.clareburt:type=RecipeMetrics";
+
+	public enum Phase {
+		/** Reading and parsing the fridge CSV. */
+		CSV_READ,
+		/** Reading and parsing the recipes Json. */
+		JSON_PARSE,
+		/** Indexing the fridge and finding the recipes it may be able to make. */
+		MATCHING,
+		/** Checking the fridge lots for those recipes and choosing the best. */
+		RANKING,
+		/** Suggesting a recipe from start to finish, including any reading and parsing. */
+		END_TO_END
+	}
+
+	private static final RecipeMetrics instance = new RecipeMetrics();
+
+	private final EnumMap<Phase, LatencyHistogram> latencies = new EnumMap<Phase, LatencyHistogram>(Phase.class);
+	private final LongAdder recipesConsidered = new LongAdder();
+	private final LongAdder recipesFeasible = new LongAdder();
+	private final LongAdder fridgesMatched = new LongAdder();
+	private final LongAdder fridgeLots = new LongAdder();
+	private volatile int catalogSize;
+	private boolean registered;
+
+	RecipeMetrics() {
+		for (Phase phase : Phase.values()) {
+			latencies.put(phase, new LatencyHistogram());
+		}
+	}
+
+	public static RecipeMetrics getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server, if they are not registered already.
+	 */
+	public synchronized void register() {
+		if (registered) return;
+		try {
+			final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName objectName = new ObjectName(OBJECT_NAME);
+			if (!mBeanServer.isRegistered(objectName)) {
+				mBeanServer.registerMBean(this, objectName);
+			}
+			registered = true;
+		} catch (JMException e) {
+			logger.warn("Unable to register recipe metrics", e);
+		}
+	}
+
+	/**
+	 * Records how long a phase took.
+	 * @param startNanos System.nanoTime() when the phase started
+	 */
+	public void recordSince(Phase phase, long startNanos) {
+		latencies.get(phase).record(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Records a fridge about to be matched against a catalog.
+	 * @param lotCount number of lots in the fridge
+	 * @param catalogSize number of recipes in the catalog
+	 */
+	public void recordFridge(int lotCount, int catalogSize) {
+		fridgesMatched.increment();
+		fridgeLots.add(lotCount);
+		this.catalogSize = catalogSize;
+	}
+
+	/**
+	 * Records the recipes a fridge was checked against. Recipes skipped without being checked, eg. because they do not
+	 * use the fridge's items or cannot beat the best recipe found, are not counted.
+	 * @param consideredCount number of recipes checked, including any rejected by the catalog's item bit sets
+	 * @param feasibleCount number of those recipes that the fridge can make
+	 */
+	public void recordRecipes(int consideredCount, int feasibleCount) {
+		recipesConsidered.add(consideredCount);
+		recipesFeasible.add(feasibleCount);
+	}
+
+	public MetricsSnapshot getSnapshot() {
+		final EnumMap<Phase, LatencySnapshot> latencySnapshots = new EnumMap<Phase, LatencySnapshot>(Phase.class);
+		for (Phase phase : Phase.values()) {
+			latencySnapshots.put(phase, latencies.get(phase).getSnapshot());
+		}
+		return new MetricsSnapshot(latencySnapshots, recipesConsidered.sum(), recipesFeasible.sum(),
+				fridgesMatched.sum(), fridgeLots.sum(), catalogSize);
+	}
+
+	@Override
+	public LatencySnapshot getCsvRead() {
+		return latencies.get(Phase.CSV_READ).getSnapshot();
+	}
+
+	@Override
+	public LatencySnapshot getJsonParse() {
+		return latencies.get(Phase.JSON_PARSE).getSnapshot();
+	}
+
+	@Override
+	public LatencySnapshot getMatching() {
+		return latencies.get(Phase.MATCHING).getSnapshot();
+	}
+
+	@Override
+	public LatencySnapshot getRanking() {
+		return latencies.get(Phase.RANKING).getSnapshot();
+	}
+
+	@Override
+	public LatencySnapshot getEndToEnd() {
+		return latencies.get(Phase.END_TO_END).getSnapshot();
+	}
+
+	@Override
+	public long getRecipesConsidered() {
+		return recipesConsidered.sum();
+	}
+
+	@Override
+	public long getRecipesRejected() {
+		return recipesConsidered.sum() - recipesFeasible.sum();
+	}
+
+	@Override
+	public long getFridgesMatched() {
+		return fridgesMatched.sum();
+	}
+
+	@Override
+	public long getFridgeLots() {
+		return fridgeLots.sum();
+	}
+
+	@Override
+	public int getCatalogSize() {
+		return catalogSize;
+	}
+
+	@Override
+	public void reset() {
+		for (LatencyHistogram histogram : latencies.values()) {
+			histogram.reset();
+		}
+		recipesConsidered.reset();
+		recipesFeasible.reset();
+		fridgesMatched.reset();
+		fridgeLots.reset();
+	}
+
+}
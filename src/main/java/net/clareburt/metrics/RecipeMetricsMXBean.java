@@ -0,0 +1,32 @@
+package net.clareburt.metrics;
+
+/**
+ * Recipe suggestion metrics published over JMX.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public interface RecipeMetricsMXBean {
+
+	LatencySnapshot getCsvRead();
+
+	LatencySnapshot getJsonParse();
+
+	LatencySnapshot getMatching();
+
+	LatencySnapshot getRanking();
+
+	LatencySnapshot getEndToEnd();
+
+	long getRecipesConsidered();
+
+	long getRecipesRejected();
+
+	long getFridgesMatched();
+
+	long getFridgeLots();
+
+	int getCatalogSize();
+
+	void reset();
+}
@@ -0,0 +1,47 @@
+package net.clareburt.model;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The recipe suggested for each fridge in a batch, in the order the fridges were given, along with how long the batch
+ * took.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class BatchResult {
+
+	private final List<String> suggestions;
+	private final long elapsedNanos;
+
+	public BatchResult(List<String> suggestions, long elapsedNanos) {
+		this.suggestions = suggestions;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	public List<String> getSuggestions() {
+		return suggestions;
+	}
+
+	public int getFridgeCount() {
+		return suggestions.size();
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public double getFridgesPerSecond() {
+		return elapsedNanos == 0 ? 0 : suggestions.size() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "BatchResult{" +
+				"fridgeCount=" + getFridgeCount() +
+				", elapsedMillis=" + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) +
+				", fridgesPerSecond=" + String.format("%.1f", getFridgesPerSecond()) +
+				'}';
+	}
+}
@@ -1,7 +1,9 @@
 package net.clareburt.model;
 
+import net.clareburt.util.DateCodec;
+import net.clareburt.util.DateUtil;
+
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 
 /**
@@ -10,12 +12,10 @@ import java.util.Date;
  */
 public class Ingredient {
 
-	private static final String DATE_FORMAT = "dd/MM/yyyy";
-
 	private String item;
 	private int amount;
 	private Unit unit;
-	private Date useBy;
+	private int useBy = DateCodec.NO_DATE;
 
 	public Ingredient() {
 	}
@@ -56,12 +56,27 @@ public class Ingredient {
 	}
 
 	public Date getUseBy() {
-		return useBy;
+		return hasUseBy() ? DateUtil.toDate(useBy) : null;
 	}
 
 	public void setUseBy(String useByStr) throws ParseException {
 		if (useByStr == null) return;
-		this.useBy = new SimpleDateFormat(DATE_FORMAT).parse(useByStr);
+		this.useBy = DateCodec.parseEpochDay(useByStr);
+	}
+
+	/**
+	 * @return the useBy date as an epoch day, or DateCodec.NO_DATE if the ingredient has no useBy date
+	 */
+	public int getUseByEpochDay() {
+		return useBy;
+	}
+
+	public void setUseByEpochDay(int useBy) {
+		this.useBy = useBy;
+	}
+
+	public boolean hasUseBy() {
+		return useBy != DateCodec.NO_DATE;
 	}
 
 	@Override
@@ -74,7 +89,7 @@ public class Ingredient {
 		if (amount != that.amount) return false;
 		if (item != null ? !item.equals(that.item) : that.item != null) return false;
 		if (unit != that.unit) return false;
-		if (useBy != null ? !useBy.equals(that.useBy) : that.useBy != null) return false;
+		if (useBy != that.useBy) return false;
 
 		return true;
 	}
@@ -84,7 +99,7 @@ public class Ingredient {
 		int result = item != null ? item.hashCode() : 0;
 		result = 31 * result + amount;
 		result = 31 * result + (unit != null ? unit.hashCode() : 0);
-		result = 31 * result + (useBy != null ? useBy.hashCode() : 0);
+		result = 31 * result + useBy;
 		return result;
 	}
 
@@ -99,6 +114,6 @@ public class Ingredient {
 	}
 
 	private String formatDate() {
-		return useBy == null ? null : new SimpleDateFormat(DATE_FORMAT).format(useBy);
+		return hasUseBy() ? DateCodec.format(useBy) : null;
 	}
 }
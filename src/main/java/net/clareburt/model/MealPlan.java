@@ -0,0 +1,62 @@
+package net.clareburt.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The recipes planned for the coming meals, one meal a day starting today, along with the plan's urgency score: the
+ * higher the score, the more stock close to its useBy date the plan uses up. A plan may hold fewer meals than were
+ * asked for only when the fridge runs out of recipes to make; a search that runs out of budget still finishes its
+ * first plan.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class MealPlan {
+
+	private final List<RecipeMatch> meals;
+	private final long score;
+	private final boolean complete;
+
+	public MealPlan(List<RecipeMatch> meals, long score, boolean complete) {
+		this.meals = meals;
+		this.score = score;
+		this.complete = complete;
+	}
+
+	/**
+	 * @return the meals in the order they are to be made, each with the fridge lots its ingredients are taken from
+	 */
+	public List<RecipeMatch> getMeals() {
+		return meals;
+	}
+
+	public List<String> getRecipeNames() {
+		final List<String> names = new ArrayList<String>(meals.size());
+		for (RecipeMatch meal : meals) {
+			names.add(meal.getName());
+		}
+		return names;
+	}
+
+	public long getScore() {
+		return score;
+	}
+
+	/**
+	 * @return whether the search finished within its budget, in which case no other plan scores higher. A plan that is
+	 * not complete is still a whole plan, just not known to be the best.
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	@Override
+	public String toString() {
+		return "MealPlan{" +
+				"meals=" + getRecipeNames() +
+				", score=" + score +
+				", complete=" + complete +
+				'}';
+	}
+}
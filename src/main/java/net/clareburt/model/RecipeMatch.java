@@ -0,0 +1,114 @@
+package net.clareburt.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A recipe that can be made from the fridge, along with the fridge lots chosen for its ingredients and its expiry
+ * signature: the useBy dates of the chosen lots as epoch days, sorted earliest first. An ingredient may be taken from
+ * several lots, in which case the first of them, the one that expires soonest, is the one in the signature.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class RecipeMatch {
+
+	private final String name;
+	private final List<Ingredient> ingredients;
+	private final List<List<Ingredient>> allocation;
+	private final int[] expirySignature;
+
+	/**
+	 * Creates a match in which each ingredient is taken from a single lot.
+	 * @param ingredients the lot chosen for each ingredient, in recipe order
+	 */
+	public RecipeMatch(String name, List<Ingredient> ingredients) {
+		this(name, ingredients, null);
+	}
+
+	private RecipeMatch(String name, List<Ingredient> ingredients, List<List<Ingredient>> allocation) {
+		this.name = name;
+		this.ingredients = ingredients;
+		this.allocation = allocation;
+		this.expirySignature = new int[ingredients.size()];
+		for (int i = 0; i < expirySignature.length; i++) {
+			expirySignature[i] = ingredients.get(i).getUseByEpochDay();
+		}
+		Arrays.sort(expirySignature);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Creates a match from the lots each ingredient is taken from.
+	 * @param allocation the lots chosen for each ingredient, in recipe order, each ordered by useBy date
+	 */
+	public static RecipeMatch fromAllocation(String name, List<List<Ingredient>> allocation) {
+		final List<Ingredient> ingredients = new ArrayList<Ingredient>(allocation.size());
+		for (List<Ingredient> lots : allocation) {
+			ingredients.add(lots.get(0));
+		}
+		return new RecipeMatch(name, ingredients, allocation);
+	}
+
+	/**
+	 * @return the first lot each ingredient is taken from, in recipe order
+	 */
+	public List<Ingredient> getIngredients() {
+		return ingredients;
+	}
+
+	/**
+	 * @return the lots each ingredient is taken from, in recipe order, each ordered by useBy date
+	 */
+	public List<List<Ingredient>> getAllocation() {
+		if (allocation != null) {
+			return allocation;
+		}
+		final List<List<Ingredient>> singleLots = new ArrayList<List<Ingredient>>(ingredients.size());
+		for (Ingredient lot : ingredients) {
+			singleLots.add(Collections.singletonList(lot));
+		}
+		return singleLots;
+	}
+
+	public int[] getExpirySignature() {
+		return expirySignature;
+	}
+
+	/**
+	 * Returns whether this match should be preferred to the other match, ie. its ingredients expire sooner or, if all
+	 * dates are the same, it has more ingredients.
+	 */
+	public boolean isBetterThan(RecipeMatch other) {
+		return compareSignatures(expirySignature, other.expirySignature) < 0;
+	}
+
+	/**
+	 * Compares two expiry signatures, returning a negative number if the first signature should be preferred, a
+	 * positive number if the second should be preferred and zero if they rank the same.
+	 */
+	public static int compareSignatures(int[] signature, int[] otherSignature) {
+		final int length = Math.min(signature.length, otherSignature.length);
+		for (int i = 0; i < length; i++) {
+			if (signature[i] != otherSignature[i]) {
+				return signature[i] < otherSignature[i] ? -1 : 1;
+			}
+		}
+		// All compared dates are the same so favour the recipe with the most ingredients
+		return otherSignature.length - signature.length;
+	}
+
+	@Override
+	public String toString() {
+		return "RecipeMatch{" +
+				"name='" + name + '\'' +
+				", ingredients=" + ingredients +
+				", expirySignature=" + Arrays.toString(expirySignature) +
+				'}';
+	}
+}
@@ -6,6 +6,36 @@ package net.clareburt.model;
  */
 public enum Unit {
 
-	of, grams, ml, slices
+	of, grams, ml, slices,
+	kilograms(1000, grams),
+	litres(1000, ml);
+
+	private final int factor;
+	private final Unit baseUnit;
+
+	Unit() {
+		this.factor = 1;
+		this.baseUnit = null;
+	}
+
+	Unit(int factor, Unit baseUnit) {
+		this.factor = factor;
+		this.baseUnit = baseUnit;
+	}
+
+	/**
+	 * @return the unit that amounts in this unit are normalised to, eg. grams for kilograms. Amounts can only be
+	 * compared when their units have the same base unit.
+	 */
+	public Unit getBaseUnit() {
+		return baseUnit == null ? this : baseUnit;
+	}
+
+	/**
+	 * @return the amount in the base unit
+	 */
+	public long toBaseAmount(int amount) {
+		return (long) amount * factor;
+	}
 
 }
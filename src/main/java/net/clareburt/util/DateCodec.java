@@ -0,0 +1,140 @@
+package net.clareburt.util;
+
+import java.text.ParseException;
+
+/**
+ * Parses and formats dd/MM/yyyy dates as epoch days, the number of days since 01/01/1970. Parsing works directly on
+ * the characters of the text without creating any objects, and unlike SimpleDateFormat it is thread safe. Single
+ * digit days and months such as 2/12/2014 are accepted.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public final class DateCodec {
+
+	/** Epoch day used for an Ingredient without a useBy date. It is before every real date. */
+	public static final int NO_DATE = Integer.MIN_VALUE;
+
+	private static final int DAYS_PER_400_YEARS = 146097;
+	private static final int DAYS_FROM_0000_TO_1970 = 719468;
+
+	private DateCodec() {
+	}
+
+	/**
+	 * Parses a date in the format dd/MM/yyyy.
+	 * @param text String holding the date
+	 * @return the date as an epoch day
+	 * @throws ParseException if the text is not a valid date. The error offset is the position of the problem.
+	 */
+	public static int parseEpochDay(CharSequence text) throws ParseException {
+		if (text == null) {
+			throw new ParseException("Unparseable date: null", 0);
+		}
+		final int length = text.length();
+		int position = 0;
+		int day = 0;
+		int digits = 0;
+		while (position < length && digits < 2 && isDigit(text.charAt(position))) {
+			day = day * 10 + (text.charAt(position++) - '0');
+			digits++;
+		}
+		if (digits == 0 || position >= length || text.charAt(position++) != '/') {
+			throw unparseable(text, position);
+		}
+		int month = 0;
+		digits = 0;
+		while (position < length && digits < 2 && isDigit(text.charAt(position))) {
+			month = month * 10 + (text.charAt(position++) - '0');
+			digits++;
+		}
+		if (digits == 0 || position >= length || text.charAt(position++) != '/') {
+			throw unparseable(text, position);
+		}
+		int year = 0;
+		digits = 0;
+		while (position < length && digits < 4 && isDigit(text.charAt(position))) {
+			year = year * 10 + (text.charAt(position++) - '0');
+			digits++;
+		}
+		if (digits != 4 || position != length) {
+			throw unparseable(text, position);
+		}
+		if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+			throw unparseable(text, 0);
+		}
+		return toEpochDay(year, month, day);
+	}
+
+	/**
+	 * Formats an epoch day as dd/MM/yyyy.
+	 */
+	public static String format(int epochDay) {
+		// Civil from days, see http://howardhinnant.github.io/date_algorithms.html
+		final int shifted = epochDay + DAYS_FROM_0000_TO_1970;
+		final int era = Math.floorDiv(shifted, DAYS_PER_400_YEARS);
+		final int dayOfEra = shifted - era * DAYS_PER_400_YEARS;
+		final int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		final int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		final int shiftedMonth = (5 * dayOfYear + 2) / 153;
+		final int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+		final int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+		final int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+		final char[] chars = new char[10];
+		chars[0] = (char) ('0' + day / 10);
+		chars[1] = (char) ('0' + day % 10);
+		chars[2] = '/';
+		chars[3] = (char) ('0' + month / 10);
+		chars[4] = (char) ('0' + month % 10);
+		chars[5] = '/';
+		chars[6] = (char) ('0' + year / 1000 % 10);
+		chars[7] = (char) ('0' + year / 100 % 10);
+		chars[8] = (char) ('0' + year / 10 % 10);
+		chars[9] = (char) ('0' + year % 10);
+		return new String(chars);
+	}
+
+	/**
+	 * Returns the epoch day of the given date.
+	 * @param year the year, eg. 2014
+	 * @param month the month of the year from 1 to 12
+	 * @param day the day of the month from 1
+	 */
+	public static int toEpochDay(int year, int month, int day) {
+		// Days from civil, see http://howardhinnant.github.io/date_algorithms.html
+		final int shiftedYear = month <= 2 ? year - 1 : year;
+		final int era = Math.floorDiv(shiftedYear, 400);
+		final int yearOfEra = shiftedYear - era * 400;
+		final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * DAYS_PER_400_YEARS + dayOfEra - DAYS_FROM_0000_TO_1970;
+	}
+
+	private static int daysInMonth(int year, int month) {
+		switch (month) {
+			case 2:
+				return isLeapYear(year) ? 29 : 28;
+			case 4:
+			case 6:
+			case 9:
+			case 11:
+				return 30;
+			default:
+				return 31;
+		}
+	}
+
+	private static boolean isLeapYear(int year) {
+		return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static ParseException unparseable(CharSequence text, int position) {
+		return new ParseException("Unparseable date: \"" + text + "\"", position);
+	}
+
+}
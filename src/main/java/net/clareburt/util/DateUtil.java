@@ -1,5 +1,8 @@
 package net.clareburt.util;
 
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Date;
 
 /**
@@ -8,7 +11,56 @@ import java.util.Date;
  */
 public class DateUtil {
 
+	private static volatile Clock clock = Clock.systemDefaultZone();
+
 	public static Date getCurrentDate() {
-		return new Date();
+		return new Date(clock.millis());
+	}
+
+	/**
+	 * Returns today's date in the clock's time zone as an epoch day, the number of days since 01/01/1970.
+	 */
+	public static int getCurrentEpochDay() {
+		return toEpochDay(clock);
+	}
+
+	/**
+	 * Returns the clock's current date as an epoch day.
+	 */
+	public static int toEpochDay(Clock clock) {
+		return (int) LocalDate.now(clock).toEpochDay();
+	}
+
+	public static Clock getClock() {
+		return clock;
+	}
+
+	/**
+	 * Replaces the clock that supplies the current date, eg. with a fixed clock in tests.
+	 */
+	public static void setClock(Clock newClock) {
+		clock = newClock;
+	}
+
+	/**
+	 * Restores the system clock in the default time zone.
+	 */
+	public static void resetClock() {
+		clock = Clock.systemDefaultZone();
+	}
+
+	/**
+	 * Converts a date to the number of days since 01/01/1970 in the default time zone, so that dates can be compared
+	 * as primitive ints.
+	 */
+	public static int toEpochDay(Date date) {
+		return (int) date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+	}
+
+	/**
+	 * Converts an epoch day to a Date at the start of that day in the default time zone.
+	 */
+	public static Date toDate(int epochDay) {
+		return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(ZoneId.systemDefault()).toInstant());
 	}
 }
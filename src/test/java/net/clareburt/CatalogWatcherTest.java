@@ -0,0 +1,139 @@
+package net.clareburt;
+
+import net.clareburt.exception.ParsingException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class CatalogWatcherTest {
+
+	private static final long RELOAD_TIMEOUT_MILLIS = 10000;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File recipesFile;
+	private CatalogWatcher catalogWatcher;
+
+	@Before
+	public void setup() throws IOException, ParsingException {
+		recipesFile = temporaryFolder.newFile("recipes.json");
+		writeRecipes(recipesFile, "toast");
+		catalogWatcher = new CatalogWatcher(RecipeFinder.getInstance(), recipesFile.getPath());
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		catalogWatcher.close();
+	}
+
+	@Test
+	public void shouldSwapInCatalogOnReload() throws IOException {
+		final RecipeCatalog oldCatalog = catalogWatcher.get();
+		assertEquals("toast", oldCatalog.getRecipeName(0));
+
+		writeRecipes(recipesFile, "cheese toasty");
+		assertTrue(catalogWatcher.reload());
+		assertEquals("cheese toasty", catalogWatcher.get().getRecipeName(0));
+		// A request still holding the old catalog is unaffected
+		assertEquals("toast", oldCatalog.getRecipeName(0));
+	}
+
+	@Test
+	public void shouldKeepCatalogWhenFileIsInvalid() throws IOException {
+		final RecipeCatalog catalog = catalogWatcher.get();
+		final FileOutputStream outputStream = new FileOutputStream(recipesFile);
+		outputStream.write("[{\"name\": \"half writ".getBytes("UTF-8"));
+		outputStream.close();
+
+		assertFalse(catalogWatcher.reload());
+		assertSame(catalog, catalogWatcher.get());
+		assertEquals(0, catalogWatcher.getReloadCount());
+	}
+
+	@Test
+	public void shouldKeepCatalogWhenRecipesCannotBePrepared() throws IOException {
+		final RecipeCatalog catalog = catalogWatcher.get();
+		writeFile(recipesFile, "[{\"name\": \"x\", \"ingredients\": [null]}]");
+
+		assertFalse(catalogWatcher.reload());
+		assertSame(catalog, catalogWatcher.get());
+	}
+
+	@Test
+	public void shouldKeepCatalogWhenFileHoldsNoRecipes() throws IOException {
+		final RecipeCatalog catalog = catalogWatcher.get();
+		writeFile(recipesFile, "");
+		assertFalse(catalogWatcher.reload());
+
+		writeFile(recipesFile, "[]");
+		assertFalse(catalogWatcher.reload());
+		assertSame(catalog, catalogWatcher.get());
+		assertEquals(0, catalogWatcher.getReloadCount());
+	}
+
+	@Test
+	public void shouldKeepWatchingAfterRecipesCannotBePrepared() throws Exception {
+		catalogWatcher.start();
+		writeFile(recipesFile, "[{\"name\": \"x\", \"ingredients\": [null]}]");
+		// Give the watcher time to try the bad file before it is replaced
+		Thread.sleep(1000);
+
+		final File newFile = temporaryFolder.newFile("recipes.json.new");
+		writeRecipes(newFile, "cheese toasty");
+		Files.move(newFile.toPath(), recipesFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		final long deadline = System.currentTimeMillis() + RELOAD_TIMEOUT_MILLIS;
+		while (catalogWatcher.getReloadCount() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		assertEquals("cheese toasty", catalogWatcher.get().getRecipeName(0));
+	}
+
+	@Test
+	public void shouldReloadWhenFileIsRepublished() throws Exception {
+		catalogWatcher.start();
+
+		// Publish the new file by renaming it over the old one, as a deployment would
+		final File newFile = temporaryFolder.newFile("recipes.json.new");
+		writeRecipes(newFile, "cheese toasty");
+		Files.move(newFile.toPath(), recipesFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		final long deadline = System.currentTimeMillis() + RELOAD_TIMEOUT_MILLIS;
+		while (catalogWatcher.getReloadCount() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		assertEquals("cheese toasty", catalogWatcher.get().getRecipeName(0));
+	}
+
+	//-------- Helper methods --------
+
+	private void writeRecipes(File file, String recipeName) throws IOException {
+		writeFile(file, "[{\"name\": \"" + recipeName + "\", \"ingredients\": " +
+				"[{\"item\": \"bread\", \"amount\": \"2\", \"unit\": \"slices\"}]}]");
+	}
+
+	private void writeFile(File file, String contents) throws IOException {
+		final FileOutputStream outputStream = new FileOutputStream(file);
+		outputStream.write(contents.getBytes("UTF-8"));
+		outputStream.close();
+	}
+
+}
@@ -0,0 +1,166 @@
+package net.clareburt;
+
+import net.clareburt.model.Ingredient;
+import net.clareburt.util.DateCodec;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static net.clareburt.TestFixtures.createLot;
+import static net.clareburt.TestFixtures.createRecipe;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class ExpirySchedulerTest {
+
+	private SettableClock clock;
+	private ExpiryScheduler expiryScheduler;
+	private int today;
+
+	@Before
+	public void setup() throws ParseException {
+		clock = new SettableClock();
+		clock.setDate(LocalDate.of(2014, 4, 1));
+		expiryScheduler = new ExpiryScheduler(clock);
+		today = DateCodec.parseEpochDay("01/04/2014");
+	}
+
+	@Test
+	public void shouldStartOnClockDay() {
+		assertEquals(today, expiryScheduler.getCurrentDay());
+	}
+
+	@Test
+	public void shouldReportLotsOnceTheyPassTheirUseByDateInDateOrder() {
+		final Ingredient laterLot = createLot("bread", 2, today + 3);
+		final Ingredient firstLot = createLot("cheese", 2, today);
+		final Ingredient secondLot = createLot("bread", 2, today);
+		final List<Ingredient> expired = new ArrayList<Ingredient>();
+		final ExpiryScheduler.ExpiryListener listener = new ExpiryScheduler.ExpiryListener() {
+			@Override
+			public void expired(Ingredient lot, int currentDay) {
+				expired.add(lot);
+			}
+		};
+		expiryScheduler.schedule(laterLot, listener);
+		expiryScheduler.schedule(firstLot, listener);
+		expiryScheduler.schedule(secondLot, listener);
+
+		assertEquals(0, expiryScheduler.advance());
+
+		clock.setDate(LocalDate.of(2014, 4, 2));
+		assertEquals(2, expiryScheduler.advance());
+		assertEquals(Arrays.asList(firstLot, secondLot), expired);
+		assertEquals(1, expiryScheduler.size());
+
+		clock.setDate(LocalDate.of(2014, 4, 10));
+		assertEquals(1, expiryScheduler.advance());
+		assertEquals(Arrays.asList(firstLot, secondLot, laterLot), expired);
+		assertEquals(today + 9, expiryScheduler.getCurrentDay());
+	}
+
+	@Test
+	public void shouldDropExpiredLotsFromSession() {
+		final RecipeCatalog catalog = new RecipeCatalog(Arrays.asList(
+				createRecipe("toast", "bread"),
+				createRecipe("cheese toasty", "bread", "cheese")));
+		final RecipeSession session = new RecipeSession(catalog, Arrays.asList(
+				createLot("bread", 4, today + 5),
+				createLot("cheese", 2, today + 1)), expiryScheduler);
+		assertEquals("cheese toasty", session.getBestRecipe());
+
+		clock.setDate(LocalDate.of(2014, 4, 2));
+		expiryScheduler.advance();
+		assertEquals("cheese toasty", session.getBestRecipe());
+
+		clock.setDate(LocalDate.of(2014, 4, 3));
+		expiryScheduler.advance();
+		assertEquals("toast", session.getBestRecipe());
+
+		// A lot added after the clock has moved on is checked against the new day
+		session.addItem(createLot("cheese", 2, today + 1));
+		assertEquals("toast", session.getBestRecipe());
+
+		clock.setDate(LocalDate.of(2014, 4, 7));
+		expiryScheduler.advance();
+		assertEquals("Order Takeout", session.getBestRecipe());
+		assertEquals(0, expiryScheduler.size());
+	}
+
+	@Test
+	public void shouldCheckAddedLotsAgainstSchedulerDay() {
+		final RecipeCatalog catalog = new RecipeCatalog(Arrays.asList(
+				createRecipe("toast", "bread"),
+				createRecipe("cheese toasty", "bread", "cheese")));
+		final RecipeSession session = new RecipeSession(catalog, Arrays.asList(createLot("bread", 4, today + 5)), expiryScheduler);
+
+		// None of the session's lots expire, so only the scheduler knows the day has moved on
+		clock.setDate(LocalDate.of(2014, 4, 3));
+		assertEquals(0, expiryScheduler.advance());
+		session.addItem(createLot("cheese", 2, today + 1));
+		assertEquals("toast", session.getBestRecipe());
+		assertEquals(1, expiryScheduler.size());
+	}
+
+	@Test
+	public void shouldLetGoOfLotsThatLeaveSession() {
+		final RecipeCatalog catalog = new RecipeCatalog(Arrays.asList(createRecipe("toast", "bread")));
+		final Ingredient removedLot = createLot("bread", 2, today + 5);
+		final Ingredient consumedLot = createLot("bread", 2, today + 5);
+		final RecipeSession session = new RecipeSession(catalog, Arrays.asList(
+				removedLot, consumedLot, createLot("bread", 2, today + 5)), expiryScheduler);
+		assertEquals(3, expiryScheduler.size());
+
+		session.removeItem(removedLot);
+		assertEquals(2, expiryScheduler.size());
+		session.consumeItem(consumedLot, 2);
+		assertEquals(1, expiryScheduler.size());
+
+		session.close();
+		assertEquals(0, expiryScheduler.size());
+		session.addItem(createLot("bread", 2, today + 5));
+		assertEquals(0, expiryScheduler.size());
+	}
+
+	//-------- Helper methods --------
+
+	/**
+	 * Clock whose date can be moved on by the test.
+	 */
+	private static class SettableClock extends Clock {
+
+		private final ZoneId zone = ZoneId.systemDefault();
+		private Instant instant;
+
+		void setDate(LocalDate date) {
+			instant = date.atStartOfDay(zone).toInstant();
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return zone;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Instant instant() {
+			return instant;
+		}
+	}
+
+}
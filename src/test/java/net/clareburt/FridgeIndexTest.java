@@ -0,0 +1,224 @@
+package net.clareburt;
+
+import net.clareburt.model.Ingredient;
+import net.clareburt.model.Unit;
+import net.clareburt.util.DateCodec;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.clareburt.TestFixtures.createLot;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class FridgeIndexTest {
+
+	private int currentDay;
+
+	@Before
+	public void setup() throws ParseException {
+		currentDay = DateCodec.parseEpochDay("01/04/2014");
+	}
+
+	@Test
+	public void shouldReturnNullForMissingItem() throws ParseException {
+		final ArrayList<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		fridgeItems.add(createIngredient("bread", 2, Unit.slices, "15/04/2014"));
+
+		final FridgeIndex fridgeIndex = new FridgeIndex(fridgeItems, currentDay);
+
+		assertNull(fridgeIndex.findItemWithClosestUseByDate(createIngredient("cheese", 2, Unit.slices, null)));
+	}
+
+	@Test
+	public void shouldIgnoreExpiredLots() throws ParseException {
+		final ArrayList<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		fridgeItems.add(createIngredient("cheese", 2, Unit.slices, "25/12/2013"));
+
+		final FridgeIndex fridgeIndex = new FridgeIndex(fridgeItems, currentDay);
+
+		assertNull(fridgeIndex.findItemWithClosestUseByDate(createIngredient("cheese", 2, Unit.slices, null)));
+	}
+
+	@Test
+	public void shouldReturnClosestLotThatCoversAmount() throws ParseException {
+		final Ingredient smallLot = createIngredient("bread", 1, Unit.slices, "10/04/2014");
+		final Ingredient closestLot = createIngredient("bread", 2, Unit.slices, "15/04/2014");
+		final Ingredient laterLot = createIngredient("bread", 10, Unit.slices, "21/04/2014");
+		final ArrayList<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		fridgeItems.add(laterLot);
+		fridgeItems.add(smallLot);
+		fridgeItems.add(closestLot);
+
+		final FridgeIndex fridgeIndex = new FridgeIndex(fridgeItems, currentDay);
+
+		assertSame(closestLot, fridgeIndex.findItemWithClosestUseByDate(createIngredient("bread", 2, Unit.slices, null)));
+		assertSame(laterLot, fridgeIndex.findItemWithClosestUseByDate(createIngredient("bread", 5, Unit.slices, null)));
+		assertNull(fridgeIndex.findItemWithClosestUseByDate(createIngredient("bread", 11, Unit.slices, null)));
+	}
+
+	@Test
+	public void shouldKeepFridgeOrderForLotsWithSameUseByDate() throws ParseException {
+		final Ingredient firstLot = createIngredient("cheese", 2, Unit.slices, "15/04/2014");
+		final Ingredient secondLot = createIngredient("cheese", 2, Unit.slices, "15/04/2014");
+		final ArrayList<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		fridgeItems.add(firstLot);
+		fridgeItems.add(secondLot);
+
+		final FridgeIndex fridgeIndex = new FridgeIndex(fridgeItems, currentDay);
+
+		assertSame(firstLot, fridgeIndex.findItemWithClosestUseByDate(createIngredient("cheese", 2, Unit.slices, null)));
+	}
+
+	@Test
+	public void shouldMatchIndexBuiltFromWholeFridgeWhenItemsAreAdded() throws ParseException {
+		final Ingredient laterLot = createIngredient("bread", 2, Unit.slices, "21/04/2014");
+		final Ingredient firstLot = createIngredient("bread", 2, Unit.slices, "15/04/2014");
+		final Ingredient secondLot = createIngredient("bread", 2, Unit.slices, "15/04/2014");
+
+		final FridgeIndex fridgeIndex = new FridgeIndex(currentDay);
+		assertTrue(fridgeIndex.isEmpty());
+		fridgeIndex.add(laterLot);
+		fridgeIndex.add(firstLot);
+		fridgeIndex.add(secondLot);
+		fridgeIndex.add(createIngredient("bread", 2, Unit.slices, "25/12/2013"));
+
+		assertSame(firstLot, fridgeIndex.findItemWithClosestUseByDate(createIngredient("bread", 2, Unit.slices, null)));
+	}
+
+	@Test
+	public void shouldOrderLotsAddedNewestFirst() {
+		final List<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		for (int day = currentDay + 999; day >= currentDay; day--) {
+			fridgeItems.add(createLot("milk", 1, Unit.ml, day));
+			fridgeItems.add(createLot("milk", 2, Unit.ml, day));
+		}
+		final FridgeIndex incrementalIndex = new FridgeIndex(currentDay);
+		for (Ingredient fridgeItem : fridgeItems) {
+			incrementalIndex.add(fridgeItem);
+		}
+
+		final List<Ingredient> lots = new FridgeIndex(fridgeItems, currentDay).allocate("milk", 3000, Unit.ml);
+
+		assertEquals(2000, lots.size());
+		for (int i = 0; i < lots.size(); i++) {
+			assertEquals(currentDay + i / 2, lots.get(i).getUseByEpochDay());
+			assertEquals(1 + i % 2, lots.get(i).getAmount());
+		}
+		assertEquals(lots, incrementalIndex.allocate("milk", 3000, Unit.ml));
+	}
+
+	@Test
+	public void shouldKeepLotsWithUseByDateOfToday() throws ParseException {
+		final Ingredient lot = createIngredient("cheese", 2, Unit.slices, "01/04/2014");
+		final ArrayList<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		fridgeItems.add(lot);
+
+		final FridgeIndex fridgeIndex = new FridgeIndex(fridgeItems, currentDay);
+
+		assertSame(lot, fridgeIndex.findItemWithClosestUseByDate(createIngredient("cheese", 2, Unit.slices, null)));
+	}
+
+	@Test
+	public void shouldAllocateLotsThatExpireFirst() throws ParseException {
+		final Ingredient firstLot = createIngredient("bread", 1, Unit.slices, "10/04/2014");
+		final Ingredient secondLot = createIngredient("bread", 2, Unit.slices, "15/04/2014");
+		final Ingredient laterLot = createIngredient("bread", 10, Unit.slices, "21/04/2014");
+		final ArrayList<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		fridgeItems.add(laterLot);
+		fridgeItems.add(secondLot);
+		fridgeItems.add(firstLot);
+
+		final FridgeIndex fridgeIndex = new FridgeIndex(fridgeItems, currentDay);
+
+		final List<Ingredient> lots = fridgeIndex.allocate("bread", 3, Unit.slices);
+		assertEquals(2, lots.size());
+		assertSame(firstLot, lots.get(0));
+		assertSame(secondLot, lots.get(1));
+		assertEquals(1, fridgeIndex.allocate("bread", 1, Unit.slices).size());
+		assertEquals(3, fridgeIndex.allocate("bread", 13, Unit.slices).size());
+		assertNull(fridgeIndex.allocate("bread", 14, Unit.slices));
+		assertNull(fridgeIndex.allocate("cheese", 1, Unit.slices));
+	}
+
+	@Test
+	public void shouldAllocateLotsInUnitsWithSameBaseUnit() throws ParseException {
+		final Ingredient gramsLot = createIngredient("butter", 250, Unit.grams, "10/04/2014");
+		final Ingredient kilogramsLot = createIngredient("butter", 1, Unit.kilograms, "15/04/2014");
+		final ArrayList<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		fridgeItems.add(kilogramsLot);
+		fridgeItems.add(gramsLot);
+		fridgeItems.add(createIngredient("butter", 5, Unit.slices, "01/04/2014"));
+
+		final FridgeIndex fridgeIndex = new FridgeIndex(fridgeItems, currentDay);
+
+		assertEquals(2, fridgeIndex.allocate("butter", 1250, Unit.grams).size());
+		assertEquals(1, fridgeIndex.allocate("butter", 200, Unit.grams).size());
+		assertSame(kilogramsLot, fridgeIndex.findItemWithClosestUseByDate(createIngredient("butter", 500, Unit.grams, null)));
+		assertNull(fridgeIndex.allocate("butter", 1251, Unit.grams));
+		assertNull(fridgeIndex.allocate("butter", 1, Unit.ml));
+		assertEquals(1, fridgeIndex.allocate("butter", 5, Unit.slices).size());
+	}
+
+	@Test
+	public void shouldAllocateFromWhatAnAmountAlreadyTakenLeaves() throws ParseException {
+		final Ingredient firstLot = createIngredient("bread", 3, Unit.slices, "10/04/2014");
+		final Ingredient secondLot = createIngredient("bread", 5, Unit.slices, "15/04/2014");
+		final ArrayList<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		fridgeItems.add(secondLot);
+		fridgeItems.add(firstLot);
+
+		final FridgeIndex fridgeIndex = new FridgeIndex(fridgeItems, currentDay);
+
+		final List<Ingredient> lots = fridgeIndex.allocate("bread", 2, Unit.slices, 2);
+		assertEquals(2, lots.size());
+		assertSame(firstLot, lots.get(0));
+		assertSame(secondLot, lots.get(1));
+		// Once the first lot is used up, the next ingredient starts at the second
+		assertEquals(1, fridgeIndex.allocate("bread", 2, Unit.slices, 3).size());
+		assertSame(secondLot, fridgeIndex.allocate("bread", 2, Unit.slices, 3).get(0));
+		assertEquals(1, fridgeIndex.allocate("bread", 5, Unit.slices, 3).size());
+		assertNull(fridgeIndex.allocate("bread", 6, Unit.slices, 3));
+	}
+
+	@Test
+	public void shouldUpdateAllocationWhenLotsChange() throws ParseException {
+		final Ingredient firstLot = createIngredient("cheese", 2, Unit.slices, "10/04/2014");
+		final Ingredient secondLot = createIngredient("cheese", 2, Unit.slices, "15/04/2014");
+		final FridgeIndex fridgeIndex = new FridgeIndex(currentDay);
+		fridgeIndex.add(firstLot);
+		fridgeIndex.add(secondLot);
+		assertEquals(2, fridgeIndex.allocate("cheese", 4, Unit.slices).size());
+
+		fridgeIndex.setAmount(firstLot, 1);
+		assertEquals(1, firstLot.getAmount());
+		assertNull(fridgeIndex.allocate("cheese", 4, Unit.slices));
+		assertEquals(2, fridgeIndex.allocate("cheese", 3, Unit.slices).size());
+
+		fridgeIndex.remove(firstLot);
+		assertSame(secondLot, fridgeIndex.allocate("cheese", 2, Unit.slices).get(0));
+		assertNull(fridgeIndex.allocate("cheese", 3, Unit.slices));
+		assertEquals(1, fridgeIndex.getLotCount());
+	}
+
+	//-------- Helper methods --------
+
+	private Ingredient createIngredient(String item, int amount, Unit unit, String useByStr) throws ParseException {
+		final Ingredient ingredient = new Ingredient();
+		ingredient.setItem(item);
+		ingredient.setAmount(amount);
+		ingredient.setUnit(unit);
+		ingredient.setUseBy(useByStr);
+		return ingredient;
+	}
+
+}
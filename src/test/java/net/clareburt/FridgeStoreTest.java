@@ -0,0 +1,174 @@
+package net.clareburt;
+
+import net.clareburt.model.Ingredient;
+import net.clareburt.model.Recipe;
+import net.clareburt.model.Unit;
+import net.clareburt.util.DateUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static net.clareburt.TestFixtures.createLot;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class FridgeStoreTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final RecipeGenerator recipeGenerator = new RecipeGenerator();
+	private int today;
+
+	@Before
+	public void setup() {
+		DateUtil.setClock(Clock.fixed(LocalDate.of(2014, 2, 24).atStartOfDay(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault()));
+		today = DateUtil.getCurrentEpochDay();
+	}
+
+	@After
+	public void tearDown() {
+		DateUtil.resetClock();
+	}
+
+	@Test
+	public void shouldKeepHouseholdLotsTogetherInItemAndUseByOrder() {
+		final FridgeStore store = FridgeStore.allocate(10, 3, 10, 100);
+		store.addHousehold(7, Arrays.asList(
+				createLot("cheese", 2, Unit.slices, today + 4),
+				createLot("bread", 2, Unit.slices, today + 9),
+				createLot("cheese", 5, Unit.slices, today + 1)));
+		store.addHousehold(12, new ArrayList<Ingredient>());
+		store.addHousehold(20, Arrays.asList(createLot("butter", 1, Unit.kilograms, today)));
+
+		assertEquals(3, store.getHouseholdCount());
+		assertEquals(4, store.getLotCount());
+		assertEquals(FridgeStore.NOT_FOUND, store.findHousehold(8));
+		final int household = store.findHousehold(7);
+		assertEquals(0, store.getLotStart(household));
+		assertEquals(3, store.getLotEnd(household));
+		assertEquals(Arrays.asList(
+				createLot("cheese", 5, Unit.slices, today + 1),
+				createLot("cheese", 2, Unit.slices, today + 4),
+				createLot("bread", 2, Unit.slices, today + 9)), store.getIngredients(household));
+		assertEquals(7, store.getLotHouseholdId(1));
+		assertTrue(store.getIngredients(store.findHousehold(12)).isEmpty());
+		assertEquals(Unit.kilograms, store.getUnit(store.getLotStart(store.findHousehold(20))));
+	}
+
+	@Test
+	public void shouldRejectHouseholdsOutOfOrderOrBeyondCapacity() {
+		final FridgeStore store = FridgeStore.allocate(2, 2, 10, 100);
+		store.addHousehold(5, Arrays.asList(createLot("bread", 2, Unit.slices, today)));
+		try {
+			store.addHousehold(5, new ArrayList<Ingredient>());
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			store.addHousehold(6, Arrays.asList(createLot("bread", 2, Unit.slices, today), createLot("cheese", 2, Unit.slices, today)));
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertEquals(1, store.getHouseholdCount());
+	}
+
+	@Test
+	public void shouldReopenStoreFile() throws IOException {
+		final File file = temporaryFolder.newFile("fridges" + FridgeStore.FILE_EXTENSION);
+		final FridgeStore store = FridgeStore.create(file, 10, 4, 10, 100);
+		store.addHousehold(1, Arrays.asList(createLot("bread", 2, Unit.slices, today + 3)));
+
+		final FridgeStore reopenedStore = FridgeStore.open(file);
+		reopenedStore.addHousehold(2, Arrays.asList(createLot("bread", 4, Unit.slices, today + 1), createLot("cheese", 2, Unit.slices, today)));
+
+		assertEquals(2, reopenedStore.getHouseholdCount());
+		assertEquals(2, reopenedStore.getItemCount());
+		assertEquals(Arrays.asList(createLot("bread", 2, Unit.slices, today + 3)), reopenedStore.getIngredients(reopenedStore.findHousehold(1)));
+		assertEquals("cheese", reopenedStore.getItemName(reopenedStore.getItemId(reopenedStore.getLotStart(1) + 1)));
+	}
+
+	@Test
+	public void shouldReadHouseholdsAddedOnAnotherThread() throws InterruptedException {
+		final int householdCount = 2000;
+		final FridgeStore store = FridgeStore.allocate(householdCount, householdCount, 10, 100);
+		final Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				for (int household = 0; household < householdCount; household++) {
+					store.addHousehold(household, Arrays.asList(createLot("bread", household + 1, Unit.slices, today)));
+				}
+			}
+		});
+		writer.start();
+		int seen = 0;
+		while (seen < householdCount) {
+			final int count = store.getHouseholdCount();
+			// Every household counted must have its lots written
+			for (; seen < count; seen++) {
+				assertEquals(seen, store.getHouseholdId(seen));
+				assertEquals(seen + 1, store.getAmount(store.getLotStart(seen)));
+			}
+		}
+		writer.join();
+		assertEquals(householdCount, store.getLotCount());
+	}
+
+	@Test
+	public void storeShouldSuggestSameRecipesAsCatalog() {
+		final Random random = new Random(17);
+		final Unit[] units = {Unit.of, Unit.grams, Unit.kilograms};
+		final List<Recipe> recipes = new ArrayList<Recipe>();
+		for (int i = 0; i < 500; i++) {
+			final List<Ingredient> ingredients = new ArrayList<Ingredient>();
+			for (int j = 1 + random.nextInt(3); j > 0; j--) {
+				ingredients.add(createLot("item" + random.nextInt(60), 1 + random.nextInt(1500), units[random.nextInt(units.length)], 0));
+			}
+			final Recipe recipe = new Recipe();
+			recipe.setName("recipe" + i);
+			recipe.setIngredients(ingredients);
+			recipes.add(recipe);
+		}
+		final RecipeCatalog catalog = new RecipeCatalog(recipes);
+
+		final FridgeStore store = FridgeStore.allocate(100 * 40, 100, 100, 1000);
+		final List<List<Ingredient>> fridges = new ArrayList<List<Ingredient>>();
+		for (int household = 0; household < 100; household++) {
+			final List<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+			for (int i = random.nextInt(40); i > 0; i--) {
+				fridgeItems.add(createLot("item" + random.nextInt(70), 1 + random.nextInt(1000), units[random.nextInt(units.length)], today - 3 + random.nextInt(20)));
+			}
+			store.addHousehold(household * 3, fridgeItems);
+			fridges.add(fridgeItems);
+		}
+
+		int suggestionCount = 0;
+		for (int household = 0; household < 100; household++) {
+			final String expected = recipeGenerator.generateRecipeFromCatalog(fridges.get(household), catalog);
+			assertEquals(expected, recipeGenerator.generateRecipeFromStore(store, household * 3, catalog));
+			if (!RecipeGenerator.DEFAULT_RECIPE.equals(expected)) suggestionCount++;
+		}
+		assertTrue("Too few fridges can make a recipe: " + suggestionCount, suggestionCount > 20);
+		assertEquals(RecipeGenerator.DEFAULT_RECIPE, recipeGenerator.generateRecipeFromStore(store, 1, catalog));
+	}
+
+}
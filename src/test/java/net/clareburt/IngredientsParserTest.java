@@ -1,14 +1,20 @@
 package net.clareburt;
 
+import au.com.bytecode.opencsv.CSVReader;
 import net.clareburt.model.Ingredient;
 import net.clareburt.model.Unit;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -62,8 +68,52 @@ public class IngredientsParserTest {
 		assertTrue(ingredients.contains(createIngredient("crackers", 10, Unit.of, "14/04/2014")));
 	}
 
+	@Test
+	public void testReadIngredients_multipleItems() throws IOException, ParseException {
+		final List<Ingredient> ingredients = readIngredients("cheese,2,slices,25/12/2014\n\ncrackers,10,of,14/04/2014\n");
+
+		assertEquals(2, ingredients.size());
+		assertEquals(createIngredient("cheese", 2, Unit.slices, "25/12/2014"), ingredients.get(0));
+		assertEquals(createIngredient("crackers", 10, Unit.of, "14/04/2014"), ingredients.get(1));
+	}
+
+	@Test
+	public void shouldReportLineNumberOfInvalidRow() throws IOException {
+		try {
+			readIngredients("cheese,2,slices,25/12/2014\ncrackers,ten,of,14/04/2014\n");
+			fail("Expected ParseException due to invalid amount");
+		} catch (ParseException e) {
+			assertEquals(2, e.getErrorOffset());
+			assertTrue(e.getMessage().contains("line 2"));
+		}
+	}
+
+	@Test(expected = ParseException.class)
+	public void shouldThrowParseExceptionForMissingColumns() throws IOException, ParseException {
+		readIngredients("cheese,2,slices\n");
+		fail("Expected ParseException due to missing useBy column");
+	}
+
+	@Test(expected = ParseException.class)
+	public void shouldThrowParseExceptionForInvalidUnit() throws IOException, ParseException {
+		readIngredients("cheese,2,wedges,25/12/2014\n");
+		fail("Expected ParseException due to invalid unit");
+	}
+
 	//-------- Helper methods --------
 
+	private List<Ingredient> readIngredients(String csv) throws IOException, ParseException {
+		final List<Ingredient> ingredients = new ArrayList<Ingredient>();
+		ingredientsParser.readIngredients(new CSVReader(new StringReader(csv)), new Consumer<Ingredient>() {
+			@Override
+			public void accept(Ingredient ingredient) {
+				ingredients.add(ingredient);
+			}
+		});
+		return ingredients;
+	}
+
+
 	private Ingredient createIngredient(String item, int amount, Unit unit, String useByStr) throws ParseException {
 		final Ingredient expectedIngredient = new Ingredient();
 		expectedIngredient.setItem(item);
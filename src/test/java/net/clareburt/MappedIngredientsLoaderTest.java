@@ -0,0 +1,161 @@
+package net.clareburt;
+
+import au.com.bytecode.opencsv.CSVReader;
+import net.clareburt.model.Ingredient;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class MappedIngredientsLoaderTest {
+
+	private static final String[] ITEMS = {
+			"bread",
+			"\"peanut butter\"",
+			"\"salt, pepper\"",
+			"\"\"\"best\"\" butter\"",
+			"\"ham \\\"off the bone\\\"\"",
+			"\"back\\\\slash\"",
+			"dropped\\xescape",
+			"o\"brien\"s",
+			"\"mixed\nsalad\"",
+			"\"bean\r\nsprouts\"",
+			"\"cr\u00e8me fra\u00eeche\"",
+			"\"unfinished, ,\n\n,\"\" and more\"",
+	};
+	private static final String[] LINE_BREAKS = {"\n", "\r\n", "\r", "\n\n", "\n \n"};
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final IngredientsParser ingredientsParser = new IngredientsParser();
+
+	@Test
+	public void shouldLoadSameIngredientsAsCsvReader() throws IOException, ParseException {
+		final Random random = new Random(11);
+		final StringBuilder csv = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			if (i % 500 == 250) {
+				// A quoted field that goes on over several chunks
+				csv.append('"');
+				for (int j = 0; j < 200; j++) {
+					csv.append("long item ").append(j).append('\n');
+				}
+				csv.append('"');
+			} else {
+				csv.append(ITEMS[random.nextInt(ITEMS.length)]);
+			}
+			csv.append(',').append(1 + random.nextInt(500)).append(",slices,").append(1 + random.nextInt(28)).append("/02/2014");
+			csv.append(LINE_BREAKS[random.nextInt(LINE_BREAKS.length)]);
+		}
+		final File file = createFile(csv.toString());
+		final Collection<Ingredient> expected = readWithCsvReader(file);
+
+		assertEquals(2000, expected.size());
+		assertEquals(expected, loadAndClose(new MappedIngredientsLoader(ingredientsParser, 1), file));
+		assertEquals(expected, loadAndClose(new MappedIngredientsLoader(ingredientsParser, 4, 100), file));
+		assertEquals(expected, loadAndClose(new MappedIngredientsLoader(ingredientsParser, 64, 10), file));
+	}
+
+	@Test
+	public void shouldReportLineNumberOfFirstInvalidRow() throws IOException {
+		final StringBuilder csv = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			csv.append(i % 3 == 0 ? "\n" : "\"bread\nrolls\",2,of,25/12/2014\n");
+		}
+		csv.append("cheese,lots,slices,25/12/2014\n");
+		csv.append("bread,2,loaves,25/12/2014\n");
+		final File file = createFile(csv.toString());
+
+		String expectedMessage = null;
+		try {
+			readWithCsvReader(file);
+			fail("Expected ParseException");
+		} catch (ParseException e) {
+			assertEquals(1001, e.getErrorOffset());
+			expectedMessage = e.getMessage();
+		}
+		try {
+			loadAndClose(new MappedIngredientsLoader(ingredientsParser, 8, 50), file);
+			fail("Expected ParseException");
+		} catch (ParseException e) {
+			assertEquals(1001, e.getErrorOffset());
+			assertEquals(expectedMessage, e.getMessage());
+		}
+	}
+
+	@Test
+	public void shouldReadFileTooLargeToMapWithCsvReader() throws IOException, ParseException {
+		final File file = createFile("bread,10,slices,25/12/2014\n\"cr\u00e8me fra\u00eeche\",200,ml,25/12/2014\n");
+		final MappedIngredientsLoader ingredientsLoader = new MappedIngredientsLoader(ingredientsParser, 4, 1, file.length() - 1);
+
+		assertEquals(readWithCsvReader(file), ingredientsLoader.load(file, StandardCharsets.UTF_8));
+		assertEquals(2, loadAndClose(ingredientsLoader, file).size());
+	}
+
+	@Test
+	public void shouldLoadEmptyFile() throws IOException, ParseException {
+		final List<Ingredient> ingredients = loadAndClose(new MappedIngredientsLoader(ingredientsParser, 4, 1), createFile(""));
+
+		assertTrue(ingredients.isEmpty());
+	}
+
+	//-------- Helper methods --------
+
+	private List<Ingredient> loadAndClose(MappedIngredientsLoader ingredientsLoader, File file) throws IOException, ParseException {
+		try {
+			return ingredientsLoader.load(file, StandardCharsets.UTF_8);
+		} finally {
+			ingredientsLoader.close();
+		}
+	}
+
+	private File createFile(String csv) throws IOException {
+		final File file = temporaryFolder.newFile();
+		final OutputStream outputStream = new FileOutputStream(file);
+		try {
+			outputStream.write(csv.getBytes(StandardCharsets.UTF_8));
+		} finally {
+			outputStream.close();
+		}
+		return file;
+	}
+
+	private Collection<Ingredient> readWithCsvReader(File file) throws IOException, ParseException {
+		final List<Ingredient> ingredients = new ArrayList<Ingredient>();
+		final CSVReader csvReader = new CSVReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+		try {
+			ingredientsParser.readIngredients(csvReader, new Consumer<Ingredient>() {
+				@Override
+				public void accept(Ingredient ingredient) {
+					ingredients.add(ingredient);
+				}
+			});
+		} finally {
+			csvReader.close();
+		}
+		return ingredients;
+	}
+
+}
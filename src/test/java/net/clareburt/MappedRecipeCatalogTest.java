@@ -0,0 +1,115 @@
+package net.clareburt;
+
+import net.clareburt.model.Ingredient;
+import net.clareburt.model.Recipe;
+import net.clareburt.model.Unit;
+import net.clareburt.util.DateUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static net.clareburt.TestFixtures.createLot;
+import static net.clareburt.TestFixtures.createRecipe;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class MappedRecipeCatalogTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void shouldReadBackWrittenRecipes() throws IOException {
+		final Recipe emptyRecipe = new Recipe();
+		emptyRecipe.setName("nothing");
+		final Recipe noIngredients = createRecipe("water");
+		noIngredients.setName(null);
+		final MappedRecipeCatalog catalog = writeAndOpen(Arrays.asList(
+				createRecipe("toast", "bread"), emptyRecipe, null, createRecipe("cheese toasty", "bread", "cheese"), noIngredients));
+
+		assertEquals(3, catalog.size());
+		assertEquals("toast", catalog.getRecipeName(0));
+		assertEquals("cheese toasty", catalog.getRecipeName(1));
+		assertNull(catalog.getRecipeName(2));
+		assertEquals(2, catalog.getItemCount());
+		assertEquals(-1, catalog.getItemId("crackers"));
+		final int breadId = catalog.getItemId("bread");
+		assertEquals("bread", catalog.getItemName(breadId));
+		assertEquals(breadId, catalog.getIngredientItem(catalog.getIngredientStart(1)));
+		assertEquals("cheese", catalog.getItemName(catalog.getIngredientItem(catalog.getIngredientStart(1) + 1)));
+		assertEquals(2, catalog.getIngredientAmount(catalog.getIngredientStart(1)));
+		assertEquals(Unit.slices, catalog.getIngredientUnit(catalog.getIngredientStart(1)));
+		assertEquals(catalog.getIngredientStart(2), catalog.getIngredientEnd(2));
+	}
+
+	@Test
+	public void shouldFindItemsWithMultiByteNames() throws IOException {
+		final MappedRecipeCatalog catalog = writeAndOpen(Arrays.asList(
+				createRecipe("cr\u00e8me br\u00fbl\u00e9e", "cr\u00e8me", "sugar", "\u00e9pices", "eggs")));
+		for (String item : Arrays.asList("cr\u00e8me", "sugar", "\u00e9pices", "eggs")) {
+			assertEquals(item, catalog.getItemName(catalog.getItemId(item)));
+		}
+		assertEquals(-1, catalog.getItemId("creme"));
+		assertEquals("cr\u00e8me br\u00fbl\u00e9e", catalog.getRecipeName(0));
+	}
+
+	@Test
+	public void shouldSuggestSameRecipesAsRecipeCatalog() throws IOException {
+		final Random random = new Random(11);
+		final List<Recipe> recipes = new ArrayList<Recipe>();
+		for (int i = 0; i < 400; i++) {
+			final String[] items = new String[random.nextInt(4)];
+			for (int j = 0; j < items.length; j++) {
+				items[j] = "item" + random.nextInt(60);
+			}
+			recipes.add(createRecipe("recipe" + i, items));
+		}
+		final RecipeCatalog catalog = new RecipeCatalog(recipes);
+		final MappedRecipeCatalog mappedCatalog = writeAndOpen(recipes);
+		final RecipeGenerator recipeGenerator = new RecipeGenerator();
+		final int today = DateUtil.getCurrentEpochDay();
+
+		for (int run = 0; run < 50; run++) {
+			final List<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+			for (int i = 0; i < 30; i++) {
+				fridgeItems.add(createLot("item" + random.nextInt(70), 1 + random.nextInt(4), today - 2 + random.nextInt(10)));
+			}
+			final FridgeIndex fridgeIndex = new FridgeIndex(fridgeItems, today);
+			assertArrayEquals(catalog.findCandidateRecipes(fridgeIndex),
+					mappedCatalog.findCandidateRecipes(mappedCatalog.getFridgeItemIds(fridgeIndex)));
+			assertEquals(recipeGenerator.generateRecipeFromCatalog(fridgeItems, catalog),
+					recipeGenerator.generateRecipeFromMappedCatalog(fridgeItems, mappedCatalog));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void shouldRejectFileThatIsNotACatalog() throws IOException {
+		final File file = temporaryFolder.newFile("recipes" + MappedRecipeCatalog.FILE_EXTENSION);
+		final FileOutputStream outputStream = new FileOutputStream(file);
+		outputStream.write("[{\"name\": \"toast\"}]".getBytes("UTF-8"));
+		outputStream.close();
+		MappedRecipeCatalog.open(file);
+	}
+
+	//-------- Helper methods --------
+
+	private MappedRecipeCatalog writeAndOpen(List<Recipe> recipes) throws IOException {
+		final File file = temporaryFolder.newFile("recipes" + MappedRecipeCatalog.FILE_EXTENSION);
+		MappedRecipeCatalog.write(recipes, file);
+		return MappedRecipeCatalog.open(file);
+	}
+
+}
@@ -0,0 +1,143 @@
+package net.clareburt;
+
+import net.clareburt.model.Ingredient;
+import net.clareburt.model.MealPlan;
+import net.clareburt.model.Recipe;
+import net.clareburt.model.Unit;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class MealPlannerTest {
+
+	private static final int TODAY = 16000;
+
+	@Test
+	public void shouldFindBetterPlanThanGreedyChoice() {
+		final List<Ingredient> fridgeItems = createFridge();
+		final MealPlanner mealPlanner = new MealPlanner(createCatalog(), MealPlanner.DEFAULT_MAX_NODES, 10000);
+
+		final MealPlan mealPlan = mealPlanner.plan(fridgeItems, 2, TODAY);
+
+		// Fish toast scores most today, but leaves no bread for the cheese tomorrow
+		assertEquals(Arrays.asList("fish supper", "bread and cheese"), mealPlan.getRecipeNames());
+		assertEquals(2 * MealPlanner.URGENCY_SCALE, mealPlan.getScore());
+		assertTrue(mealPlan.isComplete());
+		assertSame(fridgeItems.get(0), mealPlan.getMeals().get(0).getIngredients().get(0));
+		assertEquals(1, fridgeItems.get(0).getAmount());
+		assertEquals(2, fridgeItems.get(1).getAmount());
+	}
+
+	@Test
+	public void shouldReturnBestPlanFoundWhenBudgetRunsOut() {
+		final MealPlanner mealPlanner = new MealPlanner(createCatalog(), 1, 10000);
+
+		final MealPlan mealPlan = mealPlanner.plan(createFridge(), 2, TODAY);
+
+		assertEquals(Collections.singletonList("fish toast"), mealPlan.getRecipeNames());
+		assertFalse(mealPlan.isComplete());
+	}
+
+	@Test
+	public void shouldFinishGreedyPlanWhenBudgetRunsOut() {
+		final List<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		fridgeItems.add(createLot("bread", 6, Unit.slices, TODAY + 5));
+		fridgeItems.add(createLot("cheese", 2, Unit.slices, TODAY + 1));
+		final RecipeCatalog catalog = new RecipeCatalog(Arrays.asList(
+				createRecipe("toast", createIngredient("bread", 2, Unit.slices)),
+				createRecipe("cheese toast", createIngredient("bread", 2, Unit.slices), createIngredient("cheese", 2, Unit.slices))));
+
+		// Out of nodes after the first meal, and out of time before the search starts
+		for (MealPlanner mealPlanner : Arrays.asList(new MealPlanner(catalog, 1, 10000), new MealPlanner(catalog, MealPlanner.DEFAULT_MAX_NODES, 0))) {
+			final MealPlan mealPlan = mealPlanner.plan(fridgeItems, 3, TODAY);
+
+			assertEquals(Arrays.asList("cheese toast", "toast", "toast"), mealPlan.getRecipeNames());
+			assertFalse(mealPlan.isComplete());
+		}
+	}
+
+	@Test
+	public void shouldUseUpAmountsAndSkipExpiredLots() {
+		final List<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		fridgeItems.add(createLot("bread", 3, Unit.slices, TODAY + 5));
+		fridgeItems.add(createLot("bread", 1, Unit.slices, TODAY + 1));
+		fridgeItems.add(createLot("fish", 1, Unit.of, TODAY + 2));
+		final RecipeCatalog catalog = new RecipeCatalog(Arrays.asList(
+				createRecipe("toast", createIngredient("bread", 2, Unit.slices)), createRecipe("fish supper", createIngredient("fish", 1, Unit.of))));
+
+		final MealPlan mealPlan = new MealPlanner(catalog).plan(fridgeItems, 4, TODAY);
+
+		// Four slices of bread only make two toasts, so the fourth meal cannot be planned
+		assertEquals(Arrays.asList("toast", "fish supper", "toast"), mealPlan.getRecipeNames());
+		assertTrue(mealPlan.isComplete());
+	}
+
+	@Test
+	public void shouldReturnEmptyPlanForEmptyFridge() {
+		final MealPlan mealPlan = new MealPlanner(createCatalog()).plan(new ArrayList<Ingredient>(), 3, TODAY);
+
+		assertTrue(mealPlan.getMeals().isEmpty());
+		assertEquals(0, mealPlan.getScore());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectNegativeMealCount() {
+		new MealPlanner(createCatalog()).plan(createFridge(), -1, TODAY);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectNegativeTimeBudget() {
+		new MealPlanner(createCatalog(), 100, -1);
+	}
+
+	//-------- Helper methods --------
+
+	private List<Ingredient> createFridge() {
+		final List<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		fridgeItems.add(createLot("fish", 1, Unit.of, TODAY));
+		fridgeItems.add(createLot("bread", 2, Unit.slices, TODAY + 1));
+		fridgeItems.add(createLot("cheese", 2, Unit.slices, TODAY + 1));
+		return fridgeItems;
+	}
+
+	private RecipeCatalog createCatalog() {
+		return new RecipeCatalog(Arrays.asList(
+				createRecipe("fish toast", createIngredient("fish", 1, Unit.of), createIngredient("bread", 2, Unit.slices)),
+				createRecipe("fish supper", createIngredient("fish", 1, Unit.of)),
+				createRecipe("bread and cheese", createIngredient("bread", 2, Unit.slices), createIngredient("cheese", 2, Unit.slices))));
+	}
+
+	private Recipe createRecipe(String name, Ingredient... ingredients) {
+		final Recipe recipe = new Recipe();
+		recipe.setName(name);
+		recipe.setIngredients(Arrays.asList(ingredients));
+		return recipe;
+	}
+
+	private Ingredient createIngredient(String item, int amount, Unit unit) {
+		final Ingredient ingredient = new Ingredient();
+		ingredient.setItem(item);
+		ingredient.setAmount(amount);
+		ingredient.setUnit(unit);
+		return ingredient;
+	}
+
+	private Ingredient createLot(String item, int amount, Unit unit, int useByEpochDay) {
+		final Ingredient ingredient = createIngredient(item, amount, unit);
+		ingredient.setUseByEpochDay(useByEpochDay);
+		return ingredient;
+	}
+
+}
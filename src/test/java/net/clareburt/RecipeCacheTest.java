@@ -0,0 +1,170 @@
+package net.clareburt;
+
+import net.clareburt.model.Ingredient;
+import net.clareburt.util.DateUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static net.clareburt.TestFixtures.createLot;
+import static net.clareburt.TestFixtures.createRecipe;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class RecipeCacheTest {
+
+	private static final long TTL_MILLIS = 60000;
+
+	private int today;
+	private Instant now;
+	private RecipeCache recipeCache;
+	private RecipeGenerator recipeGenerator;
+	private RecipeCatalog catalog;
+
+	@Before
+	public void setup() {
+		today = DateUtil.getCurrentEpochDay();
+		now = Instant.EPOCH;
+		recipeCache = new RecipeCache(2, TTL_MILLIS, new Clock() {
+			@Override
+			public ZoneOffset getZone() {
+				return ZoneOffset.UTC;
+			}
+
+			@Override
+			public Clock withZone(ZoneId zone) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public Instant instant() {
+				return now;
+			}
+		});
+		recipeGenerator = new RecipeGenerator();
+		catalog = new RecipeCatalog(Arrays.asList(
+				createRecipe("toast", "bread"),
+				createRecipe("cheese toasty", "bread", "cheese")));
+	}
+
+	@Test
+	public void shouldCountHitsForRepeatedFridge() {
+		final List<Ingredient> fridgeItems = Arrays.asList(createLot("bread", 4, today + 5), createLot("cheese", 2, today + 5));
+		assertEquals("cheese toasty", recipeCache.generateRecipe(recipeGenerator, fridgeItems, catalog));
+
+		// The same lots in a different order, eg. read by another device
+		final List<Ingredient> sameFridge = Arrays.asList(createLot("cheese", 2, today + 5), createLot("bread", 4, today + 5));
+		assertEquals("cheese toasty", recipeCache.generateRecipe(recipeGenerator, sameFridge, catalog));
+
+		assertEquals(1, recipeCache.getHitCount());
+		assertEquals(1, recipeCache.getMissCount());
+		assertEquals(1, recipeCache.size());
+	}
+
+	@Test
+	public void shouldMissWhenFridgeOrCatalogChanges() {
+		final List<Ingredient> fridgeItems = new ArrayList<Ingredient>(Arrays.asList(createLot("bread", 4, today + 5), createLot("cheese", 2, today + 5)));
+		assertEquals("cheese toasty", recipeCache.generateRecipe(recipeGenerator, fridgeItems, catalog));
+
+		fridgeItems.get(1).setAmount(1);
+		assertEquals("toast", recipeCache.generateRecipe(recipeGenerator, fridgeItems, catalog));
+
+		final RecipeCatalog newCatalog = new RecipeCatalog(Arrays.asList(createRecipe("bread and butter", "bread")));
+		assertTrue(catalog.getVersion() != newCatalog.getVersion());
+		assertEquals("bread and butter", recipeCache.generateRecipe(recipeGenerator, fridgeItems, newCatalog));
+
+		assertEquals(0, recipeCache.getHitCount());
+		assertEquals(3, recipeCache.getMissCount());
+	}
+
+	@Test
+	public void shouldEvictLeastRecentlyUsedEntry() {
+		final List<Ingredient> first = Arrays.asList(createLot("bread", 4, today + 5));
+		final List<Ingredient> second = Arrays.asList(createLot("bread", 6, today + 5));
+		final List<Ingredient> third = Arrays.asList(createLot("bread", 8, today + 5));
+		recipeCache.generateRecipe(recipeGenerator, first, catalog);
+		recipeCache.generateRecipe(recipeGenerator, second, catalog);
+		recipeCache.generateRecipe(recipeGenerator, first, catalog);
+		recipeCache.generateRecipe(recipeGenerator, third, catalog);
+		assertEquals(1, recipeCache.getEvictionCount());
+
+		// The second fridge was used least recently, so it was the one evicted
+		recipeCache.generateRecipe(recipeGenerator, first, catalog);
+		assertEquals(2, recipeCache.getHitCount());
+		recipeCache.generateRecipe(recipeGenerator, second, catalog);
+		assertEquals(2, recipeCache.getHitCount());
+		assertEquals(2, recipeCache.size());
+	}
+
+	@Test
+	public void shouldEvictEntriesOlderThanTimeToLive() {
+		final List<Ingredient> fridgeItems = Arrays.asList(createLot("bread", 4, today + 5));
+		recipeCache.generateRecipe(recipeGenerator, fridgeItems, catalog);
+
+		now = now.plus(Duration.ofMillis(TTL_MILLIS - 1));
+		recipeCache.generateRecipe(recipeGenerator, fridgeItems, catalog);
+		assertEquals(1, recipeCache.getHitCount());
+
+		now = now.plus(Duration.ofMillis(1));
+		recipeCache.generateRecipe(recipeGenerator, fridgeItems, catalog);
+		assertEquals(1, recipeCache.getHitCount());
+		assertEquals(2, recipeCache.getMissCount());
+		assertEquals(1, recipeCache.getEvictionCount());
+	}
+
+	@Test
+	public void shouldInvalidateMatchingEntries() {
+		final List<Ingredient> first = Arrays.asList(createLot("bread", 4, today + 5));
+		final List<Ingredient> second = Arrays.asList(createLot("bread", 6, today + 5));
+		recipeCache.generateRecipe(recipeGenerator, first, catalog);
+		recipeCache.generateRecipe(recipeGenerator, second, catalog);
+
+		recipeCache.invalidateFridge(first);
+		assertEquals(1, recipeCache.size());
+
+		recipeCache.invalidateCatalog(catalog);
+		assertEquals(0, recipeCache.size());
+	}
+
+	@Test
+	public void shouldNotShareEntriesBetweenFridgesWithCollidingHashes() {
+		final RecipeCatalog catalog = new RecipeCatalog(Arrays.asList(createRecipe("Aa toast", "Aa"), createRecipe("BB toast", "BB")));
+		// "Aa" and "BB" have the same String hash
+		assertEquals("Aa toast", recipeCache.generateRecipe(recipeGenerator, Arrays.asList(createLot("Aa", 2, today + 5)), catalog));
+		assertEquals("BB toast", recipeCache.generateRecipe(recipeGenerator, Arrays.asList(createLot("BB", 2, today + 5)), catalog));
+		// One slice less and 961 days later adds the same amount to a linear hash of the lot's fields
+		assertEquals("Aa toast", recipeCache.generateRecipe(recipeGenerator, Arrays.asList(createLot("Aa", 2, today)), catalog));
+		assertEquals(RecipeGenerator.DEFAULT_RECIPE, recipeCache.generateRecipe(recipeGenerator, Arrays.asList(createLot("Aa", 1, today + 961)), catalog));
+		assertEquals(0, recipeCache.getHitCount());
+	}
+
+	@Test
+	public void shouldHoldMaxSizeEntriesAcrossSegments() {
+		final RecipeCache largeCache = new RecipeCache(RecipeCache.MAX_SEGMENTS * RecipeCache.MIN_SEGMENT_SIZE, TTL_MILLIS);
+		final int fridgeCount = 2 * largeCache.getMaxSize();
+		for (int i = 0; i < fridgeCount; i++) {
+			largeCache.generateRecipe(recipeGenerator, Arrays.asList(createLot("bread", 2 + i, today + 5)), catalog);
+		}
+		assertEquals(largeCache.getMaxSize(), largeCache.size());
+		assertEquals(fridgeCount - largeCache.getMaxSize(), largeCache.getEvictionCount());
+
+		// The latest fridges were used most recently, so none of them were evicted
+		for (int i = fridgeCount - RecipeCache.MIN_SEGMENT_SIZE / 2; i < fridgeCount; i++) {
+			largeCache.generateRecipe(recipeGenerator, Arrays.asList(createLot("bread", 2 + i, today + 5)), catalog);
+		}
+		assertEquals(RecipeCache.MIN_SEGMENT_SIZE / 2, largeCache.getHitCount());
+	}
+
+}
@@ -0,0 +1,121 @@
+package net.clareburt;
+
+import net.clareburt.model.Ingredient;
+import net.clareburt.model.Recipe;
+import net.clareburt.model.Unit;
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static net.clareburt.TestFixtures.createRecipe;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class RecipeCatalogTest {
+
+	@Test
+	public void shouldSkipRecipesWithoutIngredients() {
+		final Recipe emptyRecipe = new Recipe();
+		emptyRecipe.setName("nothing");
+		final RecipeCatalog catalog = new RecipeCatalog(Arrays.asList(emptyRecipe, null, createRecipe("toast", Unit.of, "bread")));
+		assertEquals(1, catalog.size());
+		assertEquals("toast", catalog.getRecipeName(0));
+	}
+
+	@Test
+	public void shouldEncodeIngredientsWithSharedItemIds() {
+		final RecipeCatalog catalog = new RecipeCatalog(Arrays.asList(
+				createRecipe("toast", Unit.of, "bread"), createRecipe("cheese toasty", Unit.of, "bread", "cheese")));
+
+		assertEquals(2, catalog.getItemCount());
+		assertEquals(-1, catalog.getItemId("crackers"));
+		assertEquals(1, catalog.getIngredientEnd(1) - catalog.getIngredientStart(1) - 1);
+		final int breadId = catalog.getItemId("bread");
+		assertEquals(breadId, catalog.getIngredientItem(catalog.getIngredientStart(0)));
+		assertEquals(breadId, catalog.getIngredientItem(catalog.getIngredientStart(1)));
+		assertEquals("cheese", catalog.getItemName(catalog.getIngredientItem(catalog.getIngredientStart(1) + 1)));
+		assertEquals(2, catalog.getIngredientAmount(catalog.getIngredientStart(1)));
+	}
+
+	@Test
+	public void shouldRejectRecipesWithItemsNotInFridge() throws ParseException {
+		final List<Recipe> recipes = new ArrayList<Recipe>();
+		// Enough items to need several bit set words
+		for (int i = 0; i < 200; i++) {
+			recipes.add(createRecipe("recipe" + i, Unit.of, "item" + i, "item" + (i * 7 % 200)));
+		}
+		final RecipeCatalog catalog = new RecipeCatalog(recipes);
+
+		final FridgeIndex fridgeIndex = new FridgeIndex(0);
+		fridgeIndex.add(createLot("item3"));
+		fridgeIndex.add(createLot("item21"));
+		fridgeIndex.add(createLot("item150"));
+		fridgeIndex.add(createLot("not in any recipe"));
+		final long[] availableItems = catalog.getAvailableItems(fridgeIndex);
+
+		// Only recipe3 needs nothing but items in the fridge: item3 and item21
+		for (int i = 0; i < 200; i++) {
+			assertEquals("recipe" + i, i == 3, catalog.hasRequiredItems(i, availableItems));
+		}
+	}
+
+	@Test
+	public void candidateRecipesShouldMatchBitSetCheck() throws ParseException {
+		final Random random = new Random(3);
+		final List<Recipe> recipes = new ArrayList<Recipe>();
+		for (int i = 0; i < 300; i++) {
+			final String[] items = new String[random.nextInt(4)];
+			for (int j = 0; j < items.length; j++) {
+				// Small vocabulary so that some recipes list the same item twice
+				items[j] = "item" + random.nextInt(80);
+			}
+			recipes.add(createRecipe("recipe" + i, Unit.of, items));
+		}
+		final RecipeCatalog catalog = new RecipeCatalog(recipes);
+
+		for (int run = 0; run < 20; run++) {
+			final FridgeIndex fridgeIndex = new FridgeIndex(0);
+			for (int i = 0; i < 40; i++) {
+				fridgeIndex.add(createLot("item" + random.nextInt(90)));
+			}
+			final long[] availableItems = catalog.getAvailableItems(fridgeIndex);
+			final List<Integer> expected = new ArrayList<Integer>();
+			for (int r = 0; r < catalog.size(); r++) {
+				if (catalog.hasRequiredItems(r, availableItems)) {
+					expected.add(r);
+				}
+			}
+			final List<Integer> candidates = new ArrayList<Integer>();
+			for (int recipe : catalog.findCandidateRecipes(fridgeIndex)) {
+				candidates.add(recipe);
+			}
+			assertEquals(expected, candidates);
+		}
+	}
+
+	@Test
+	public void testCountPostings() throws ParseException {
+		final RecipeCatalog catalog = new RecipeCatalog(Arrays.asList(
+				createRecipe("toast", Unit.of, "bread"), createRecipe("cheese toasty", Unit.of, "bread", "cheese"), createRecipe("double toast", Unit.of, "bread", "bread")));
+		final FridgeIndex fridgeIndex = new FridgeIndex(0);
+		fridgeIndex.add(createLot("bread"));
+		fridgeIndex.add(createLot("crackers"));
+		assertEquals(3, catalog.countPostings(fridgeIndex));
+		assertArrayEquals(new int[]{0, 2}, catalog.findCandidateRecipes(fridgeIndex));
+	}
+
+	//-------- Helper methods --------
+
+	private Ingredient createLot(String item) throws ParseException {
+		return new Ingredient(item, "2", "of", "01/01/2014");
+	}
+
+}
@@ -1,10 +1,34 @@
 package net.clareburt;
 
 import net.clareburt.exception.ParsingException;
+import net.clareburt.metrics.MetricsSnapshot;
+import net.clareburt.metrics.RecipeMetrics;
+import net.clareburt.model.BatchResult;
+import net.clareburt.model.Ingredient;
+import net.clareburt.util.DateUtil;
+import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -13,13 +37,23 @@ import static org.junit.Assert.fail;
  */
 public class RecipeFinderTest {
 
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
 	private RecipeFinder recipeFinder;
 
 	@Before
 	public void setup() {
+		// The sample fridge dates are from 2014, so the tests run as of the day they were written
+		DateUtil.setClock(Clock.fixed(LocalDate.of(2014, 2, 24).atStartOfDay(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault()));
 		recipeFinder = RecipeFinder.getInstance();
 	}
 
+	@After
+	public void tearDown() {
+		DateUtil.resetClock();
+	}
+
 	@Test(expected = ParsingException.class)
 	public void shouldThrowParsingExceptionForInvalidCsvFilename() throws ParsingException {
 		try {
@@ -34,7 +68,7 @@ public class RecipeFinderTest {
 	@Test(expected = ParsingException.class)
 	public void shouldThrowParsingExceptionForInvalidJsonFilename() throws ParsingException {
 		try {
-			recipeFinder.generateRecipesFromFilenames("src\\test\\resources\\fridge.csv", "dummy.json");
+			recipeFinder.generateRecipesFromFilenames("src/test/resources/fridge.csv", "dummy.json");
 			fail("ParsingException expected due to invalid json filename");
 		} catch (ParsingException e) {
 			assertEquals("File not found: dummy.json", e.getMessage());
@@ -44,15 +78,109 @@ public class RecipeFinderTest {
 
 	@Test
 	public void shouldReturnValidResponseForValidFilenames() throws ParsingException {
-		final String suggestion = recipeFinder.generateRecipesFromFilenames("src\\test\\resources\\fridge.csv", "src\\test\\resources\\recipes.json");
+		final String suggestion = recipeFinder.generateRecipesFromFilenames("src/test/resources/fridge.csv", "src/test/resources/recipes.json");
 		assertEquals("salad sandwich", suggestion);
 	}
 
+	@Test
+	public void shouldRecordMetricsForEachPhase() throws ParsingException {
+		final MetricsSnapshot before = recipeFinder.getMetricsSnapshot();
+		recipeFinder.generateRecipesFromFilenames("src/test/resources/fridge.csv", "src/test/resources/recipes.json");
+		final MetricsSnapshot after = recipeFinder.getMetricsSnapshot();
+
+		for (RecipeMetrics.Phase phase : RecipeMetrics.Phase.values()) {
+			assertEquals(phase.toString(), before.getLatency(phase).getCount() + 1, after.getLatency(phase).getCount());
+		}
+		assertEquals(before.getRecipesConsidered() + 2, after.getRecipesConsidered());
+		assertEquals(before.getFridgeLots() + 5, after.getFridgeLots());
+	}
+
+	@Test
+	public void shouldReturnSameResponseFromCompiledCatalog() throws ParsingException {
+		final File catalogFile = new File(temporaryFolder.getRoot(), "recipes" + MappedRecipeCatalog.FILE_EXTENSION);
+		recipeFinder.compileCatalog("src/test/resources/recipes.json", catalogFile.getPath());
+		final String suggestion = recipeFinder.generateRecipesFromFilenames("src/test/resources/fridge.csv", catalogFile.getPath());
+		assertEquals("salad sandwich", suggestion);
+	}
+
+	@Test
+	public void asyncShouldReturnSameResponseAsSync() throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			assertEquals("salad sandwich", recipeFinder.generateRecipesAsync("src/test/resources/fridge.csv", "src/test/resources/recipes.json").get());
+			assertEquals("salad sandwich", recipeFinder.generateRecipesAsync("src/test/resources/fridge.csv", "src/test/resources/recipes.json", executor).get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void asyncShouldCompleteExceptionallyWithParsingException() throws InterruptedException {
+		try {
+			recipeFinder.generateRecipesAsync("src/test/resources/fridge.csv", "dummy.json").get();
+			fail("ParsingException expected due to invalid json filename");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof ParsingException);
+			assertEquals("File not found: dummy.json", e.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void asyncLoadShouldCompleteExceptionallyWithError() throws InterruptedException {
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final CompletableFuture<String> future = RecipeFinder.loadAsync(new RecipeFinder.Load<String>() {
+				@Override
+				public String load() {
+					throw new OutOfMemoryError("Java heap space");
+				}
+			}, executor);
+			future.get(10, TimeUnit.SECONDS);
+			fail("OutOfMemoryError expected from the load");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof OutOfMemoryError);
+		} catch (TimeoutException e) {
+			fail("The future was left incomplete");
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void batchShouldReturnSuggestionForEachFridgeFile() throws ParsingException {
+		final String single = recipeFinder.generateRecipesFromFilenames("src/test/resources/fridge.csv", "src/test/resources/recipes.json");
+		final BatchResult batchResult = recipeFinder.generateRecipesForFridgeFiles(
+				Arrays.asList("src/test/resources/fridge.csv", "src/test/resources/fridge.csv"), "src/test/resources/recipes.json");
+		assertEquals(Arrays.asList(single, single), batchResult.getSuggestions());
+		assertEquals(2, batchResult.getFridgeCount());
+	}
+
+	@Test
+	public void batchShouldReturnSuggestionForEachFridge() throws ParsingException {
+		final RecipeCatalog catalog = recipeFinder.loadCatalog("src/test/resources/recipes.json");
+		assertEquals(2, catalog.size());
+		final List<Collection<Ingredient>> fridges = new ArrayList<Collection<Ingredient>>();
+		fridges.add(new ArrayList<Ingredient>());
+		fridges.add(null);
+		final BatchResult batchResult = recipeFinder.generateRecipesForFridges(catalog, fridges);
+		assertEquals(Arrays.asList("Order Takeout", "Order Takeout"), batchResult.getSuggestions());
+	}
+
 	//-------- Test the static main method --------
 
 	@Test
 	public void testMain_runsWithoutError() {
-		RecipeFinder.main(new String[]{"src\\test\\resources\\fridge.csv", "src\\test\\resources\\recipes.json"});
+		RecipeFinder.main(new String[]{"src/test/resources/fridge.csv", "src/test/resources/recipes.json"});
+	}
+
+	@Test
+	public void testMain_printsUsageForMissingArguments() {
+		RecipeFinder.main(new String[0]);
+	}
+
+	@Test
+	public void testMain_printsUsageForInvalidPort() {
+		RecipeFinder.main(new String[]{"-serve", "eighty", "src/test/resources/recipes.json"});
 	}
 
 }
@@ -1,16 +1,31 @@
 package net.clareburt;
 
+import net.clareburt.metrics.MetricsSnapshot;
+import net.clareburt.metrics.RecipeMetrics;
 import net.clareburt.model.Ingredient;
 import net.clareburt.model.Recipe;
+import net.clareburt.model.RecipeMatch;
 import net.clareburt.model.Unit;
+import net.clareburt.util.DateUtil;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.text.ParseException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Justin Clareburt
@@ -22,9 +37,16 @@ public class RecipeGeneratorTest {
 
 	@Before
 	public void setup() {
+		// The sample fridge dates are from 2014, so the tests run as of the day they were written
+		DateUtil.setClock(Clock.fixed(LocalDate.of(2014, 2, 24).atStartOfDay(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault()));
 		recipeGenerator = new RecipeGenerator();
 	}
 
+	@After
+	public void tearDown() {
+		DateUtil.resetClock();
+	}
+
 	@Test
 	public void shouldReturnDefaultSuggestionForNullInputs() {
 		final String result = recipeGenerator.generateRecipe(null, null);
@@ -111,6 +133,41 @@ public class RecipeGeneratorTest {
 		assertEquals("cheese toasty", result);
 	}
 
+	@Test
+	public void shouldCombineLotsToMeetAmount() throws ParseException {
+		final ArrayList<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		fridgeItems.add(createIngredientWithDate("bread", 1, Unit.slices, "21/04/2014"));
+		fridgeItems.add(createIngredientWithDate("cheese", 2, Unit.slices, "25/04/2014"));
+		fridgeItems.add(createIngredientWithDate("crackers", 10, Unit.of, "17/04/2014"));
+		fridgeItems.add(createIngredientWithDate("bread", 1, Unit.slices, "15/04/2014"));
+
+		final ArrayList<Recipe> recipes = new ArrayList<Recipe>();
+		recipes.add(createCheeseAndCrackersRecipe("cheese and crackers"));
+		recipes.add(createCheeseToastyRecipe("cheese toasty"));
+
+		assertEquals("cheese toasty", recipeGenerator.generateRecipe(fridgeItems, recipes));
+		assertEquals("cheese toasty", recipeGenerator.generateRecipeFromCatalog(fridgeItems, new RecipeCatalog(recipes)));
+	}
+
+	@Test
+	public void shouldConvertFridgeAmountsToRecipeUnits() throws ParseException {
+		final ArrayList<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		fridgeItems.add(createIngredientWithDate("bread", 2, Unit.slices, "21/04/2014"));
+		fridgeItems.add(createIngredientWithDate("butter", 1, Unit.kilograms, "25/04/2014"));
+		fridgeItems.add(createIngredientWithDate("mixed salad", 100, Unit.ml, "15/04/2014"));
+
+		final Recipe toast = createNewRecipe("buttered toast");
+		toast.setIngredients(Arrays.asList(createBreadIngredient(), createButterIngredient()));
+		final Recipe salad = createNewRecipe("salad");
+		salad.setIngredients(Arrays.asList(createSaladIngredient()));
+		final ArrayList<Recipe> recipes = new ArrayList<Recipe>();
+		recipes.add(salad);
+		recipes.add(toast);
+
+		assertEquals("buttered toast", recipeGenerator.generateRecipe(fridgeItems, recipes));
+		assertEquals("buttered toast", recipeGenerator.generateRecipeFromCatalog(fridgeItems, new RecipeCatalog(recipes)));
+	}
+
 	@Test
 	public void shouldCompareDatesOfAllIngredients() throws ParseException {
 		final ArrayList<Ingredient> fridgeItems = new ArrayList<Ingredient>();
@@ -145,6 +202,276 @@ public class RecipeGeneratorTest {
 		assertEquals("cheese toasty", result);
 	}
 
+	@Test
+	public void parallelGeneratorShouldMatchSequentialGenerator() {
+		final int today = DateUtil.getCurrentEpochDay();
+		final Random random = new Random(42);
+		final ArrayList<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		for (int i = 0; i < 200; i++) {
+			fridgeItems.add(createIngredientWithEpochDay("item" + random.nextInt(50), 1 + random.nextInt(10), today - 5 + random.nextInt(60)));
+		}
+		final ArrayList<Recipe> recipes = new ArrayList<Recipe>();
+		for (int i = 0; i < 20000; i++) {
+			final Recipe recipe = createNewRecipe("recipe" + i);
+			final ArrayList<Ingredient> ingredients = new ArrayList<Ingredient>();
+			for (int j = 1 + random.nextInt(4); j > 0; j--) {
+				ingredients.add(createIngredient("item" + random.nextInt(50), 1 + random.nextInt(10), Unit.of));
+			}
+			recipe.setIngredients(ingredients);
+			recipes.add(recipe);
+		}
+
+		final String expected = recipeGenerator.generateRecipe(fridgeItems, recipes);
+		final RecipeGenerator parallelGenerator = new RecipeGenerator(4);
+		try {
+			for (int i = 0; i < 5; i++) {
+				assertEquals(expected, parallelGenerator.generateRecipe(fridgeItems, recipes));
+			}
+			assertEquals(expected, parallelGenerator.generateRecipeFromCatalog(fridgeItems, new RecipeCatalog(recipes)));
+		} finally {
+			parallelGenerator.close();
+		}
+	}
+
+	@Test
+	public void catalogShouldSuggestSameRecipesAsCollection() {
+		final int today = DateUtil.getCurrentEpochDay();
+		final Random random = new Random(11);
+		for (int run = 0; run < 20; run++) {
+			final ArrayList<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+			for (int i = 0; i < 30; i++) {
+				fridgeItems.add(createIngredientWithEpochDay("item" + random.nextInt(100), 1 + random.nextInt(10), today - 2 + random.nextInt(10)));
+			}
+			final ArrayList<Recipe> recipes = new ArrayList<Recipe>();
+			for (int i = 0; i < 500; i++) {
+				final Recipe recipe = createNewRecipe("recipe" + i);
+				final ArrayList<Ingredient> ingredients = new ArrayList<Ingredient>();
+				for (int j = 1 + random.nextInt(3); j > 0; j--) {
+					ingredients.add(createIngredient("item" + random.nextInt(100), 1 + random.nextInt(10), Unit.of));
+				}
+				recipe.setIngredients(ingredients);
+				recipes.add(recipe);
+			}
+			final RecipeCatalog catalog = new RecipeCatalog(recipes);
+
+			assertEquals(recipeGenerator.generateRecipe(fridgeItems, recipes), recipeGenerator.generateRecipeFromCatalog(fridgeItems, catalog));
+			assertEquals(names(recipeGenerator.generateRecipes(fridgeItems, recipes, 5)), names(recipeGenerator.generateRecipesFromCatalog(fridgeItems, catalog, 5)));
+		}
+	}
+
+	@Test
+	public void boundedCatalogSearchShouldSuggestSameRecipeAsFullScan() {
+		final int today = DateUtil.getCurrentEpochDay();
+		final Random random = new Random(23);
+		final Unit[] units = {Unit.of, Unit.grams, Unit.kilograms};
+		for (int run = 0; run < 50; run++) {
+			final ArrayList<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+			for (int i = 0; i < 40; i++) {
+				// Few dates, so that many recipes tie on their bounds and signatures
+				final Ingredient lot = createIngredientWithEpochDay("item" + random.nextInt(30), 1 + random.nextInt(2000), today - 1 + random.nextInt(4));
+				lot.setUnit(units[random.nextInt(units.length)]);
+				fridgeItems.add(lot);
+			}
+			final ArrayList<Recipe> recipes = new ArrayList<Recipe>();
+			for (int i = 0; i < 300; i++) {
+				final Recipe recipe = createNewRecipe("recipe" + i);
+				final ArrayList<Ingredient> ingredients = new ArrayList<Ingredient>();
+				for (int j = random.nextInt(4); j > 0; j--) {
+					ingredients.add(createIngredient("item" + random.nextInt(30), 1 + random.nextInt(1500), units[random.nextInt(units.length)]));
+				}
+				recipe.setIngredients(ingredients);
+				recipes.add(recipe);
+			}
+
+			assertEquals(recipeGenerator.generateRecipe(fridgeItems, recipes), recipeGenerator.generateRecipeFromCatalog(fridgeItems, new RecipeCatalog(recipes)));
+		}
+	}
+
+	@Test
+	public void boundedCatalogSearchShouldStopOnceNoRecipeCanBeatBest() {
+		final int today = DateUtil.getCurrentEpochDay();
+		final ArrayList<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		fridgeItems.add(createIngredientWithEpochDay("bread", 10, Unit.slices, today + 1));
+		fridgeItems.add(createIngredientWithEpochDay("cheese", 100, Unit.slices, today + 10));
+		final ArrayList<Recipe> recipes = new ArrayList<Recipe>();
+		for (int i = 0; i < 100; i++) {
+			recipes.add(createNewRecipe("cheese" + i));
+			recipes.get(i).setIngredients(Arrays.asList(createCheeseIngredient()));
+		}
+		recipes.add(createToastRecipe("toast"));
+		final RecipeCatalog catalog = new RecipeCatalog(recipes);
+
+		final MetricsSnapshot before = RecipeMetrics.getInstance().getSnapshot();
+		assertEquals("toast", recipeGenerator.generateRecipeFromCatalog(fridgeItems, catalog));
+		final MetricsSnapshot after = RecipeMetrics.getInstance().getSnapshot();
+
+		// Only the toast was matched: no cheese recipe can start its signature before the bread
+		final long feasibleBefore = before.getRecipesConsidered() - before.getRecipesRejected();
+		assertEquals(1, after.getRecipesConsidered() - after.getRecipesRejected() - feasibleBefore);
+		// The cheese recipes were skipped, so they are not counted as rejected
+		assertEquals(1, after.getRecipesConsidered() - before.getRecipesConsidered());
+	}
+
+	@Test
+	public void parallelGeneratorShouldFavourFirstRecipeForTies() {
+		final ArrayList<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		fridgeItems.add(createIngredientWithEpochDay("bread", 10, Unit.slices, DateUtil.getCurrentEpochDay() + 1));
+		final ArrayList<Recipe> recipes = new ArrayList<Recipe>();
+		for (int i = 0; i < 10000; i++) {
+			recipes.add(createToastRecipe("toast" + i));
+		}
+
+		final RecipeGenerator parallelGenerator = new RecipeGenerator(4);
+		try {
+			assertEquals("toast0", parallelGenerator.generateRecipe(fridgeItems, recipes));
+		} finally {
+			parallelGenerator.close();
+		}
+	}
+
+	@Test
+	public void closedGeneratorShouldStillCheckSmallCatalogs() {
+		final ArrayList<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		fridgeItems.add(createIngredientWithEpochDay("bread", 10, Unit.slices, DateUtil.getCurrentEpochDay() + 1));
+		final ArrayList<Recipe> recipes = new ArrayList<Recipe>();
+		for (int i = 0; i < 10000; i++) {
+			recipes.add(createToastRecipe("toast" + i));
+		}
+		final RecipeGenerator parallelGenerator = new RecipeGenerator(4);
+		parallelGenerator.close();
+
+		assertEquals("toast0", parallelGenerator.generateRecipe(fridgeItems, recipes.subList(0, 10)));
+		try {
+			parallelGenerator.generateRecipe(fridgeItems, recipes);
+			fail("Expected RejectedExecutionException");
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void parallelCatalogSearchShouldStopOnceNoRecipeCanBeatBest() {
+		final int today = DateUtil.getCurrentEpochDay();
+		final ArrayList<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		fridgeItems.add(createIngredientWithEpochDay("bread", 10, Unit.slices, today + 1));
+		fridgeItems.add(createIngredientWithEpochDay("cheese", 100, Unit.slices, today + 10));
+		final ArrayList<Recipe> recipes = new ArrayList<Recipe>();
+		for (int i = 0; i < 20000; i++) {
+			recipes.add(createNewRecipe("cheese" + i));
+			recipes.get(i).setIngredients(Arrays.asList(createCheeseIngredient()));
+		}
+		recipes.add(createToastRecipe("toast"));
+		for (int i = 0; i < 10000; i++) {
+			recipes.add(createToastRecipe("toast" + i));
+		}
+		final RecipeCatalog catalog = new RecipeCatalog(recipes);
+
+		final RecipeGenerator parallelGenerator = new RecipeGenerator(4);
+		final MetricsSnapshot before = RecipeMetrics.getInstance().getSnapshot();
+		try {
+			assertEquals("toast", parallelGenerator.generateRecipeFromCatalog(fridgeItems, catalog));
+		} finally {
+			parallelGenerator.close();
+		}
+		final MetricsSnapshot after = RecipeMetrics.getInstance().getSnapshot();
+
+		// The toasts come first in bound order, and the blocks of cheese recipes after them are not visited
+		final long feasibleBefore = before.getRecipesConsidered() - before.getRecipesRejected();
+		assertTrue(after.getRecipesConsidered() - after.getRecipesRejected() - feasibleBefore < 20000);
+	}
+
+	@Test
+	public void shouldReturnBestRecipesInRankOrder() {
+		final int today = DateUtil.getCurrentEpochDay();
+		final ArrayList<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		fridgeItems.add(createIngredientWithEpochDay("bread", 10, Unit.slices, today + 5));
+		fridgeItems.add(createIngredientWithEpochDay("cheese", 10, Unit.slices, today + 7));
+		fridgeItems.add(createIngredientWithEpochDay("crackers", 10, today + 3));
+
+		final ArrayList<Recipe> recipes = new ArrayList<Recipe>();
+		recipes.add(createToastRecipe("toast"));
+		recipes.add(createCheeseToastyRecipe("cheese toasty"));
+		recipes.add(createCheeseAndCrackersRecipe("cheese and crackers"));
+		recipes.add(createSalasSandwichRecipe("salad sandwich"));
+
+		final List<RecipeMatch> bestRecipes = recipeGenerator.generateRecipes(fridgeItems, recipes, 2);
+		assertEquals(2, bestRecipes.size());
+		assertEquals("cheese and crackers", bestRecipes.get(0).getName());
+		assertEquals("cheese toasty", bestRecipes.get(1).getName());
+		assertArrayEquals(new int[]{today + 5, today + 7}, bestRecipes.get(1).getExpirySignature());
+		assertEquals(Arrays.asList(fridgeItems.get(0), fridgeItems.get(1)), bestRecipes.get(1).getIngredients());
+
+		final List<RecipeMatch> allRecipes = recipeGenerator.generateRecipes(fridgeItems, recipes, 10);
+		assertEquals(3, allRecipes.size());
+		assertEquals("toast", allRecipes.get(2).getName());
+	}
+
+	@Test
+	public void ingredientsOfSameItemShouldShareTheFridgeLots() {
+		final int today = DateUtil.getCurrentEpochDay();
+		final ArrayList<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		fridgeItems.add(createIngredientWithEpochDay("bread", 3, Unit.slices, today + 1));
+		fridgeItems.add(createIngredientWithEpochDay("cheese", 2, Unit.slices, today + 2));
+		final Recipe doubleToast = createNewRecipe("double toast");
+		doubleToast.setIngredients(Arrays.asList(createBreadIngredient(), createBreadIngredient()));
+		final ArrayList<Recipe> recipes = new ArrayList<Recipe>(Arrays.asList(doubleToast, createCheeseToastyRecipe("cheese toasty")));
+
+		// Each slice of toast needs 2 of the 3 slices of bread, so the fridge cannot make both
+		assertEquals("cheese toasty", recipeGenerator.generateRecipe(fridgeItems, recipes));
+		assertEquals("cheese toasty", recipeGenerator.generateRecipeFromCatalog(fridgeItems, new RecipeCatalog(recipes)));
+
+		fridgeItems.add(createIngredientWithEpochDay("bread", 5, Unit.slices, today + 4));
+		final List<RecipeMatch> bestRecipes = recipeGenerator.generateRecipes(fridgeItems, recipes, 1);
+		assertEquals("double toast", bestRecipes.get(0).getName());
+		assertArrayEquals(new int[]{today + 1, today + 1}, bestRecipes.get(0).getExpirySignature());
+		// The second slice of toast takes the last slice of the first lot and one from the second
+		assertEquals(Arrays.asList(Arrays.asList(fridgeItems.get(0)), Arrays.asList(fridgeItems.get(0), fridgeItems.get(2))),
+				bestRecipes.get(0).getAllocation());
+		assertEquals(bestRecipes.get(0).getAllocation(), recipeGenerator.generateRecipesFromCatalog(fridgeItems, new RecipeCatalog(recipes), 1).get(0).getAllocation());
+	}
+
+	@Test
+	public void bestRecipesShouldMatchRepeatedlyRemovingTheSuggestion() {
+		final int today = DateUtil.getCurrentEpochDay();
+		final Random random = new Random(7);
+		final ArrayList<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		for (int i = 0; i < 40; i++) {
+			fridgeItems.add(createIngredientWithEpochDay("item" + random.nextInt(10), 1 + random.nextInt(10), today + random.nextInt(5)));
+		}
+		final ArrayList<Recipe> recipes = new ArrayList<Recipe>();
+		for (int i = 0; i < 200; i++) {
+			final Recipe recipe = createNewRecipe("recipe" + i);
+			final ArrayList<Ingredient> ingredients = new ArrayList<Ingredient>();
+			for (int j = 1 + random.nextInt(3); j > 0; j--) {
+				ingredients.add(createIngredient("item" + random.nextInt(10), 1 + random.nextInt(10), Unit.of));
+			}
+			recipe.setIngredients(ingredients);
+			recipes.add(recipe);
+		}
+
+		final List<RecipeMatch> bestRecipes = recipeGenerator.generateRecipes(fridgeItems, recipes, 10);
+		for (RecipeMatch bestRecipe : bestRecipes) {
+			final String suggestion = recipeGenerator.generateRecipe(fridgeItems, recipes);
+			assertEquals(suggestion, bestRecipe.getName());
+			for (Iterator<Recipe> iterator = recipes.iterator(); iterator.hasNext(); ) {
+				if (iterator.next().getName().equals(suggestion)) {
+					iterator.remove();
+					break;
+				}
+			}
+		}
+	}
+
+	@Test
+	public void shouldReturnNoBestRecipesForNullInputs() {
+		assertTrue(recipeGenerator.generateRecipes(null, null, 3).isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectInvalidParallelism() {
+		new RecipeGenerator(0);
+	}
+
 	//-------- Helper methods --------
 
 	private ArrayList<Ingredient> createIngredients() {
@@ -234,6 +561,24 @@ public class RecipeGeneratorTest {
 		return ingredient;
 	}
 
+	private List<String> names(List<RecipeMatch> matches) {
+		final List<String> names = new ArrayList<String>();
+		for (RecipeMatch match : matches) {
+			names.add(match.getName());
+		}
+		return names;
+	}
+
+	private Ingredient createIngredientWithEpochDay(String item, int amount, int useByEpochDay) {
+		return createIngredientWithEpochDay(item, amount, Unit.of, useByEpochDay);
+	}
+
+	private Ingredient createIngredientWithEpochDay(String item, int amount, Unit unit, int useByEpochDay) {
+		final Ingredient ingredient = createIngredient(item, amount, unit);
+		ingredient.setUseByEpochDay(useByEpochDay);
+		return ingredient;
+	}
+
 	private Ingredient createIngredientWithDate(String item, int amount, Unit unit, String useByStr) throws ParseException {
 		final Ingredient ingredient = createIngredient(item, amount, unit);
 		ingredient.setUseBy(useByStr);
@@ -1,15 +1,21 @@
 package net.clareburt;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
 import net.clareburt.model.Ingredient;
 import net.clareburt.model.Recipe;
 import net.clareburt.model.Unit;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.junit.Assert.*;
 
@@ -89,8 +95,106 @@ public class RecipeParserTest {
 		assertTrue(recipes.contains(generateRecipe("salad sandwich", Arrays.asList(generateIngredient("bread", 2, Unit.slices), generateIngredient("mixed salad", 100, Unit.grams)))));
 	}
 
+	@Test
+	public void emptyStreamShouldReadNoRecipes() throws IOException {
+		final List<Recipe> recipes = readRecipes("");
+		assertTrue(recipes.isEmpty());
+	}
+
+	@Test(expected=JsonSyntaxException.class)
+	public void invalidStreamShouldThrowJsonSyntaxException() throws IOException {
+		readRecipes("invalid data");
+		fail("JsonSyntaxException expected");
+	}
+
+	@Test
+	public void testReadRecipes_multipleItems() throws IOException {
+		final String testItems = "[" +
+				"    {" +
+				"        \"name\": \"grilled cheese on toast\"," +
+				"        \"ingredients\": [" +
+				"            { \"item\":\"bread\", \"amount\":\"2\", \"unit\":\"slices\"}," +
+				"            { \"item\":\"cheese\", \"amount\":\"2\", \"unit\":\"slices\"}" +
+				"        ]" +
+				"    }" +
+				"    ," +
+				"    {" +
+				"        \"name\": \"salad sandwich\"," +
+				"        \"ingredients\": [" +
+				"            { \"item\":\"bread\", \"amount\":\"2\", \"unit\":\"slices\"}," +
+				"            { \"item\":\"mixed salad\", \"amount\":\"100\", \"unit\":\"grams\"}" +
+				"        ]" +
+				"    }" +
+				"]";
+		final List<Recipe> recipes = readRecipes(testItems);
+		assertEquals(2, recipes.size());
+		assertEquals(generateRecipe("grilled cheese on toast", Arrays.asList(generateIngredient("bread", 2, Unit.slices), generateIngredient("cheese", 2, Unit.slices))), recipes.get(0));
+		assertEquals(generateRecipe("salad sandwich", Arrays.asList(generateIngredient("bread", 2, Unit.slices), generateIngredient("mixed salad", 100, Unit.grams))), recipes.get(1));
+	}
+
+	@Test
+	public void shouldReadSameRecipesAsReflectiveGson() {
+		final String testItems = "[" +
+				"    {" +
+				"        \"name\": \"toast\"," +
+				"        \"rating\": {\"stars\": [4, 5]}," +
+				"        \"ingredients\": [" +
+				"            { \"item\":\"bread\", \"amount\":\"2\", \"unit\":\"slices\"}," +
+				"            { \"item\":\"butter\", \"amount\":10, \"unit\":\"grams\", \"useBy\":16000}," +
+				"            { \"item\":\"jam\", \"amount\":null, \"unit\":\"spoons\"}," +
+				"            null" +
+				"        ]" +
+				"    }," +
+				"    { \"name\": null, \"ingredients\": null }," +
+				"    { \"name\": 42 }," +
+				"    null" +
+				"]";
+		final Collection<Recipe> expected = new Gson().fromJson(testItems, new TypeToken<Collection<Recipe>>() {}.getType());
+
+		final Collection<Recipe> recipes = recipeParser.getRecipesFromJson(testItems);
+
+		assertEquals(expected, recipes);
+		final Ingredient butter = recipes.iterator().next().getIngredients().toArray(new Ingredient[0])[1];
+		assertEquals(10, butter.getAmount());
+		assertEquals(16000, butter.getUseByEpochDay());
+	}
+
+	@Test(expected=JsonSyntaxException.class)
+	public void invalidAmountShouldThrowJsonSyntaxException() throws IOException {
+		readRecipes("[{\"name\": \"toast\", \"ingredients\": [{\"item\":\"bread\", \"amount\":\"two\", \"unit\":\"slices\"}]}]");
+		fail("JsonSyntaxException expected");
+	}
+
+	@Test
+	public void consumerExceptionShouldReachCaller() throws IOException {
+		final IllegalStateException failure = new IllegalStateException("catalog is full");
+		try {
+			recipeParser.readRecipes(new ByteArrayInputStream("[{\"name\": \"toast\", \"ingredients\": []}]".getBytes("UTF-8")), new Consumer<Recipe>() {
+				@Override
+				public void accept(Recipe recipe) {
+					throw failure;
+				}
+			});
+			fail("IllegalStateException expected");
+		} catch (IllegalStateException e) {
+			assertSame(failure, e);
+		}
+	}
+
 	//------- Test helper methods --------
 
+	private List<Recipe> readRecipes(String json) throws IOException {
+		final List<Recipe> recipes = new ArrayList<Recipe>();
+		recipeParser.readRecipes(new ByteArrayInputStream(json.getBytes("UTF-8")), new Consumer<Recipe>() {
+			@Override
+			public void accept(Recipe recipe) {
+				recipes.add(recipe);
+			}
+		});
+		return recipes;
+	}
+
+
 	private Recipe generateRecipe(String recipeName, List<Ingredient> ingredients) {
 		final Recipe recipe2 = new Recipe();
 		recipe2.setName(recipeName);
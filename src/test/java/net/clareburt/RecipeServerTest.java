@@ -0,0 +1,113 @@
+package net.clareburt;
+
+import net.clareburt.util.DateUtil;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class RecipeServerTest {
+
+	private static final String FRIDGE_CSV = "bread,10,slices,25/12/2014\nmixed salad,150,grams,26/03/2014\n";
+
+	private RecipeServer recipeServer;
+
+	@Before
+	public void setup() throws Exception {
+		// The sample fridge dates are from 2014, so the tests run as of the day they were written
+		DateUtil.setClock(Clock.fixed(LocalDate.of(2014, 2, 24).atStartOfDay(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault()));
+		final RecipeFinder recipeFinder = RecipeFinder.getInstance();
+		recipeServer = new RecipeServer(recipeFinder, recipeFinder.loadCatalog("src/test/resources/recipes.json"), 0);
+		recipeServer.start();
+	}
+
+	@After
+	public void tearDown() {
+		recipeServer.stop(0);
+		DateUtil.resetClock();
+	}
+
+	@Test
+	public void shouldSuggestRecipeForPostedFridge() throws IOException {
+		assertEquals("salad sandwich\n", post(FRIDGE_CSV, 200));
+	}
+
+	@Test
+	public void shouldRejectInvalidFridge() throws IOException {
+		assertTrue(post("bread,ten,slices,25/12/2014\n", 400).startsWith("Error parsing fridge items: Invalid fridge item on line 1"));
+	}
+
+	@Test
+	public void shouldRejectGet() throws IOException {
+		final HttpURLConnection connection = (HttpURLConnection) getRecipeUrl().openConnection();
+		assertEquals(405, connection.getResponseCode());
+		connection.disconnect();
+	}
+
+	@Test
+	public void shouldHandleConcurrentRequests() throws Exception {
+		final ExecutorService clients = Executors.newFixedThreadPool(16);
+		try {
+			final List<Future<String>> responses = new ArrayList<Future<String>>();
+			for (int i = 0; i < 200; i++) {
+				responses.add(clients.submit(new Callable<String>() {
+					@Override
+					public String call() throws IOException {
+						return post(FRIDGE_CSV, 200);
+					}
+				}));
+			}
+			for (Future<String> response : responses) {
+				assertEquals("salad sandwich\n", response.get());
+			}
+		} finally {
+			clients.shutdown();
+		}
+	}
+
+	//-------- Helper methods --------
+
+	private URL getRecipeUrl() throws IOException {
+		return new URL("http://localhost:" + recipeServer.getPort() + RecipeServer.RECIPE_PATH);
+	}
+
+	private String post(String body, int expectedStatus) throws IOException {
+		final HttpURLConnection connection = (HttpURLConnection) getRecipeUrl().openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		final OutputStream requestBody = connection.getOutputStream();
+		requestBody.write(body.getBytes("UTF-8"));
+		requestBody.close();
+		assertEquals(expectedStatus, connection.getResponseCode());
+		final InputStream responseBody = expectedStatus < 400 ? connection.getInputStream() : connection.getErrorStream();
+		try {
+			return IOUtils.toString(responseBody, "UTF-8");
+		} finally {
+			responseBody.close();
+			connection.disconnect();
+		}
+	}
+
+}
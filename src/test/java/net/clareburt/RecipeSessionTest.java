@@ -0,0 +1,110 @@
+package net.clareburt;
+
+import net.clareburt.model.Ingredient;
+import net.clareburt.model.Recipe;
+import net.clareburt.util.DateUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static net.clareburt.TestFixtures.createLot;
+import static net.clareburt.TestFixtures.createRecipe;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class RecipeSessionTest {
+
+	private int today;
+	private RecipeCatalog catalog;
+
+	@Before
+	public void setup() {
+		today = DateUtil.getCurrentEpochDay();
+		catalog = new RecipeCatalog(Arrays.asList(
+				createRecipe("toast", "bread"),
+				createRecipe("cheese toasty", "bread", "cheese"),
+				createRecipe("cheese and crackers", "cheese", "crackers")));
+	}
+
+	@Test
+	public void shouldSuggestTakeoutForEmptyFridge() {
+		final RecipeSession session = new RecipeSession(catalog, new ArrayList<Ingredient>(), today);
+		assertEquals("Order Takeout", session.getBestRecipe());
+		assertNull(session.getBestMatch());
+		assertEquals(0, session.getFeasibleRecipeCount());
+	}
+
+	@Test
+	public void shouldUpdateSuggestionAsLotsChange() {
+		final Ingredient bread = createLot("bread", 4, today + 5);
+		final RecipeSession session = new RecipeSession(catalog, Arrays.asList(bread), today);
+		assertEquals("toast", session.getBestRecipe());
+
+		final Ingredient cheese = createLot("cheese", 2, today + 5);
+		session.addItem(cheese);
+		assertEquals("cheese toasty", session.getBestRecipe());
+		assertEquals(2, session.getFeasibleRecipeCount());
+
+		session.addItem(createLot("crackers", 10, today + 2));
+		assertEquals("cheese and crackers", session.getBestRecipe());
+
+		session.consumeItem(cheese, 1);
+		assertEquals(1, cheese.getAmount());
+		assertEquals("toast", session.getBestRecipe());
+
+		session.removeItem(bread);
+		assertEquals("Order Takeout", session.getBestRecipe());
+	}
+
+	@Test
+	public void shouldIgnoreExpiredLots() {
+		final RecipeSession session = new RecipeSession(catalog, new ArrayList<Ingredient>(), today);
+		session.addItem(createLot("bread", 4, today - 1));
+		assertEquals("Order Takeout", session.getBestRecipe());
+	}
+
+	@Test
+	public void shouldMatchGeneratorAfterEveryChange() {
+		final Random random = new Random(5);
+		final List<Recipe> recipes = new ArrayList<Recipe>();
+		for (int i = 0; i < 300; i++) {
+			final String[] items = new String[1 + random.nextInt(3)];
+			for (int j = 0; j < items.length; j++) {
+				items[j] = "item" + random.nextInt(30);
+			}
+			recipes.add(createRecipe("recipe" + i, items));
+		}
+		final RecipeCatalog randomCatalog = new RecipeCatalog(recipes);
+		final RecipeGenerator recipeGenerator = new RecipeGenerator();
+		final List<Ingredient> fridgeItems = new ArrayList<Ingredient>();
+		final RecipeSession session = new RecipeSession(randomCatalog, fridgeItems, today);
+
+		for (int event = 0; event < 500; event++) {
+			final int choice = random.nextInt(3);
+			if (choice == 0 || fridgeItems.isEmpty()) {
+				final Ingredient lot = createLot("item" + random.nextInt(30), 1 + random.nextInt(5), today + random.nextInt(10));
+				fridgeItems.add(lot);
+				session.addItem(lot);
+			} else if (choice == 1) {
+				final int index = random.nextInt(fridgeItems.size());
+				final Ingredient lot = fridgeItems.get(index);
+				if (lot.getAmount() <= 1) {
+					fridgeItems.remove(index);
+				}
+				session.consumeItem(lot, 1);
+			} else {
+				session.removeItem(fridgeItems.remove(random.nextInt(fridgeItems.size())));
+			}
+			assertEquals(recipeGenerator.generateRecipeFromCatalog(fridgeItems, randomCatalog), session.getBestRecipe());
+		}
+	}
+
+}
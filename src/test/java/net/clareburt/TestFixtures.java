@@ -0,0 +1,62 @@
+package net.clareburt;
+
+import net.clareburt.model.Ingredient;
+import net.clareburt.model.Recipe;
+import net.clareburt.model.Unit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recipes and fridge lots shared by the tests.
+ *
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+final class TestFixtures {
+
+	private TestFixtures() {
+	}
+
+	/**
+	 * Creates a recipe needing 2 slices of each item.
+	 */
+	static Recipe createRecipe(String name, String... items) {
+		return createRecipe(name, Unit.slices, items);
+	}
+
+	/**
+	 * Creates a recipe needing 2 of the unit of each item.
+	 */
+	static Recipe createRecipe(String name, Unit unit, String... items) {
+		final List<Ingredient> ingredients = new ArrayList<Ingredient>();
+		for (String item : items) {
+			final Ingredient ingredient = new Ingredient();
+			ingredient.setItem(item);
+			ingredient.setAmount(2);
+			ingredient.setUnit(unit);
+			ingredients.add(ingredient);
+		}
+		final Recipe recipe = new Recipe();
+		recipe.setName(name);
+		recipe.setIngredients(ingredients);
+		return recipe;
+	}
+
+	/**
+	 * Creates a fridge lot of the item in slices.
+	 */
+	static Ingredient createLot(String item, int amount, int useByEpochDay) {
+		return createLot(item, amount, Unit.slices, useByEpochDay);
+	}
+
+	static Ingredient createLot(String item, int amount, Unit unit, int useByEpochDay) {
+		final Ingredient ingredient = new Ingredient();
+		ingredient.setItem(item);
+		ingredient.setAmount(amount);
+		ingredient.setUnit(unit);
+		ingredient.setUseByEpochDay(useByEpochDay);
+		return ingredient;
+	}
+
+}
@@ -0,0 +1,65 @@
+package net.clareburt.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class LatencyHistogramTest {
+
+	@Test
+	public void shouldReportZerosWhenEmpty() {
+		final LatencySnapshot snapshot = new LatencyHistogram().getSnapshot();
+		assertEquals(0, snapshot.getCount());
+		assertEquals(0, snapshot.getP99Nanos());
+		assertEquals(0, snapshot.getMaxNanos());
+	}
+
+	@Test
+	public void bucketsShouldCoverEveryValueInOrder() {
+		long previousLimit = -1;
+		for (int bucket = 0; bucket < LatencyHistogram.getBucket(Long.MAX_VALUE) + 1; bucket++) {
+			final long limit = LatencyHistogram.getBucketLimit(bucket);
+			assertEquals(bucket, LatencyHistogram.getBucket(previousLimit + 1));
+			assertEquals(bucket, LatencyHistogram.getBucket(limit));
+			previousLimit = limit;
+		}
+		assertEquals(Long.MAX_VALUE, previousLimit);
+	}
+
+	@Test
+	public void shouldReportPercentilesWithinBucketError() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		for (long nanos = 1; nanos <= 100000; nanos++) {
+			histogram.record(nanos * 1000);
+		}
+		final LatencySnapshot snapshot = histogram.getSnapshot();
+		assertEquals(100000, snapshot.getCount());
+		assertEquals(100000000, snapshot.getMaxNanos());
+		assertEquals(50000500, snapshot.getMeanNanos());
+		assertWithin(50000000, snapshot.getP50Nanos());
+		assertWithin(99000000, snapshot.getP99Nanos());
+		assertWithin(99900000, snapshot.getP999Nanos());
+	}
+
+	@Test
+	public void shouldClearOnReset() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(5);
+		histogram.record(-3);
+		assertEquals(2, histogram.getSnapshot().getCount());
+		histogram.reset();
+		assertEquals(0, histogram.getSnapshot().getCount());
+	}
+
+	//-------- Helper methods --------
+
+	private void assertWithin(long expected, long actual) {
+		assertTrue(expected + " ~ " + actual, actual >= expected && actual <= expected + expected / 8);
+	}
+
+}
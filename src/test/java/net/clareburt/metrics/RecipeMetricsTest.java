@@ -0,0 +1,58 @@
+package net.clareburt.metrics;
+
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class RecipeMetricsTest {
+
+	@Test
+	public void shouldCountRecipesConsideredAndRejected() {
+		final RecipeMetrics metrics = new RecipeMetrics();
+		metrics.recordFridge(12, 100);
+		metrics.recordRecipes(100, 7);
+		metrics.recordFridge(3, 40);
+		metrics.recordRecipes(30, 1);
+		metrics.recordRecipes(10, 0);
+
+		final MetricsSnapshot snapshot = metrics.getSnapshot();
+		assertEquals(140, snapshot.getRecipesConsidered());
+		assertEquals(132, snapshot.getRecipesRejected());
+		assertEquals(2, snapshot.getFridgesMatched());
+		assertEquals(15, snapshot.getFridgeLots());
+		assertEquals(40, snapshot.getCatalogSize());
+	}
+
+	@Test
+	public void shouldRecordPhaseLatencies() {
+		final RecipeMetrics metrics = new RecipeMetrics();
+		metrics.recordSince(RecipeMetrics.Phase.RANKING, System.nanoTime());
+		assertEquals(1, metrics.getSnapshot().getLatency(RecipeMetrics.Phase.RANKING).getCount());
+		assertEquals(0, metrics.getSnapshot().getLatency(RecipeMetrics.Phase.MATCHING).getCount());
+		metrics.reset();
+		assertEquals(0, metrics.getRanking().getCount());
+	}
+
+	@Test
+	public void shouldPublishOverJmx() throws Exception {
+		final RecipeMetrics metrics = RecipeMetrics.getInstance();
+		metrics.register();
+		metrics.recordSince(RecipeMetrics.Phase.END_TO_END, System.nanoTime());
+
+		final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		final CompositeData endToEnd = (CompositeData) mBeanServer.getAttribute(new ObjectName(RecipeMetrics.OBJECT_NAME), "EndToEnd");
+		assertTrue((Long) endToEnd.get("count") >= 1);
+		assertTrue(endToEnd.containsKey("p999Nanos"));
+	}
+
+}
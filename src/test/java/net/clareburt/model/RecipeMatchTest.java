@@ -0,0 +1,73 @@
+package net.clareburt.model;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class RecipeMatchTest {
+
+	@Test
+	public void shouldSortExpirySignature() throws ParseException {
+		final RecipeMatch match = new RecipeMatch("cheese toasty", Arrays.asList(
+				createIngredient("bread", "21/04/2014"), createIngredient("cheese", "15/04/2014")));
+		final int[] signature = match.getExpirySignature();
+		assertTrue(signature[0] < signature[1]);
+	}
+
+	@Test
+	public void shouldKeepLotsThatAreEqual() throws ParseException {
+		final Ingredient bread = createIngredient("bread", "21/04/2014");
+		final RecipeMatch match = new RecipeMatch("double toast", Arrays.asList(bread, createIngredient("bread", "21/04/2014")));
+		assertTrue(match.getExpirySignature().length == 2);
+	}
+
+	@Test
+	public void shouldPreferEarlierExpiringIngredients() throws ParseException {
+		final RecipeMatch earlier = new RecipeMatch("cheese and crackers", Arrays.asList(
+				createIngredient("cheese", "25/04/2014"), createIngredient("crackers", "17/04/2014")));
+		final RecipeMatch later = new RecipeMatch("cheese toasty", Arrays.asList(
+				createIngredient("bread", "21/04/2014"), createIngredient("cheese", "25/04/2014")));
+		assertTrue(earlier.isBetterThan(later));
+		assertFalse(later.isBetterThan(earlier));
+	}
+
+	@Test
+	public void shouldPreferMoreIngredientsWhenDatesAreTheSame() throws ParseException {
+		final RecipeMatch toast = new RecipeMatch("toast", Arrays.asList(createIngredient("bread", "25/12/2014")));
+		final RecipeMatch cheeseToasty = new RecipeMatch("cheese toasty", Arrays.asList(
+				createIngredient("bread", "25/12/2014"), createIngredient("cheese", "25/12/2014")));
+		assertTrue(cheeseToasty.isBetterThan(toast));
+		assertFalse(toast.isBetterThan(cheeseToasty));
+		assertFalse(toast.isBetterThan(toast));
+	}
+
+	@Test
+	public void testCompareSignatures() {
+		assertTrue(RecipeMatch.compareSignatures(new int[]{1, 5}, new int[]{2}) < 0);
+		assertTrue(RecipeMatch.compareSignatures(new int[]{1, 5}, new int[]{1, 4}) > 0);
+		assertTrue(RecipeMatch.compareSignatures(new int[]{1, 5}, new int[]{1, 5}) == 0);
+		assertTrue(RecipeMatch.compareSignatures(new int[]{1}, new int[]{1, 5}) > 0);
+		assertArrayEquals(new int[0], new RecipeMatch("nothing", Arrays.<Ingredient>asList()).getExpirySignature());
+	}
+
+	//-------- Helper methods --------
+
+	private Ingredient createIngredient(String item, String useByStr) throws ParseException {
+		final Ingredient ingredient = new Ingredient();
+		ingredient.setItem(item);
+		ingredient.setAmount(2);
+		ingredient.setUnit(Unit.slices);
+		ingredient.setUseBy(useByStr);
+		return ingredient;
+	}
+
+}
@@ -0,0 +1,72 @@
+package net.clareburt.util;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.time.LocalDate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Justin Clareburt
+ * @since 18/10/26
+ */
+public class DateCodecTest {
+
+	@Test
+	public void testParseEpochDay() throws ParseException {
+		assertEquals(0, DateCodec.parseEpochDay("01/01/1970"));
+		assertEquals(LocalDate.of(2014, 12, 25).toEpochDay(), DateCodec.parseEpochDay("25/12/2014"));
+		assertEquals(LocalDate.of(2000, 2, 29).toEpochDay(), DateCodec.parseEpochDay("29/02/2000"));
+		assertEquals(LocalDate.of(1969, 12, 31).toEpochDay(), DateCodec.parseEpochDay("31/12/1969"));
+	}
+
+	@Test
+	public void shouldParseSingleDigitDayAndMonth() throws ParseException {
+		assertEquals(LocalDate.of(2014, 12, 2).toEpochDay(), DateCodec.parseEpochDay("2/12/2014"));
+		assertEquals(LocalDate.of(2014, 4, 2).toEpochDay(), DateCodec.parseEpochDay("2/4/2014"));
+	}
+
+	@Test
+	public void shouldMatchLocalDateForEveryDayOfSeveralCenturies() throws ParseException {
+		for (LocalDate date = LocalDate.of(1890, 1, 1); date.getYear() < 2110; date = date.plusDays(1)) {
+			final String text = date.getDayOfMonth() + "/" + date.getMonthValue() + "/" + date.getYear();
+			assertEquals(text, date.toEpochDay(), DateCodec.parseEpochDay(text));
+			assertEquals(date.toEpochDay(), DateCodec.parseEpochDay(DateCodec.format((int) date.toEpochDay())));
+		}
+	}
+
+	@Test
+	public void testFormat() {
+		assertEquals("01/01/1970", DateCodec.format(0));
+		assertEquals("25/12/2014", DateCodec.format((int) LocalDate.of(2014, 12, 25).toEpochDay()));
+		assertEquals("02/12/2014", DateCodec.format((int) LocalDate.of(2014, 12, 2).toEpochDay()));
+	}
+
+	@Test
+	public void shouldRejectInvalidDates() {
+		assertInvalid(null);
+		assertInvalid("");
+		assertInvalid("invalidDate");
+		assertInvalid("25/12");
+		assertInvalid("25/12/14");
+		assertInvalid("25-12-2014");
+		assertInvalid("25/12/2014x");
+		assertInvalid("123/12/2014");
+		assertInvalid("32/12/2014");
+		assertInvalid("29/02/2014");
+		assertInvalid("00/12/2014");
+		assertInvalid("25/13/2014");
+	}
+
+	private void assertInvalid(String text) {
+		try {
+			DateCodec.parseEpochDay(text);
+			fail("Expected ParseException for " + text);
+		} catch (ParseException e) {
+			// expected
+		}
+	}
+
+}
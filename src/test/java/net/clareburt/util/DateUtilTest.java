@@ -2,8 +2,12 @@ package net.clareburt.util;
 
 import org.junit.Test;
 
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Date;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 /**
@@ -18,4 +22,23 @@ public class DateUtilTest {
 		assertNotNull(currentDate);
 	}
 
+	@Test
+	public void testEpochDayConversions() throws Exception {
+		final int epochDay = DateCodec.parseEpochDay("25/12/2014");
+		assertEquals(epochDay, DateUtil.toEpochDay(DateUtil.toDate(epochDay)));
+		assertEquals(DateUtil.getCurrentEpochDay(), DateUtil.toEpochDay(DateUtil.getCurrentDate()));
+	}
+
+	@Test
+	public void shouldUseClockThatWasSet() throws Exception {
+		final ZoneId zone = ZoneId.systemDefault();
+		DateUtil.setClock(Clock.fixed(LocalDate.of(2014, 2, 24).atStartOfDay(zone).toInstant(), zone));
+		try {
+			assertEquals(DateCodec.parseEpochDay("24/02/2014"), DateUtil.getCurrentEpochDay());
+			assertEquals(DateUtil.toDate(DateCodec.parseEpochDay("24/02/2014")), DateUtil.getCurrentDate());
+		} finally {
+			DateUtil.resetClock();
+		}
+	}
+
 }